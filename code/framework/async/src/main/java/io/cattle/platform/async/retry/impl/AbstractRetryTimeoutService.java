@@ -0,0 +1,83 @@
+package io.cattle.platform.async.retry.impl;
+
+import io.cattle.platform.async.retry.CancelRetryException;
+import io.cattle.platform.async.retry.Retry;
+import io.cattle.platform.async.retry.RetryTimeoutService;
+import io.cattle.platform.async.utils.TimeoutException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.apache.cloudstack.managed.context.NoExceptionRunnable;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+public abstract class AbstractRetryTimeoutService implements RetryTimeoutService {
+
+    ExecutorService executorService;
+
+    @Override
+    public Object timeout(Future<?> future, long timeout) {
+        return submit(new Retry(0, timeout, future, null));
+    }
+
+    @Override
+    public Object submit(Retry retry) {
+        return queue(retry);
+    }
+
+    public abstract void retry();
+
+    protected abstract Object queue(Retry retry);
+
+    /**
+     * Schedules the retry again after it expired. The returned handle must be
+     * accepted by {@link #completed(Object)}.
+     */
+    protected abstract Object requeue(Object handle, Retry retry);
+
+    protected void expired(final Object handle, final Retry retry) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                retry.increment();
+
+                if (retry.getRetryCount() >= retry.getRetries()) {
+                    Future<?> future = retry.getFuture();
+                    if (future instanceof SettableFuture) {
+                        ((SettableFuture<?>) future).setException(new TimeoutException());
+                    } else {
+                        future.cancel(true);
+                    }
+                } else {
+                    final Object newHandle = requeue(handle, retry);
+                    final Runnable run = retry.getRunnable();
+                    if (run != null) {
+                        new NoExceptionRunnable() {
+                            @Override
+                            protected void doRun() throws Exception {
+                                try {
+                                    run.run();
+                                } catch (CancelRetryException e) {
+                                    completed(newHandle);
+                                }
+                            }
+                        }.run();
+                    }
+                }
+            }
+        });
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    @Inject
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+}
@@ -1,36 +1,15 @@
 package io.cattle.platform.async.retry.impl;
 
-import io.cattle.platform.async.retry.CancelRetryException;
 import io.cattle.platform.async.retry.Retry;
-import io.cattle.platform.async.retry.RetryTimeoutService;
-import io.cattle.platform.async.utils.TimeoutException;
 import io.cattle.platform.util.concurrent.DelayedObject;
 
 import java.util.concurrent.DelayQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
-import javax.inject.Inject;
-
-import org.apache.cloudstack.managed.context.NoExceptionRunnable;
-
-import com.google.common.util.concurrent.SettableFuture;
-
-public class RetryTimeoutServiceImpl implements RetryTimeoutService {
+public class RetryTimeoutServiceImpl extends AbstractRetryTimeoutService {
 
     DelayQueue<DelayedObject<Retry>> retryQueue = new DelayQueue<DelayedObject<Retry>>();
-    ExecutorService executorService;
-
-    @Override
-    public Object timeout(Future<?> future, long timeout) {
-        return submit(new Retry(0, timeout, future, null));
-    }
 
     @Override
-    public Object submit(Retry retry) {
-        return queue(retry);
-    }
-
     public void retry() {
         DelayedObject<Retry> delayed = retryQueue.poll();
         while (delayed != null) {
@@ -40,42 +19,14 @@ public class RetryTimeoutServiceImpl implements RetryTimeoutService {
                 retry.setKeepalive(false);
                 queue(retry);
             } else {
-                executorService.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        retry.increment();
-
-                        if (retry.getRetryCount() >= retry.getRetries()) {
-                            Future<?> future = retry.getFuture();
-                            if (future instanceof SettableFuture) {
-                                ((SettableFuture<?>) future).setException(new TimeoutException());
-                            } else {
-                                future.cancel(true);
-                            }
-                        } else {
-                            queue(retry);
-                            final Runnable run = retry.getRunnable();
-                            if (run != null) {
-                                new NoExceptionRunnable() {
-                                    @Override
-                                    protected void doRun() throws Exception {
-                                        try {
-                                            run.run();
-                                        } catch (CancelRetryException e) {
-                                            completed(retry);
-                                        }
-                                    }
-                                }.run();
-                            }
-                        }
-                    }
-                });
+                expired(delayed, retry);
             }
 
             delayed = retryQueue.poll();
         }
     }
 
+    @Override
     protected DelayedObject<Retry> queue(Retry retry) {
         DelayedObject<Retry> delayed = new DelayedObject<Retry>(System.currentTimeMillis() + retry.getTimeoutMillis(), retry);
         retryQueue.add(delayed);
@@ -83,17 +34,13 @@ public class RetryTimeoutServiceImpl implements RetryTimeoutService {
     }
 
     @Override
-    public void completed(Object obj) {
-        retryQueue.remove(obj);
-    }
-
-    public ExecutorService getExecutorService() {
-        return executorService;
+    protected Object requeue(Object handle, Retry retry) {
+        return queue(retry);
     }
 
-    @Inject
-    public void setExecutorService(ExecutorService executorService) {
-        this.executorService = executorService;
+    @Override
+    public void completed(Object obj) {
+        retryQueue.remove(obj);
     }
 
 }
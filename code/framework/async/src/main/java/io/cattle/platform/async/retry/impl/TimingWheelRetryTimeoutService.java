@@ -0,0 +1,173 @@
+package io.cattle.platform.async.retry.impl;
+
+import io.cattle.platform.async.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel. Each pending retry is a node in the doubly linked list
+ * of the bucket for its deadline tick, so submit and completed are O(1)
+ * regardless of how many retries are outstanding. Deadlines further out than
+ * one revolution of the wheel share a bucket with nearer ones and are skipped
+ * until their tick comes around.
+ */
+public class TimingWheelRetryTimeoutService extends AbstractRetryTimeoutService {
+
+    long tickMillis = 1000;
+    int wheelSize = 512;
+
+    Entry[] buckets;
+    int mask;
+    long startMillis;
+    long currentTick;
+
+    @Override
+    public void retry() {
+        List<Entry> expired = new ArrayList<Entry>();
+
+        synchronized (this) {
+            init();
+
+            long nowTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+            while (currentTick < nowTick) {
+                currentTick++;
+
+                Entry entry = buckets[(int) (currentTick & mask)];
+                while (entry != null) {
+                    Entry next = entry.next;
+                    if (entry.deadlineTick <= currentTick) {
+                        unlink(entry);
+                        expired.add(entry);
+                    }
+                    entry = next;
+                }
+            }
+        }
+
+        for (Entry entry : expired) {
+            Retry retry = entry.retry;
+            if (retry.isKeepalive()) {
+                retry.setKeepalive(false);
+                requeue(entry, retry);
+            } else {
+                expired(entry, retry);
+            }
+        }
+    }
+
+    @Override
+    protected Object queue(Retry retry) {
+        Entry entry = new Entry(retry);
+        synchronized (this) {
+            init();
+            schedule(entry);
+        }
+        return entry;
+    }
+
+    @Override
+    protected synchronized Object requeue(Object handle, Retry retry) {
+        Entry entry = (Entry) handle;
+        if (!entry.cancelled && entry.bucket == -1) {
+            schedule(entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public synchronized void completed(Object obj) {
+        if (!(obj instanceof Entry)) {
+            return;
+        }
+
+        Entry entry = (Entry) obj;
+        entry.cancelled = true;
+        if (entry.bucket != -1) {
+            unlink(entry);
+        }
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        if (buckets != null) {
+            for (Entry entry : buckets) {
+                for (; entry != null; entry = entry.next) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    protected void init() {
+        if (buckets != null) {
+            return;
+        }
+
+        int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        buckets = new Entry[size];
+        mask = size - 1;
+        startMillis = System.currentTimeMillis();
+        currentTick = 0;
+    }
+
+    protected void schedule(Entry entry) {
+        long deadline = System.currentTimeMillis() + entry.retry.getTimeoutMillis() - startMillis;
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+
+        entry.deadlineTick = Math.max(tick, currentTick + 1);
+        entry.bucket = (int) (entry.deadlineTick & mask);
+        entry.prev = null;
+        entry.next = buckets[entry.bucket];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        buckets[entry.bucket] = entry;
+    }
+
+    protected void unlink(Entry entry) {
+        if (entry.prev == null) {
+            buckets[entry.bucket] = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = -1;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public void setTickMillis(long tickMillis) {
+        this.tickMillis = tickMillis;
+    }
+
+    public int getWheelSize() {
+        return wheelSize;
+    }
+
+    public void setWheelSize(int wheelSize) {
+        this.wheelSize = wheelSize;
+    }
+
+    private static final class Entry {
+        Retry retry;
+        long deadlineTick;
+        int bucket = -1;
+        boolean cancelled;
+        Entry prev, next;
+
+        public Entry(Retry retry) {
+            this.retry = retry;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package io.cattle.platform.async.retry.impl;
+
+import io.cattle.platform.async.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Compares submit/completed cost of the DelayQueue and timing wheel
+ * implementations with a given number of retries already pending. Not part
+ * of the test run, start it by hand with
+ *
+ * <pre>
+ * java -cp ... io.cattle.platform.async.retry.impl.RetryTimeoutServiceBenchmark [pending...]
+ * </pre>
+ */
+public class RetryTimeoutServiceBenchmark {
+
+    private static final int OPERATIONS = 5000;
+    private static final long TIMEOUT = 60000L;
+
+    public static void main(String... args) throws Exception {
+        int[] sizes = new int[] { 10000, 100000, 1000000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int size : sizes) {
+            for (int i = 0; i < 2; i++) {
+                run(new RetryTimeoutServiceImpl(), size, i == 0);
+                run(new TimingWheelRetryTimeoutService(), size, i == 0);
+            }
+        }
+    }
+
+    protected static void run(AbstractRetryTimeoutService service, int pending, boolean warmup) {
+        Random random = new Random(pending);
+        List<Object> handles = new ArrayList<Object>(pending);
+        for (int i = 0; i < pending; i++) {
+            handles.add(service.submit(newRetry(random)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int index = random.nextInt(handles.size());
+            service.completed(handles.get(index));
+            handles.set(index, service.submit(newRetry(random)));
+        }
+        long submitComplete = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        service.retry();
+        long sweep = System.nanoTime() - start;
+
+        if (!warmup) {
+            System.out.println(String.format("%-32s pending=%-8d submit+completed=%8.2fus/op retry()=%6.2fms",
+                    service.getClass().getSimpleName(), pending, submitComplete / 1000.0 / OPERATIONS, sweep / 1000000.0));
+        }
+    }
+
+    protected static Retry newRetry(Random random) {
+        return new Retry(3, TIMEOUT + random.nextInt(10000), SettableFuture.create(), null);
+    }
+
+}
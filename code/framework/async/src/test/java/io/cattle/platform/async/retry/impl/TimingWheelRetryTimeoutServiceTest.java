@@ -0,0 +1,123 @@
+package io.cattle.platform.async.retry.impl;
+
+import static org.junit.Assert.*;
+
+import io.cattle.platform.async.retry.Retry;
+import io.cattle.platform.async.utils.TimeoutException;
+
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TimingWheelRetryTimeoutServiceTest {
+
+    TimingWheelRetryTimeoutService service;
+
+    @Before
+    public void setUp() {
+        service = new TimingWheelRetryTimeoutService();
+        service.setTickMillis(10);
+        service.setWheelSize(8);
+        service.setExecutorService(MoreExecutors.sameThreadExecutor());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        SettableFuture<Object> future = SettableFuture.create();
+        service.timeout(future, 30);
+
+        service.retry();
+        assertFalse(future.isDone());
+
+        Thread.sleep(60);
+        service.retry();
+
+        assertTimedOut(future);
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    public void testCompleted() throws Exception {
+        SettableFuture<Object> future = SettableFuture.create();
+        Object handle = service.timeout(future, 30);
+        assertEquals(1, service.size());
+
+        service.completed(handle);
+        assertEquals(0, service.size());
+
+        Thread.sleep(60);
+        service.retry();
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void testRetryThenCompleted() throws Exception {
+        final int[] runs = new int[1];
+        SettableFuture<Object> future = SettableFuture.create();
+        Object handle = service.submit(new Retry(3, 20L, future, new Runnable() {
+            @Override
+            public void run() {
+                runs[0]++;
+            }
+        }));
+
+        Thread.sleep(40);
+        service.retry();
+        assertEquals(1, runs[0]);
+        assertEquals(1, service.size());
+
+        service.completed(handle);
+        assertEquals(0, service.size());
+
+        Thread.sleep(40);
+        service.retry();
+        assertEquals(1, runs[0]);
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void testKeepalive() throws Exception {
+        SettableFuture<Object> future = SettableFuture.create();
+        Retry retry = new Retry(0, 20L, future, null);
+        service.submit(retry);
+        retry.setKeepalive(true);
+
+        Thread.sleep(40);
+        service.retry();
+        assertFalse(future.isDone());
+        assertFalse(retry.isKeepalive());
+
+        Thread.sleep(40);
+        service.retry();
+        assertTimedOut(future);
+    }
+
+    @Test
+    public void testBeyondOneRevolution() throws Exception {
+        SettableFuture<Object> future = SettableFuture.create();
+        service.timeout(future, 150);
+
+        Thread.sleep(100);
+        service.retry();
+        assertFalse(future.isDone());
+
+        Thread.sleep(100);
+        service.retry();
+        assertTimedOut(future);
+    }
+
+    protected void assertTimedOut(SettableFuture<Object> future) throws InterruptedException {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+}
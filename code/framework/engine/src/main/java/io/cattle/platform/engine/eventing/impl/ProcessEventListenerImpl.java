@@ -52,8 +52,14 @@ public class ProcessEventListenerImpl implements ProcessEventListener {
             return;
 
         long processId = new Long(event.getResourceId());
+        ProcessRecord record = processRecordDao.getRecord(processId);
+
+        if (record != null) {
+            processServer.processReceived(processId, record.getResourceType(), record.getResourceId(),
+                    ArchaiusUtil.getInt("process." + record.getProcessName() + ".priority").get(), record.getEndTime() != null);
+        }
 
-        if (shouldWaitLonger(processId)) {
+        if (shouldWaitLonger(processId, record)) {
             return;
         }
 
@@ -94,8 +100,7 @@ public class ProcessEventListenerImpl implements ProcessEventListener {
         }
     }
 
-    private boolean shouldWaitLonger(long processId) {
-        ProcessRecord record = processRecordDao.getRecord(processId);
+    private boolean shouldWaitLonger(long processId, ProcessRecord record) {
         if (record == null || record.getEndTime() != null) {
             // is there any additional processing that happens or can we
             // even short circuit it here and be done with this event?
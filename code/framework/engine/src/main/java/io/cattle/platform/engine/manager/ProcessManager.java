@@ -12,6 +12,11 @@ public interface ProcessManager {
 
     Long getRemainingTask(long processId);
 
+    /**
+     * @return the given processes that have not ended
+     */
+    List<Long> unfinishedTasks(List<Long> processIds);
+
     ProcessInstance loadProcess(Long id);
 
     ProcessInstance createProcessInstance(LaunchConfiguration config);
@@ -16,12 +16,15 @@ import io.cattle.platform.engine.process.StateChangeMonitor;
 import io.cattle.platform.engine.process.impl.DefaultProcessInstanceImpl;
 import io.cattle.platform.eventing.EventService;
 import io.cattle.platform.lock.LockManager;
+import io.cattle.platform.metrics.util.MetricsUtil;
 import io.cattle.platform.util.concurrent.DelayedObject;
 import io.cattle.platform.util.type.InitializationTask;
 import io.cattle.platform.util.type.NamedUtils;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.DelayQueue;
@@ -31,12 +34,27 @@ import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 
 import org.apache.cloudstack.managed.context.NoExceptionRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicLongProperty;
 
 public class DefaultProcessManager implements ProcessManager, InitializationTask {
 
     private static final DynamicLongProperty EXECUTION_DELAY = ArchaiusUtil.getLong("process.log.save.interval.ms");
+    private static final DynamicLongProperty FLUSH_WINDOW = ArchaiusUtil.getLong("process.log.save.flush.window.ms");
+    private static final DynamicIntProperty BATCH_SIZE = ArchaiusUtil.getInt("process.log.save.batch.size");
+    private static final DynamicIntProperty QUEUE_MAX_SIZE = ArchaiusUtil.getInt("process.log.save.queue.max.size");
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultProcessManager.class);
+
+    private static final Timer FLUSH = MetricsUtil.getRegistry().timer("process_log_save.flush");
+    private static final Histogram FLUSH_SIZE = MetricsUtil.getRegistry().histogram("process_log_save.batch_size");
+    private static final Counter FULL = MetricsUtil.getRegistry().counter("process_log_save.queue_full");
 
     ProcessRecordDao processRecordDao;
     List<ProcessDefinition> definitionList;
@@ -128,6 +146,11 @@ public class DefaultProcessManager implements ProcessManager, InitializationTask
         return processRecordDao.pendingTasks(null, null);
     }
 
+    @Override
+    public List<Long> unfinishedTasks(List<Long> processIds) {
+        return processRecordDao.unfinished(processIds);
+    }
+
     @Override
     public Long getRemainingTask(long processId) {
         ProcessRecord record = processRecordDao.getRecord(processId);
@@ -148,25 +171,101 @@ public class DefaultProcessManager implements ProcessManager, InitializationTask
         return createProcessInstance(record, false);
     }
 
-    protected void persistInProgress() throws InterruptedException {
-        while (true) {
-            ProcessInstance process = toPersist.take().getObject().get();
-            if (process == null) {
-                return;
+    /**
+     * Writes everything that came due since the last run, in batches of
+     * process.log.save.batch.size.
+     */
+    protected void persistDue() {
+        int batchSize = Math.max(BATCH_SIZE.get(), 1);
+        List<ProcessInstance> persisted = new ArrayList<ProcessInstance>();
+        try {
+            while (true) {
+                List<DelayedObject<WeakReference<ProcessInstance>>> due = new ArrayList<DelayedObject<WeakReference<ProcessInstance>>>();
+                toPersist.drainTo(due, batchSize);
+                if (due.size() == 0) {
+                    return;
+                }
+
+                List<ProcessInstance> processes = new ArrayList<ProcessInstance>(due.size());
+                for (DelayedObject<WeakReference<ProcessInstance>> obj : due) {
+                    ProcessInstance process = obj.getObject().get();
+                    if (process != null) {
+                        processes.add(process);
+                    }
+                }
+
+                persisted.addAll(processes);
+                persistInProgress(processes);
+
+                if (due.size() < batchSize) {
+                    return;
+                }
+            }
+        } finally {
+            /* Queued again only once this run is over so a short interval can't keep it going */
+            for (ProcessInstance process : persisted) {
+                synchronized (process) {
+                    if (process.getExitReason() == null) {
+                        enqueue(process);
+                    }
+                }
             }
+        }
+    }
+
+    protected void persistInProgress(List<ProcessInstance> processes) {
+        Map<ProcessRecord, ProcessInstance> running = new IdentityHashMap<ProcessRecord, ProcessInstance>();
+        List<ProcessRecordSnapshot> snapshots = new ArrayList<ProcessRecordSnapshot>(processes.size());
 
+        for (ProcessInstance process : processes) {
             synchronized (process) {
-                if (process.isRunningLogic()) {
-                    persistState(process, false);
+                if (process.isRunningLogic() && process instanceof DefaultProcessInstanceImpl) {
+                    ProcessRecord record = ((DefaultProcessInstanceImpl) process).getProcessRecord();
+                    if (record.getId() != null) {
+                        running.put(record, process);
+                        snapshots.add(processRecordDao.snapshot(record));
+                    }
                 }
-                if (process.getExitReason() == null) {
-                    queue(process);
+            }
+        }
+
+        if (snapshots.size() == 0) {
+            return;
+        }
+
+        Timer.Context timer = FLUSH.time();
+        try {
+            for (ProcessRecordSnapshot snapshot : processRecordDao.updateInProgress(snapshots)) {
+                ProcessInstance process = running.get(snapshot.getRecord());
+                synchronized (process) {
+                    if (process.isRunningLogic()) {
+                        persistState(process, false);
+                    }
                 }
             }
+        } catch (RuntimeException e) {
+            log.error("Failed to persist [{}] in progress processes", snapshots.size(), e);
+        } finally {
+            timer.stop();
+            FLUSH_SIZE.update(snapshots.size());
         }
     }
 
+    /**
+     * When the persister is behind, the record is written inline instead of
+     * queued so the queue bound holds and the caller never waits on it.
+     */
     protected void queue(ProcessInstance process) {
+        if (toPersist.size() >= QUEUE_MAX_SIZE.get()) {
+            FULL.inc();
+            persistState(process, false);
+            return;
+        }
+
+        enqueue(process);
+    }
+
+    protected void enqueue(ProcessInstance process) {
         WeakReference<ProcessInstance> ref = new WeakReference<ProcessInstance>(process);
         toPersist.put(new DelayedObject<WeakReference<ProcessInstance>>(System.currentTimeMillis() + EXECUTION_DELAY.get(), ref));
     }
@@ -180,16 +279,13 @@ public class DefaultProcessManager implements ProcessManager, InitializationTask
     public void start() {
         definitions = NamedUtils.createMapByName(definitionList);
 
-        executor.scheduleAtFixedRate(new NoExceptionRunnable() {
+        /* Everything that comes due within a flush window goes in the same batch */
+        executor.scheduleWithFixedDelay(new NoExceptionRunnable() {
             @Override
             public void doRun() throws Exception {
-                /*
-                 * This really blocks forever, but just in case it fails we
-                 * restart
-                 */
-                persistInProgress();
+                persistDue();
             }
-        }, EXECUTION_DELAY.get(), EXECUTION_DELAY.get(), TimeUnit.MILLISECONDS);
+        }, FLUSH_WINDOW.get(), FLUSH_WINDOW.get(), TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -8,8 +8,26 @@ public interface ProcessRecordDao {
 
     void update(ProcessRecord record, boolean schedule);
 
+    /**
+     * Copies the record and encodes its log. Must be called while holding the
+     * process so the copy is consistent.
+     */
+    ProcessRecordSnapshot snapshot(ProcessRecord record);
+
+    /**
+     * Persists the state and execution log of many running processes in one
+     * batch. Records whose process has already ended in the database are not
+     * overwritten.
+     *
+     * @return the snapshots that could not be persisted in the batch and need
+     *         to go through {@link #update(ProcessRecord, boolean)}
+     */
+    List<ProcessRecordSnapshot> updateInProgress(List<ProcessRecordSnapshot> records);
+
     List<Long> pendingTasks(String resourceType, String resourceId);
 
+    List<Long> unfinished(List<Long> ids);
+
     ProcessRecord getRecord(Long id);
 
     int getNumPreviousExecutions(long processInstanceId);
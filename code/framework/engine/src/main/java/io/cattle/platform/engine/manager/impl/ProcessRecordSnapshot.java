@@ -0,0 +1,81 @@
+package io.cattle.platform.engine.manager.impl;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fields of an in progress {@link ProcessRecord} copied while holding the
+ * process, with the log already encoded, so the write can happen after the
+ * process is released without seeing a half updated record.
+ */
+public class ProcessRecordSnapshot {
+
+    ProcessRecord record;
+    Long id;
+    Date endTime;
+    String result;
+    String exitReason;
+    String phase;
+    String runningProcessServerId;
+    Map<String, Object> data;
+    String logUuid;
+    String logText;
+
+    public ProcessRecordSnapshot(ProcessRecord record, String logUuid, String logText) {
+        this.record = record;
+        this.id = record.getId();
+        this.endTime = record.getEndTime();
+        this.result = record.getResult() == null ? null : record.getResult().toString();
+        this.exitReason = record.getExitReason() == null ? null : record.getExitReason().toString();
+        this.phase = record.getPhase() == null ? null : record.getPhase().toString();
+        this.runningProcessServerId = record.getRunningProcessServerId();
+        this.data = record.getData() == null ? null : new HashMap<String, Object>(record.getData());
+        this.logUuid = logUuid;
+        this.logText = logText;
+    }
+
+    /**
+     * @return the live record the snapshot was taken from
+     */
+    public ProcessRecord getRecord() {
+        return record;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getExitReason() {
+        return exitReason;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public String getRunningProcessServerId() {
+        return runningProcessServerId;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    public String getLogUuid() {
+        return logUuid;
+    }
+
+    public String getLogText() {
+        return logText;
+    }
+
+}
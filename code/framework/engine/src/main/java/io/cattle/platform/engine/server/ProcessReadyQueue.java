@@ -0,0 +1,52 @@
+package io.cattle.platform.engine.server;
+
+import java.util.List;
+
+/**
+ * In memory index of process instances that have not finished yet, keyed by
+ * resource. It only exists on the process server and is fed by the process
+ * execute events it receives, wherever the process was created. Only the head
+ * (highest priority, then lowest id) of each resource is considered runnable.
+ * The database remains the source of truth, this queue only exists so that
+ * the common case does not need to scan process_instance.
+ */
+public interface ProcessReadyQueue {
+
+    /**
+     * @return false if the entry was not tracked because the queue is full
+     */
+    boolean add(long id, String resourceType, String resourceId, int priority);
+
+    void remove(long id);
+
+    /**
+     * Removes a process that has finished.
+     *
+     * @return the id of the process that should run next on the same
+     *         resource, or null if none is known
+     */
+    Long complete(long id);
+
+    /**
+     * @return the id of the process that should run next on the given
+     *         resource, or null if none is known
+     */
+    Long next(String resourceType, String resourceId);
+
+    /**
+     * @return the runnable head of each resource ordered by priority desc, id
+     *         asc
+     */
+    List<Long> runnable(int max);
+
+    /**
+     * Drops entries that were queued before the given time. Those entries
+     * will be picked up by the database reconciliation.
+     *
+     * @return the number of entries removed
+     */
+    int expire(long queuedBefore);
+
+    int size();
+
+}
@@ -4,6 +4,14 @@ public interface ProcessServer {
 
     void runOutstandingJobs();
 
+    void runReadyJobs();
+
+    /**
+     * Tracks a process an execute event was received for, or forgets it if it
+     * has already ended.
+     */
+    void processReceived(long processId, String resourceType, String resourceId, int priority, boolean ended);
+
     void runRemainingTasks(long processId);
 
 }
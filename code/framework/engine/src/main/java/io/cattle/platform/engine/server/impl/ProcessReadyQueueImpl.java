@@ -0,0 +1,163 @@
+package io.cattle.platform.engine.server.impl;
+
+import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.engine.server.ProcessReadyQueue;
+import io.cattle.platform.metrics.util.MetricsUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.codahale.metrics.Counter;
+import com.netflix.config.DynamicIntProperty;
+
+public class ProcessReadyQueueImpl implements ProcessReadyQueue {
+
+    private static final DynamicIntProperty MAX_SIZE = ArchaiusUtil.getInt("process.ready.queue.max.size");
+
+    private static final Counter QUEUED = MetricsUtil.getRegistry().counter("process_ready_queue.queued");
+    private static final Counter FULL = MetricsUtil.getRegistry().counter("process_ready_queue.full");
+    private static final Counter EXPIRED = MetricsUtil.getRegistry().counter("process_ready_queue.expired");
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.priority != o2.priority) {
+                return o1.priority > o2.priority ? -1 : 1;
+            }
+            return o1.id < o2.id ? -1 : (o1.id == o2.id ? 0 : 1);
+        }
+    };
+
+    Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    Map<String, TreeSet<Entry>> resources = new HashMap<String, TreeSet<Entry>>();
+
+    @Override
+    public synchronized boolean add(long id, String resourceType, String resourceId, int priority) {
+        if (entries.containsKey(id)) {
+            return true;
+        }
+
+        if (entries.size() >= MAX_SIZE.get()) {
+            FULL.inc();
+            return false;
+        }
+
+        Entry entry = new Entry(id, key(resourceType, resourceId), priority, System.currentTimeMillis());
+        TreeSet<Entry> pending = resources.get(entry.key);
+        if (pending == null) {
+            pending = new TreeSet<Entry>(ORDER);
+            resources.put(entry.key, pending);
+        }
+
+        pending.add(entry);
+        entries.put(id, entry);
+        QUEUED.inc();
+
+        return true;
+    }
+
+    @Override
+    public synchronized void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+
+        TreeSet<Entry> pending = resources.get(entry.key);
+        if (pending != null) {
+            pending.remove(entry);
+            if (pending.isEmpty()) {
+                resources.remove(entry.key);
+            }
+        }
+
+        QUEUED.dec();
+    }
+
+    @Override
+    public synchronized Long complete(long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+
+        remove(id);
+        TreeSet<Entry> pending = resources.get(entry.key);
+        return pending == null || pending.isEmpty() ? null : pending.first().id;
+    }
+
+    @Override
+    public synchronized Long next(String resourceType, String resourceId) {
+        TreeSet<Entry> pending = resources.get(key(resourceType, resourceId));
+        return pending == null || pending.isEmpty() ? null : pending.first().id;
+    }
+
+    @Override
+    public synchronized List<Long> runnable(int max) {
+        List<Entry> heads = new ArrayList<Entry>(resources.size());
+        for (TreeSet<Entry> pending : resources.values()) {
+            if (!pending.isEmpty()) {
+                heads.add(pending.first());
+            }
+        }
+
+        Collections.sort(heads, ORDER);
+
+        List<Long> result = new ArrayList<Long>(Math.min(max, heads.size()));
+        for (Entry entry : heads) {
+            if (result.size() >= max) {
+                break;
+            }
+            result.add(entry.id);
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized int expire(long queuedBefore) {
+        List<Long> toRemove = new ArrayList<Long>();
+        for (Entry entry : entries.values()) {
+            if (entry.queued < queuedBefore) {
+                toRemove.add(entry.id);
+            }
+        }
+
+        for (Long id : toRemove) {
+            remove(id);
+        }
+
+        EXPIRED.inc(toRemove.size());
+        return toRemove.size();
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    protected String key(String resourceType, String resourceId) {
+        return String.format("%s:%s", resourceType, resourceId);
+    }
+
+    private static final class Entry {
+        long id;
+        String key;
+        int priority;
+        long queued;
+
+        public Entry(long id, String key, int priority, long queued) {
+            super();
+            this.id = id;
+            this.key = key;
+            this.priority = priority;
+            this.queued = queued;
+        }
+    }
+
+}
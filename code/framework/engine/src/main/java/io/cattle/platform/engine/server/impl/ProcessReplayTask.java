@@ -1,5 +1,6 @@
 package io.cattle.platform.engine.server.impl;
 
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.engine.server.ProcessServer;
 import io.cattle.platform.engine.server.lock.ProcessReplayLock;
 import io.cattle.platform.lock.LockDelegator;
@@ -7,14 +8,27 @@ import io.cattle.platform.task.Task;
 
 import javax.inject.Inject;
 
+import com.netflix.config.DynamicLongProperty;
+
 public class ProcessReplayTask implements Task {
 
+    private static final DynamicLongProperty RECONCILE_INTERVAL = ArchaiusUtil.getLong("process.replay.reconcile.interval.seconds");
+
     ProcessServer processServer;
     LockDelegator lockDelegator;
+    volatile long lastReconcile = 0;
 
     @Override
     public void run() {
+        processServer.runReadyJobs();
+
+        long now = System.currentTimeMillis();
+        if (now - lastReconcile < RECONCILE_INTERVAL.get() * 1000) {
+            return;
+        }
+
         if (lockDelegator.tryLock(new ProcessReplayLock())) {
+            lastReconcile = now;
             processServer.runOutstandingJobs();
         }
     }
@@ -1,16 +1,29 @@
 package io.cattle.platform.engine.server.impl;
 
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.deferred.util.DeferredUtils;
 import io.cattle.platform.engine.manager.ProcessManager;
 import io.cattle.platform.engine.server.ProcessInstanceDispatcher;
+import io.cattle.platform.engine.server.ProcessReadyQueue;
 import io.cattle.platform.engine.server.ProcessServer;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.inject.Inject;
 
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
+
 public class ProcessServerImpl implements ProcessServer {
 
+    private static final DynamicIntProperty PROCESS_REPLAY_BATCH = ArchaiusUtil.getInt("process.replay.batch.size");
+    private static final DynamicLongProperty RECONCILE_INTERVAL = ArchaiusUtil.getLong("process.replay.reconcile.interval.seconds");
+
     ProcessManager repository;
     ProcessInstanceDispatcher dispatcher;
+    ProcessReadyQueue readyQueue;
 
     @Override
     public void runOutstandingJobs() {
@@ -19,9 +32,43 @@ public class ProcessServerImpl implements ProcessServer {
         }
     }
 
+    @Override
+    public void runReadyJobs() {
+        /*
+         * Anything that has been sitting here longer than a reconcile interval
+         * is left to the database sweep
+         */
+        readyQueue.expire(System.currentTimeMillis() - RECONCILE_INTERVAL.get() * 1000);
+
+        List<Long> runnable = readyQueue.runnable(PROCESS_REPLAY_BATCH.get());
+        if (runnable.size() == 0) {
+            return;
+        }
+
+        /* Heads that finished on another process server are only known to the database */
+        Set<Long> unfinished = new HashSet<Long>(repository.unfinishedTasks(runnable));
+        for (Long id : runnable) {
+            if (unfinished.contains(id)) {
+                dispatcher.execute(id);
+            } else {
+                readyQueue.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public void processReceived(long processId, String resourceType, String resourceId, int priority, boolean ended) {
+        if (ended) {
+            readyQueue.remove(processId);
+        } else {
+            readyQueue.add(processId, resourceType, resourceId, priority);
+        }
+    }
+
     @Override
     public void runRemainingTasks(long processId) {
-        final Long nextId = repository.getRemainingTask(processId);
+        Long next = readyQueue.complete(processId);
+        final Long nextId = next == null ? repository.getRemainingTask(processId) : next;
         if (nextId != null) {
             DeferredUtils.defer(new Runnable() {
                 @Override
@@ -50,4 +97,13 @@ public class ProcessServerImpl implements ProcessServer {
         this.dispatcher = dispatcher;
     }
 
+    public ProcessReadyQueue getReadyQueue() {
+        return readyQueue;
+    }
+
+    @Inject
+    public void setReadyQueue(ProcessReadyQueue readyQueue) {
+        this.readyQueue = readyQueue;
+    }
+
 }
@@ -0,0 +1,118 @@
+package io.cattle.platform.engine.manager.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.engine.process.impl.DefaultProcessInstanceImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.netflix.config.ConfigurationManager;
+
+public class DefaultProcessManagerTest {
+
+    DefaultProcessManager manager;
+    ProcessRecordDao dao;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("process.log.save.interval.ms", 0);
+        ConfigurationManager.getConfigInstance().setProperty("process.log.save.flush.window.ms", 50);
+        ConfigurationManager.getConfigInstance().setProperty("process.log.save.batch.size", 2);
+        ConfigurationManager.getConfigInstance().setProperty("process.log.save.queue.max.size", 1);
+    }
+
+    @Before
+    public void setUp() {
+        dao = mock(ProcessRecordDao.class);
+        manager = new DefaultProcessManager();
+        manager.setProcessRecordDao(dao);
+    }
+
+    @Test
+    public void testSnapshotTakenWhileHoldingProcess() {
+        final DefaultProcessInstanceImpl process = running(1L);
+        when(dao.snapshot(any(ProcessRecord.class))).thenAnswer(new Answer<ProcessRecordSnapshot>() {
+            @Override
+            public ProcessRecordSnapshot answer(InvocationOnMock invocation) throws Throwable {
+                assertTrue(Thread.holdsLock(process));
+                return new ProcessRecordSnapshot((ProcessRecord) invocation.getArguments()[0], null, null);
+            }
+        });
+        when(dao.updateInProgress(anyListOf(ProcessRecordSnapshot.class))).thenAnswer(new Answer<List<ProcessRecordSnapshot>>() {
+            @Override
+            public List<ProcessRecordSnapshot> answer(InvocationOnMock invocation) throws Throwable {
+                assertFalse(Thread.holdsLock(process));
+                return Collections.emptyList();
+            }
+        });
+
+        manager.persistInProgress(Arrays.<io.cattle.platform.engine.process.ProcessInstance> asList(process));
+
+        verify(dao).snapshot(process.getProcessRecord());
+        verify(dao, never()).update(any(ProcessRecord.class), anyBoolean());
+    }
+
+    @Test
+    public void testNotPersistedFallsBackToUpdate() {
+        DefaultProcessInstanceImpl process = running(1L);
+        final ProcessRecordSnapshot snapshot = new ProcessRecordSnapshot(process.getProcessRecord(), null, null);
+        when(dao.snapshot(any(ProcessRecord.class))).thenReturn(snapshot);
+        when(dao.updateInProgress(anyListOf(ProcessRecordSnapshot.class))).thenReturn(Arrays.asList(snapshot));
+
+        manager.persistInProgress(Arrays.<io.cattle.platform.engine.process.ProcessInstance> asList(process));
+
+        verify(dao).update(process.getProcessRecord(), false);
+    }
+
+    @Test
+    public void testFullQueuePersistsInline() {
+        DefaultProcessInstanceImpl first = running(1L);
+        DefaultProcessInstanceImpl second = running(2L);
+
+        manager.queue(first);
+        manager.queue(second);
+
+        assertEquals(1, manager.toPersist.size());
+        verify(dao, never()).update(first.getProcessRecord(), false);
+        verify(dao).update(second.getProcessRecord(), false);
+    }
+
+    @Test
+    public void testPersistDueDrainsInBatches() {
+        when(dao.snapshot(any(ProcessRecord.class))).thenAnswer(new Answer<ProcessRecordSnapshot>() {
+            @Override
+            public ProcessRecordSnapshot answer(InvocationOnMock invocation) throws Throwable {
+                return new ProcessRecordSnapshot((ProcessRecord) invocation.getArguments()[0], null, null);
+            }
+        });
+        when(dao.updateInProgress(anyListOf(ProcessRecordSnapshot.class))).thenReturn(Collections.<ProcessRecordSnapshot> emptyList());
+
+        manager.enqueue(running(1L));
+        manager.enqueue(running(2L));
+        manager.enqueue(running(3L));
+        manager.persistDue();
+
+        verify(dao, times(2)).updateInProgress(anyListOf(ProcessRecordSnapshot.class));
+        /* Still running so they are due again later */
+        assertEquals(3, manager.toPersist.size());
+    }
+
+    protected DefaultProcessInstanceImpl running(Long id) {
+        ProcessRecord record = new ProcessRecord();
+        record.setId(id);
+
+        DefaultProcessInstanceImpl process = mock(DefaultProcessInstanceImpl.class);
+        when(process.isRunningLogic()).thenReturn(true);
+        when(process.getProcessRecord()).thenReturn(record);
+        return process;
+    }
+
+}
@@ -0,0 +1,66 @@
+package io.cattle.platform.engine.server.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class ProcessReadyQueueImplTest {
+
+    @BeforeClass
+    public static void setUp() {
+        ConfigurationManager.getConfigInstance().setProperty("process.ready.queue.max.size", 3);
+    }
+
+    @Test
+    public void testRunnableIsHeadOfEachResource() {
+        ProcessReadyQueueImpl queue = new ProcessReadyQueueImpl();
+        queue.add(5, "instance", "1", 0);
+        queue.add(2, "instance", "1", 0);
+        queue.add(7, "volume", "1", 1000);
+
+        assertEquals(Long.valueOf(2), queue.next("instance", "1"));
+        assertEquals(Arrays.asList(7L, 2L), queue.runnable(10));
+        assertEquals(Arrays.asList(7L), queue.runnable(1));
+    }
+
+    @Test
+    public void testHigherPriorityRunsFirstOnResource() {
+        ProcessReadyQueueImpl queue = new ProcessReadyQueueImpl();
+        queue.add(1, "instance", "1", 0);
+        queue.add(2, "instance", "1", 10);
+
+        assertEquals(Arrays.asList(2L), queue.runnable(10));
+    }
+
+    @Test
+    public void testCompleteDrainsResource() {
+        ProcessReadyQueueImpl queue = new ProcessReadyQueueImpl();
+        queue.add(1, "instance", "1", 0);
+        queue.add(2, "instance", "1", 0);
+
+        assertEquals(Long.valueOf(2), queue.complete(1));
+        assertNull(queue.complete(2));
+        assertNull(queue.complete(3));
+        assertEquals(0, queue.size());
+        assertTrue(queue.runnable(10).isEmpty());
+    }
+
+    @Test
+    public void testFullAndExpire() throws InterruptedException {
+        ProcessReadyQueueImpl queue = new ProcessReadyQueueImpl();
+        assertTrue(queue.add(1, "instance", "1", 0));
+        assertTrue(queue.add(2, "instance", "2", 0));
+        assertTrue(queue.add(3, "instance", "3", 0));
+        assertFalse(queue.add(4, "instance", "4", 0));
+
+        assertEquals(3, queue.expire(System.currentTimeMillis() + 1));
+        assertEquals(0, queue.size());
+        assertTrue(queue.add(4, "instance", "4", 0));
+    }
+
+}
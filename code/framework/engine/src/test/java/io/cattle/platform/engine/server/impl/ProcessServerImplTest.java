@@ -0,0 +1,83 @@
+package io.cattle.platform.engine.server.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.engine.manager.ProcessManager;
+import io.cattle.platform.engine.server.ProcessInstanceDispatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class ProcessServerImplTest {
+
+    ProcessServerImpl server;
+    ProcessManager repository;
+    ProcessInstanceDispatcher dispatcher;
+    ProcessReadyQueueImpl queue;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("process.ready.queue.max.size", 100);
+        ConfigurationManager.getConfigInstance().setProperty("process.replay.batch.size", 100);
+        ConfigurationManager.getConfigInstance().setProperty("process.replay.reconcile.interval.seconds", 300);
+    }
+
+    @Before
+    public void setUp() {
+        repository = mock(ProcessManager.class);
+        dispatcher = mock(ProcessInstanceDispatcher.class);
+        queue = new ProcessReadyQueueImpl();
+
+        server = new ProcessServerImpl();
+        server.setRepository(repository);
+        server.setDispatcher(dispatcher);
+        server.setReadyQueue(queue);
+    }
+
+    @Test
+    public void testHeadsFinishedElsewhereAreDropped() {
+        server.processReceived(1, "instance", "1", 0, false);
+        server.processReceived(2, "instance", "1", 0, false);
+        server.processReceived(3, "instance", "2", 0, false);
+
+        /* 1 ended on another process server */
+        when(repository.unfinishedTasks(anyListOf(Long.class))).thenReturn(Arrays.asList(3L));
+        server.runReadyJobs();
+
+        verify(dispatcher).execute(3L);
+        verify(dispatcher, never()).execute(1L);
+        assertEquals(Long.valueOf(2), queue.next("instance", "1"));
+
+        when(repository.unfinishedTasks(anyListOf(Long.class))).thenReturn(Arrays.asList(2L, 3L));
+        server.runReadyJobs();
+
+        verify(dispatcher).execute(2L);
+    }
+
+    @Test
+    public void testEndedProcessIsForgotten() {
+        server.processReceived(1, "instance", "1", 0, false);
+        server.processReceived(1, "instance", "1", 0, true);
+
+        server.runReadyJobs();
+
+        assertEquals(0, queue.size());
+        verify(repository, never()).unfinishedTasks(anyListOf(Long.class));
+    }
+
+    @Test
+    public void testNothingQueuedDoesNotQuery() {
+        server.runReadyJobs();
+
+        List<Long> none = queue.runnable(10);
+        assertTrue(none.isEmpty());
+        verifyZeroInteractions(repository, dispatcher);
+    }
+
+}
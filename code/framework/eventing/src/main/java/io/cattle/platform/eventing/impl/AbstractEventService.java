@@ -13,7 +13,6 @@ import io.cattle.platform.eventing.model.Event;
 import io.cattle.platform.eventing.model.EventVO;
 import io.cattle.platform.json.JsonMapper;
 import io.cattle.platform.metrics.util.MetricsUtil;
-import io.cattle.platform.pool.PoolConfig;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -21,21 +20,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.pool2.ObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,7 +58,8 @@ public abstract class AbstractEventService implements EventService {
     Map<String, List<EventListener>> eventToListeners = new HashMap<String, List<EventListener>>();
     Map<EventListener, Set<String>> listenerToEvents = new HashMap<EventListener, Set<String>>();
     JsonMapper jsonMapper;
-    ObjectPool<FutureEventListener> listenerPool;
+    ReplyInbox replyInbox;
+    volatile ListenableFuture<?> replySubscription;
     Map<String, Counter> request = new ConcurrentHashMap<String, Counter>();
     Map<String, Counter> publish = new ConcurrentHashMap<String, Counter>();
     Map<String, Counter> failed = new ConcurrentHashMap<String, Counter>();
@@ -78,6 +75,11 @@ public abstract class AbstractEventService implements EventService {
             return false;
         }
 
+        if (event.getName() == null) {
+            log.error("Can not publish an event with a null name : {}", event);
+            return false;
+        }
+
         String eventString = null;
         try {
             eventString = jsonMapper.writeValueAsString(event);
@@ -85,11 +87,6 @@ public abstract class AbstractEventService implements EventService {
             throw new IllegalStateException("Failed to marshall event [" + event + "] to string", e);
         }
 
-        if (event.getName() == null) {
-            log.error("Can not publish an event with a null name : {}", eventString);
-            return false;
-        }
-
         try {
             getEventLogOut().debug(eventString);
             increment(event, request);
@@ -124,6 +121,20 @@ public abstract class AbstractEventService implements EventService {
         return result;
     }
 
+    protected boolean hasEventListeners(String eventName, String listenerKey) {
+        List<EventListener> listeners = eventToListeners.get(eventName);
+        if (listeners != null && listeners.size() > 0) {
+            return true;
+        }
+
+        if (listenerKey != null && !listenerKey.equals(eventName)) {
+            listeners = eventToListeners.get(listenerKey);
+            return listeners != null && listeners.size() > 0;
+        }
+
+        return false;
+    }
+
     protected Logger getEventLogIn() {
         return EVENT_LOG_IN;
     }
@@ -289,18 +300,25 @@ public abstract class AbstractEventService implements EventService {
         }
 
         final SettableFuture<Event> future = SettableFuture.create();
-        final FutureEventListener listener;
+        final ReplyInbox inbox;
 
         try {
-            listener = listenerPool.borrowObject();
+            inbox = getReplyInbox();
         } catch (Exception e) {
             future.setException(e);
             return future;
         }
 
-        final EventVO<Object> request = new EventVO<Object>(event, listener.getReplyTo());
+        final EventVO<Object> request = new EventVO<Object>(event, inbox.getReplyTo());
         request.setTimeoutMillis(timeoutMillis);
 
+        final FutureEventListener listener = new FutureEventListener(this, request, future, options.getProgress());
+        if (request.getId() == null || !inbox.add(request.getId(), listener)) {
+            /* Same event is already in flight, replies can only be told apart by id */
+            request.setId(UUID.randomUUID().toString());
+            inbox.add(request.getId(), listener);
+        }
+
         Retry retry = new Retry(retries, timeoutMillis, future, new Runnable() {
             @Override
             public void run() {
@@ -320,10 +338,6 @@ public abstract class AbstractEventService implements EventService {
 
         final Object cancel = timeoutService.submit(retry);
 
-        listener.setProgress(options.getProgress());
-        listener.setFuture(future);
-        listener.setEvent(request);
-
         if (options.isProgressIsKeepAlive() && options.getProgress() != null) {
             listener.setRetry(retry);
         }
@@ -335,22 +349,10 @@ public abstract class AbstractEventService implements EventService {
                     timeoutService.completed(cancel);
                     future.get();
                     time(event, start);
-                } catch (ExecutionException t) {
-                    error(event);
-                    if (t.getCause() instanceof TimeoutException) {
-                        // Ignore don't treat as a bad listener
-                    } else {
-                        listener.setFailed(true);
-                    }
                 } catch (Throwable t) {
                     error(event);
-                    listener.setFailed(true);
                 } finally {
-                    try {
-                        listenerPool.returnObject(listener);
-                    } catch (Exception e) {
-                        log.error("Failed to return object to pool [" + listener + "]", e);
-                    }
+                    inbox.remove(request.getId(), listener);
                 }
             }
         }, executorService);
@@ -360,12 +362,38 @@ public abstract class AbstractEventService implements EventService {
         return future;
     }
 
+    protected ReplyInbox getReplyInbox() throws Exception {
+        ListenableFuture<?> subscribed = replySubscription;
+        if (subscribed == null || isFailed(subscribed)) {
+            synchronized (replyInbox) {
+                if (replySubscription == null || isFailed(replySubscription)) {
+                    replySubscription = subscribe(replyInbox.getReplyTo(), replyInbox);
+                }
+                subscribed = replySubscription;
+            }
+        }
+
+        subscribed.get();
+        return replyInbox;
+    }
+
+    protected boolean isFailed(ListenableFuture<?> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+
+        try {
+            future.get();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
     @PostConstruct
     public void init() {
-        if (listenerPool == null) {
-            GenericObjectPoolConfig config = new GenericObjectPoolConfig();
-            PoolConfig.setConfig(config, "eventing.reply.pool", "eventing.reply.pool.", "global.pool.");
-            listenerPool = new GenericObjectPool<FutureEventListener>(new ListenerPoolObjectFactory(this), config);
+        if (replyInbox == null) {
+            replyInbox = new ReplyInbox(Event.REPLY_PREFIX + Math.abs(new Random().nextLong()));
         }
     }
 
@@ -436,14 +464,6 @@ public abstract class AbstractEventService implements EventService {
         this.jsonMapper = jsonMapper;
     }
 
-    public ObjectPool<FutureEventListener> getListenerPool() {
-        return listenerPool;
-    }
-
-    public void setListenerPool(ObjectPool<FutureEventListener> listenerPool) {
-        this.listenerPool = listenerPool;
-    }
-
     public ExecutorService getExecutorService() {
         return executorService;
     }
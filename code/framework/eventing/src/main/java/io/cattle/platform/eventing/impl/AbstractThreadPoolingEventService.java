@@ -1,5 +1,6 @@
 package io.cattle.platform.eventing.impl;
 
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.eventing.EventListener;
 import io.cattle.platform.eventing.PoolSpecificListener;
 import io.cattle.platform.eventing.annotation.EventHandler;
@@ -27,19 +28,40 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import com.codahale.metrics.Counter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicStringListProperty;
 
 public abstract class AbstractThreadPoolingEventService extends AbstractEventService implements InitializationTask {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractThreadPoolingEventService.class);
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Counter UNHANDLED = MetricsUtil.getRegistry().counter("event.unhandled");
+
+    private static final DynamicBooleanProperty STRIPED = ArchaiusUtil.getBoolean("eventing.striped.enabled");
+    private static final DynamicStringListProperty STRIPED_POOLS = ArchaiusUtil.getList("eventing.striped.pools");
+    private static final DynamicIntProperty STRIPED_LANES = ArchaiusUtil.getInt("eventing.striped.lanes");
+    private static final DynamicIntProperty STRIPED_QUEUE_SIZE = ArchaiusUtil.getInt("eventing.striped.queue.size");
+    private static final DynamicLongProperty STRIPED_OFFER_TIMEOUT = ArchaiusUtil.getLong("eventing.striped.offer.timeout.millis");
+
     String threadCountSetting = "eventing.pool.%s.count";
     String defaultPoolName = EventHandler.DEFAULT_POOL_KEY;
     List<NamedExecutorService> namedExecutorServiceList;
     Map<String, ExecutorService> executorServices;
     Map<String, Counter> dropped = new ConcurrentHashMap<String, Counter>();
+    Map<String, StripedEventExecutor> stripedExecutors = new HashMap<String, StripedEventExecutor>();
 
     protected void onEvent(String listenerKey, String eventName, byte[] bytes) {
         try {
+            if (!isHandled(listenerKey, eventName, JSON_FACTORY.createParser(bytes))) {
+                return;
+            }
+
             EventVO<?> event = jsonMapper.readValue(bytes, EventVO.class);
             if (eventName != null) {
                 event.setName(eventName);
@@ -60,6 +82,10 @@ public abstract class AbstractThreadPoolingEventService extends AbstractEventSer
         getEventLogIn().debug(eventString);
 
         try {
+            if (!isHandled(listenerKey, eventName, JSON_FACTORY.createParser(eventString))) {
+                return;
+            }
+
             EventVO<?> event = jsonMapper.readValue(eventString, EventVO.class);
             if (eventName != null) {
                 event.setName(eventName);
@@ -72,6 +98,49 @@ public abstract class AbstractThreadPoolingEventService extends AbstractEventSer
         }
     }
 
+    /**
+     * Checks for local listeners before the event is unmarshalled. If the name
+     * is not known from the transport only the top level fields of the event
+     * are scanned, up to the name.
+     */
+    protected boolean isHandled(String listenerKey, String eventName, JsonParser parser) throws IOException {
+        String name = eventName;
+        if (name == null) {
+            name = readName(parser);
+        }
+
+        if (name == null || hasEventListeners(name, listenerKey)) {
+            return true;
+        }
+
+        UNHANDLED.inc();
+        log.debug("No listeners found for [{}]", name);
+        return false;
+    }
+
+    protected String readName(JsonParser parser) throws IOException {
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                if ("name".equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+
+                parser.skipChildren();
+            }
+
+            return null;
+        } finally {
+            parser.close();
+        }
+    }
+
     protected void onEvent(final Event event) {
         new ManagedContextRunnable() {
             @Override
@@ -141,9 +210,14 @@ public abstract class AbstractThreadPoolingEventService extends AbstractEventSer
     }
 
     protected Executor getExecutor(Event event, EventListener listener) {
-        Executor executor = null;
+        String poolKey = null;
         if (listener instanceof PoolSpecificListener) {
-            executor = executorServices.get(((PoolSpecificListener) listener).getPoolKey());
+            poolKey = ((PoolSpecificListener) listener).getPoolKey();
+        }
+
+        Executor executor = getStripedExecutor(event, poolKey == null ? defaultPoolName : poolKey);
+        if (executor == null && poolKey != null) {
+            executor = executorServices.get(poolKey);
         }
 
         if (executor == null) {
@@ -153,6 +227,25 @@ public abstract class AbstractThreadPoolingEventService extends AbstractEventSer
         return executor;
     }
 
+    protected Executor getStripedExecutor(Event event, String poolKey) {
+        if (!STRIPED.get() || !STRIPED_POOLS.get().contains(poolKey)) {
+            return null;
+        }
+
+        /* Each pool has its own lanes so a slow handler in one can't hold up the others */
+        StripedEventExecutor striped;
+        synchronized (stripedExecutors) {
+            striped = stripedExecutors.get(poolKey);
+            if (striped == null) {
+                striped = new StripedEventExecutor(poolKey, STRIPED_LANES.get(), STRIPED_QUEUE_SIZE.get(),
+                        STRIPED_OFFER_TIMEOUT.get());
+                stripedExecutors.put(poolKey, striped);
+            }
+        }
+
+        return striped.getLane(event);
+    }
+
     protected Executor getDefaultExecutor() {
         return executorService;
     }
@@ -167,6 +260,12 @@ public abstract class AbstractThreadPoolingEventService extends AbstractEventSer
 
     @Override
     public void stop() {
+        synchronized (stripedExecutors) {
+            for (StripedEventExecutor striped : stripedExecutors.values()) {
+                striped.shutdown();
+            }
+            stripedExecutors.clear();
+        }
     }
 
     public String getThreadCountSetting() {
@@ -4,53 +4,46 @@ import io.cattle.platform.async.retry.Retry;
 import io.cattle.platform.eventing.EventListener;
 import io.cattle.platform.eventing.EventProgress;
 import io.cattle.platform.eventing.EventService;
-import io.cattle.platform.eventing.PoolSpecificListener;
 import io.cattle.platform.eventing.exception.EventExecutionException;
 import io.cattle.platform.eventing.model.Event;
 import io.cattle.platform.eventing.model.EventVO;
 
 import com.google.common.util.concurrent.SettableFuture;
 
-public class FutureEventListener implements EventListener, PoolSpecificListener {
+public class FutureEventListener implements EventListener {
 
     EventService eventService;
-    String replyTo;
     SettableFuture<Event> future;
     EventProgress progress;
     Event event;
-    boolean failed;
     Retry retry;
 
-    public FutureEventListener(EventService eventService, String replyTo) {
+    public FutureEventListener(EventService eventService, Event event, SettableFuture<Event> future, EventProgress progress) {
         super();
-        this.replyTo = replyTo;
         this.eventService = eventService;
+        this.event = event;
+        this.future = future;
+        this.progress = progress;
     }
 
     @Override
     public synchronized void onEvent(Event reply) {
-        if (future != null && event != null) {
-            String[] previous = reply.getPreviousIds();
-
-            if (previous != null && previous.length > 0 && previous[0].equals(event.getId())) {
-                EventVO<Object> replyWithName = new EventVO<Object>(reply);
-                replyWithName.setName(appendReply(event.getName()));
-
-                eventService.publish(replyWithName);
-
-                String transitioning = replyWithName.getTransitioning();
-
-                if (transitioning == null || Event.TRANSITIONING_NO.equals(transitioning)) {
-                    future.set(replyWithName);
-                } else if (Event.TRANSITIONING_ERROR.equals(transitioning)) {
-                    future.setException(EventExecutionException.fromEvent(replyWithName));
-                } else if (progress != null) {
-                    if (retry != null) {
-                        retry.setKeepalive(true);
-                    }
-                    progress.progress(replyWithName);
-                }
+        EventVO<Object> replyWithName = new EventVO<Object>(reply);
+        replyWithName.setName(appendReply(event.getName()));
+
+        eventService.publish(replyWithName);
+
+        String transitioning = replyWithName.getTransitioning();
+
+        if (transitioning == null || Event.TRANSITIONING_NO.equals(transitioning)) {
+            future.set(replyWithName);
+        } else if (Event.TRANSITIONING_ERROR.equals(transitioning)) {
+            future.setException(EventExecutionException.fromEvent(replyWithName));
+        } else if (progress != null) {
+            if (retry != null) {
+                retry.setKeepalive(true);
             }
+            progress.progress(replyWithName);
         }
     }
 
@@ -64,64 +57,18 @@ public class FutureEventListener implements EventListener, PoolSpecificListener
 
     }
 
-    public synchronized void reset() {
-        future = null;
-        event = null;
-        progress = null;
-        retry = null;
-    }
-
     public SettableFuture<Event> getFuture() {
         return future;
     }
 
-    public void setFuture(SettableFuture<Event> future) {
-        this.future = future;
-    }
-
-    public boolean isFailed() {
-        return failed;
-    }
-
-    public void setFailed(boolean failed) {
-        this.failed = failed;
-    }
-
     public Event getEvent() {
         return event;
     }
 
-    public void setEvent(Event event) {
-        this.event = event;
-    }
-
-    public String getReplyTo() {
-        return replyTo;
-    }
-
-    @Override
-    public boolean isAllowQueueing() {
-        return true;
-    }
-
-    @Override
-    public String getPoolKey() {
-        return "reply";
-    }
-
-    @Override
-    public int getQueueDepth() {
-        return 1000;
-    }
-
     public EventProgress getProgress() {
         return progress;
     }
 
-    public void setProgress(EventProgress progress) {
-        this.progress = progress;
-    }
-
     public Retry getRetry() {
         return retry;
     }
@@ -130,4 +77,4 @@ public class FutureEventListener implements EventListener, PoolSpecificListener
         this.retry = retry;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package io.cattle.platform.eventing.impl;
+
+import io.cattle.platform.eventing.EventListener;
+import io.cattle.platform.eventing.PoolSpecificListener;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.metrics.util.MetricsUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * Single reply subscription for all outstanding calls of an event service.
+ * Replies are routed to the waiting call by the id of the request, which is
+ * the first of the reply's previous ids.
+ */
+public class ReplyInbox implements EventListener, PoolSpecificListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplyInbox.class);
+
+    private static final Counter PENDING = MetricsUtil.getRegistry().counter("event.reply.pending");
+    private static final Counter ORPHANED = MetricsUtil.getRegistry().counter("event.reply.orphaned");
+
+    String replyTo;
+    ConcurrentMap<String, FutureEventListener> pending = new ConcurrentHashMap<String, FutureEventListener>();
+
+    public ReplyInbox(String replyTo) {
+        super();
+        this.replyTo = replyTo;
+    }
+
+    /**
+     * @return false if a call with the same request id is already waiting
+     */
+    public boolean add(String id, FutureEventListener listener) {
+        if (pending.putIfAbsent(id, listener) != null) {
+            return false;
+        }
+
+        PENDING.inc();
+        return true;
+    }
+
+    public void remove(String id, FutureEventListener listener) {
+        if (pending.remove(id, listener)) {
+            PENDING.dec();
+        }
+    }
+
+    @Override
+    public void onEvent(Event reply) {
+        String[] previous = reply.getPreviousIds();
+        FutureEventListener listener = null;
+
+        if (previous != null && previous.length > 0 && previous[0] != null) {
+            listener = pending.get(previous[0]);
+        }
+
+        if (listener == null) {
+            ORPHANED.inc();
+            log.debug("No pending call for reply [{}] to [{}]", reply.getId(), previous == null || previous.length == 0 ? null : previous[0]);
+            return;
+        }
+
+        listener.onEvent(reply);
+    }
+
+    public String getReplyTo() {
+        return replyTo;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public boolean isAllowQueueing() {
+        return true;
+    }
+
+    @Override
+    public String getPoolKey() {
+        return "reply";
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 1000;
+    }
+
+}
@@ -0,0 +1,144 @@
+package io.cattle.platform.eventing.impl;
+
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.metrics.util.MetricsUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+/**
+ * Fixed set of single threaded lanes for one pool. Events are assigned to a
+ * lane by resourceType:resourceId so all events for one resource are handled
+ * in the order they were received and never concurrently.
+ */
+public class StripedEventExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(StripedEventExecutor.class);
+
+    String name;
+    List<Lane> lanes;
+    Counter dropped;
+    volatile boolean running = true;
+
+    public StripedEventExecutor(String name, int laneCount, int queueSize, long offerTimeoutMillis) {
+        this.name = name;
+        this.dropped = MetricsUtil.getRegistry().counter(String.format("eventing.%s.lane.dropped", name));
+
+        lanes = new ArrayList<Lane>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new Lane(i, queueSize, offerTimeoutMillis));
+        }
+
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * @return the lane for the resource of the event or null if the event
+     *         does not reference a resource
+     */
+    public Executor getLane(Event event) {
+        String resourceType = event.getResourceType();
+        String resourceId = event.getResourceId();
+        if (resourceType == null || resourceId == null) {
+            return null;
+        }
+
+        int hash = (resourceType + ":" + resourceId).hashCode() & Integer.MAX_VALUE;
+        return lanes.get(hash % lanes.size());
+    }
+
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    private final class Lane implements Executor, Runnable {
+        BlockingQueue<Queued> queue;
+        long offerTimeoutMillis;
+        Thread thread;
+        Histogram depth;
+        Timer latency;
+        Counter blocked;
+
+        public Lane(int index, int queueSize, long offerTimeoutMillis) {
+            String prefix = String.format("eventing.%s.lane.%d", name, index);
+
+            this.queue = new LinkedBlockingQueue<Queued>(queueSize);
+            this.offerTimeoutMillis = offerTimeoutMillis;
+            this.depth = MetricsUtil.getRegistry().histogram(prefix + ".depth");
+            this.latency = MetricsUtil.getRegistry().timer(prefix + ".latency");
+            this.blocked = MetricsUtil.getRegistry().counter(prefix + ".blocked");
+            this.thread = new Thread(this, prefix);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Queued queued = new Queued(command);
+            depth.update(queue.size());
+
+            if (queue.offer(queued)) {
+                return;
+            }
+
+            blocked.inc();
+            try {
+                if (queue.offer(queued, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            dropped.inc();
+            log.error("Dropping event, lane [{}] is still full after [{}] ms", thread.getName(), offerTimeoutMillis);
+            throw new RejectedExecutionException("Lane [" + thread.getName() + "] is full");
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Queued queued = null;
+                try {
+                    queued = queue.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                try {
+                    queued.runnable.run();
+                } catch (Throwable t) {
+                    log.error("Uncaught exception in [{}]", thread.getName(), t);
+                } finally {
+                    latency.update(System.nanoTime() - queued.start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    private static final class Queued {
+        Runnable runnable;
+        long start = System.nanoTime();
+
+        public Queued(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+}
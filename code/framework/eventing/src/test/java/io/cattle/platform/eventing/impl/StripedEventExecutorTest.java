@@ -0,0 +1,137 @@
+package io.cattle.platform.eventing.impl;
+
+import static org.junit.Assert.*;
+import io.cattle.platform.eventing.model.EventVO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class StripedEventExecutorTest {
+
+    List<StripedEventExecutor> executors = new ArrayList<StripedEventExecutor>();
+
+    @After
+    public void tearDown() {
+        for (StripedEventExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSameResourceRunsInOrder() throws Exception {
+        StripedEventExecutor striped = executor("order", 4, 1000, 1000);
+        final List<Integer> seen = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            striped.getLane(event("instance", "1")).execute(new Runnable() {
+                @Override
+                public void run() {
+                    seen.add(value);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), seen.get(i));
+        }
+    }
+
+    @Test
+    public void testNoResourceHasNoLane() {
+        StripedEventExecutor striped = executor("none", 2, 10, 10);
+        assertNull(striped.getLane(event(null, null)));
+    }
+
+    @Test
+    public void testFullLaneBlocksThenDrops() throws Exception {
+        StripedEventExecutor striped = executor("full", 1, 1, 100);
+        Executor lane = striped.getLane(event("instance", "1"));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        lane.execute(block(release, started));
+        /* Wait for the lane to take the blocking task so the queue is empty */
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        lane.execute(noop());
+
+        long start = System.currentTimeMillis();
+        try {
+            lane.execute(noop());
+            fail("Expected the event to be rejected");
+        } catch (RejectedExecutionException e) {
+        }
+
+        assertTrue(System.currentTimeMillis() - start >= 90);
+        assertEquals(1, striped.dropped.getCount());
+        release.countDown();
+    }
+
+    @Test
+    public void testPoolsDoNotShareLanes() throws Exception {
+        StripedEventExecutor slow = executor("slow", 1, 10, 10);
+        StripedEventExecutor fast = executor("fast", 1, 10, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        slow.getLane(event("instance", "1")).execute(block(release, started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        fast.getLane(event("instance", "1")).execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    protected StripedEventExecutor executor(String name, int lanes, int queueSize, long offerTimeout) {
+        StripedEventExecutor executor = new StripedEventExecutor(name, lanes, queueSize, offerTimeout);
+        executors.add(executor);
+        return executor;
+    }
+
+    protected EventVO<Object> event(String resourceType, String resourceId) {
+        EventVO<Object> event = EventVO.newEvent("test");
+        event.setResourceType(resourceType);
+        event.setResourceId(resourceId);
+        return event;
+    }
+
+    protected Runnable block(final CountDownLatch release, final CountDownLatch started) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+    }
+
+    protected Runnable noop() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+}
@@ -2,7 +2,10 @@ package io.cattle.platform.db.jooq.converter;
 
 import io.cattle.platform.db.jooq.converter.impl.JsonUnmodifiableMap;
 import io.cattle.platform.json.JacksonJsonMapper;
+import io.cattle.platform.json.JsonCodec;
+import io.cattle.platform.json.JsonCodecs;
 import io.cattle.platform.json.JsonMapper;
+import io.cattle.platform.json.TextJsonCodec;
 import io.cattle.platform.util.exception.ExceptionUtils;
 
 import java.io.IOException;
@@ -20,6 +23,7 @@ public class DataConverter implements Converter<String, Map<String, Object>> {
     private static final long serialVersionUID = 8496703546902403178L;
 
     JsonMapper mapper = new JacksonJsonMapper();
+    JsonCodec textCodec = new TextJsonCodec(mapper);
 
     @Override
     public Map<String, Object> from(String databaseObject) {
@@ -27,8 +31,11 @@ public class DataConverter implements Converter<String, Map<String, Object>> {
             return null;
         }
 
+        /* Columns can also hold values written directly with a binary codec, see JsonCodecs */
+        JsonCodec codec = JsonCodecs.forText(databaseObject);
+
         try {
-            return new JsonUnmodifiableMap<String, Object>(mapper, databaseObject);
+            return new JsonUnmodifiableMap<String, Object>(codec == null ? textCodec : codec, databaseObject);
         } catch (IOException e) {
             log.error("Failed to unmarshall [{}]", databaseObject, e);
             Map<String, Object> result = new HashMap<String, Object>();
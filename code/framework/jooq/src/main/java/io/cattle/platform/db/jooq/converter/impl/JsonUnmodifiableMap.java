@@ -1,6 +1,8 @@
 package io.cattle.platform.db.jooq.converter.impl;
 
+import io.cattle.platform.json.JsonCodec;
 import io.cattle.platform.json.JsonMapper;
+import io.cattle.platform.json.TextJsonCodec;
 import io.cattle.platform.util.type.UnmodifiableMap;
 
 import java.io.IOException;
@@ -12,13 +14,17 @@ import java.util.Set;
 public class JsonUnmodifiableMap<K, V> implements UnmodifiableMap<K, V> {
 
     Map<K, V> map;
-    JsonMapper jsonMapper;
+    JsonCodec codec;
     String text;
 
-    @SuppressWarnings("unchecked")
     public JsonUnmodifiableMap(JsonMapper mapper, String text) throws IOException {
-        this.map = (Map<K, V>) Collections.unmodifiableMap(mapper.readValue(text));
-        this.jsonMapper = mapper;
+        this(new TextJsonCodec(mapper), text);
+    }
+
+    @SuppressWarnings("unchecked")
+    public JsonUnmodifiableMap(JsonCodec codec, String text) throws IOException {
+        this.map = (Map<K, V>) Collections.unmodifiableMap(codec.decode(text));
+        this.codec = codec;
         this.text = text;
     }
 
@@ -101,7 +107,7 @@ public class JsonUnmodifiableMap<K, V> implements UnmodifiableMap<K, V> {
     @Override
     public Map<K, V> getModifiableCopy() {
         try {
-            return (Map<K, V>) jsonMapper.readValue(text);
+            return (Map<K, V>) codec.decode(text);
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
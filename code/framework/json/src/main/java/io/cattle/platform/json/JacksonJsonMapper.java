@@ -9,6 +9,7 @@ import java.util.Map;
 
 import javax.annotation.PostConstruct;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.Module;
@@ -29,7 +30,15 @@ public class JacksonJsonMapper implements JsonMapper {
     List<Module> modules;
 
     public JacksonJsonMapper() {
-        mapper = new ObjectMapper();
+        this((JsonFactory) null);
+    }
+
+    /**
+     * Same configuration as the default mapper, but reading and writing the
+     * format of the given factory, for example Smile.
+     */
+    public JacksonJsonMapper(JsonFactory factory) {
+        mapper = new ObjectMapper(factory);
         // mapper.setSerializationInclusion(Include.NON_NULL);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
@@ -0,0 +1,19 @@
+package io.cattle.platform.json;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encodes objects into text that can be stored in a JSON TEXT column. Codecs
+ * other than plain JSON mark their output with a prefix so that
+ * {@link JsonCodecs#forText(String)} can pick the right one when reading.
+ */
+public interface JsonCodec {
+
+    String getName();
+
+    String encode(Object object) throws IOException;
+
+    Map<String, Object> decode(String text) throws IOException;
+
+}
@@ -0,0 +1,54 @@
+package io.cattle.platform.json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonCodecs {
+
+    public static final String JSON = "json";
+    public static final String SMILE = "smile";
+    public static final String SMILE_DEFLATE = "smile+deflate";
+
+    /**
+     * Can never start a JSON document, so plain JSON text is never mistaken
+     * for an encoded value
+     */
+    public static final String PREFIX = "@";
+
+    private static final JsonCodec TEXT = new TextJsonCodec(new JacksonJsonMapper());
+    private static final Map<String, SmileJsonCodec> ENCODED = new HashMap<String, SmileJsonCodec>();
+
+    static {
+        for (SmileJsonCodec codec : new SmileJsonCodec[] { new SmileJsonCodec(false), new SmileJsonCodec(true) }) {
+            ENCODED.put(codec.getName(), codec);
+        }
+    }
+
+    /**
+     * @return the codec for the given name, falling back to plain JSON if the
+     *         name is not known
+     */
+    public static JsonCodec getCodec(String name) {
+        JsonCodec codec = ENCODED.get(name);
+        return codec == null ? TEXT : codec;
+    }
+
+    /**
+     * @return the codec that produced the given text, or null if it is plain
+     *         JSON
+     */
+    public static JsonCodec forText(String text) {
+        if (text == null || !text.startsWith(PREFIX)) {
+            return null;
+        }
+
+        for (SmileJsonCodec codec : ENCODED.values()) {
+            if (text.startsWith(codec.getPrefix())) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+
+}
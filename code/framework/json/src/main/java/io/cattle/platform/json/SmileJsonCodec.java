@@ -0,0 +1,84 @@
+package io.cattle.platform.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary Smile encoding, optionally deflated, stored as base64 text so it fits
+ * the existing TEXT columns.
+ */
+public class SmileJsonCodec implements JsonCodec {
+
+    private static final Base64Variant BASE64 = Base64Variants.MIME_NO_LINEFEEDS;
+
+    JsonMapper mapper = new JacksonJsonMapper(new SmileFactory());
+    boolean deflate;
+    String name;
+    String prefix;
+
+    public SmileJsonCodec(boolean deflate) {
+        this.deflate = deflate;
+        this.name = deflate ? JsonCodecs.SMILE_DEFLATE : JsonCodecs.SMILE;
+        this.prefix = JsonCodecs.PREFIX + name + ":";
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String encode(Object object) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        OutputStream os = deflate ? new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED)) : baos;
+
+        mapper.writeValue(os, object);
+        os.close();
+
+        StringBuilder text = new StringBuilder(prefix.length() + baos.size() * 4 / 3 + 4);
+        text.append(prefix);
+        text.append(BASE64.encode(baos.toByteArray()));
+        return text.toString();
+    }
+
+    @Override
+    public Map<String, Object> decode(String text) throws IOException {
+        if (!text.startsWith(prefix)) {
+            throw new IOException("Text is not encoded with [" + name + "]");
+        }
+
+        byte[] bytes;
+        try {
+            bytes = BASE64.decode(text.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+
+        InputStream is = new ByteArrayInputStream(bytes);
+        if (deflate) {
+            is = new InflaterInputStream(is);
+        }
+
+        try {
+            return mapper.readValue(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+}
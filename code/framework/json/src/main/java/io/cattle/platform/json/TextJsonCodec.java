@@ -0,0 +1,29 @@
+package io.cattle.platform.json;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class TextJsonCodec implements JsonCodec {
+
+    JsonMapper mapper;
+
+    public TextJsonCodec(JsonMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public String getName() {
+        return JsonCodecs.JSON;
+    }
+
+    @Override
+    public String encode(Object object) throws IOException {
+        return mapper.writeValueAsString(object);
+    }
+
+    @Override
+    public Map<String, Object> decode(String text) throws IOException {
+        return mapper.readValue(text);
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.cattle.platform.json;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonCodecsTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> value = value();
+
+        for (String name : new String[] { JsonCodecs.JSON, JsonCodecs.SMILE, JsonCodecs.SMILE_DEFLATE }) {
+            JsonCodec codec = JsonCodecs.getCodec(name);
+            assertEquals(name, codec.getName());
+
+            String text = codec.encode(value);
+            JsonCodec reader = JsonCodecs.forText(text);
+            if (JsonCodecs.JSON.equals(name)) {
+                assertNull(reader);
+                reader = codec;
+            }
+
+            assertEquals(name, reader.getName());
+            assertEquals(value, reader.decode(text));
+        }
+    }
+
+    @Test
+    public void testDeflateIsSmaller() throws Exception {
+        Map<String, Object> value = value();
+
+        String json = JsonCodecs.getCodec(JsonCodecs.JSON).encode(value);
+        String deflated = JsonCodecs.getCodec(JsonCodecs.SMILE_DEFLATE).encode(value);
+
+        assertTrue(deflated.length() < json.length());
+    }
+
+    @Test
+    public void testUnknownFallsBackToJson() {
+        assertEquals(JsonCodecs.JSON, JsonCodecs.getCodec("bogus").getName());
+        assertEquals(JsonCodecs.JSON, JsonCodecs.getCodec(null).getName());
+        assertNull(JsonCodecs.forText("{\"a\":1}"));
+        assertNull(JsonCodecs.forText("@bogus:abc"));
+    }
+
+    protected Map<String, Object> value() {
+        List<Object> executions = new ArrayList<Object>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> execution = new HashMap<String, Object>();
+            execution.put("name", "instance.start");
+            execution.put("startTime", 1400000000000L + i);
+            execution.put("exitReason", "DONE");
+            executions.add(execution);
+        }
+
+        Map<String, Object> value = new HashMap<String, Object>();
+        value.put("uuid", "a4f8c2e0-1c9d-4b57-9d4e-2c8a53a1b0aa");
+        value.put("executions", executions);
+        return value;
+    }
+
+}
@@ -1,6 +1,7 @@
 package io.cattle.platform.agent.instance.process;
 
 import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.configitem.model.Client;
 import io.cattle.platform.configitem.request.ConfigUpdateRequest;
 import io.cattle.platform.configitem.request.util.ConfigUpdateRequestUtils;
 import io.cattle.platform.configitem.version.ConfigItemStatusManager;
@@ -14,8 +15,11 @@ import io.cattle.platform.json.JsonMapper;
 import io.cattle.platform.object.util.ObjectUtils;
 import io.cattle.platform.process.common.handler.AbstractObjectProcessLogic;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -68,20 +72,40 @@ public abstract class AbstractApplyItems extends AbstractObjectProcessLogic impl
 
         setItems(request, apply, increment);
 
+        Map<Client, String> others = new LinkedHashMap<Client, String>();
         for (Agent otherAgent : getOtherAgents(provider, request, agent, state, processInstance)) {
             if (otherAgent.getId().equals(agent.getId())) {
                 continue;
             }
 
             String context = getContext(processInstance, otherAgent);
-            ConfigUpdateRequest otherRequest = ConfigUpdateRequestUtils.getRequest(jsonMapper, state, context);
-            if (otherRequest == null) {
-                otherRequest = ConfigUpdateRequest.forResource(Agent.class, otherAgent.getId());
-                setItems(otherRequest, apply, increment);
+            if (ConfigUpdateRequestUtils.getRequest(jsonMapper, state, context) == null) {
+                others.put(new Client(Agent.class, otherAgent.getId()), context);
+            }
+        }
+
+        if (others.size() == 0) {
+            return;
+        }
+
+        /* Increment on all the other agents in one go rather than one agent at a time */
+        Map<Client, Map<String, Long>> versions = increment.size() == 0 ? Collections.<Client, Map<String, Long>> emptyMap()
+                : statusManager.updateConfig(others.keySet(), increment);
+
+        for (Map.Entry<Client, String> other : others.entrySet()) {
+            ConfigUpdateRequest otherRequest = new ConfigUpdateRequest(other.getKey());
+            setItems(otherRequest, apply, Collections.<String> emptySet());
+
+            Map<String, Long> incremented = versions.get(other.getKey());
+            for (String item : increment) {
+                otherRequest.addItem(item).withApply(false).withIncrement(false).withCheckInSyncOnly(false)
+                        .withRequestedVersion(incremented == null ? null : incremented.get(item));
+            }
 
+            if (apply.size() > 0) {
                 statusManager.updateConfig(otherRequest);
-                ConfigUpdateRequestUtils.setRequest(otherRequest, state, context);
             }
+            ConfigUpdateRequestUtils.setRequest(otherRequest, state, other.getValue());
         }
     }
 
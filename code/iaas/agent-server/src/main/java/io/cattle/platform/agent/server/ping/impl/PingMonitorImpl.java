@@ -22,10 +22,13 @@ import io.cattle.platform.object.process.ObjectProcessManager;
 import io.cattle.platform.task.Task;
 import io.cattle.platform.task.TaskOptions;
 
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.apache.cloudstack.managed.context.ManagedContextRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +37,7 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.netflix.config.DynamicBooleanProperty;
 import com.netflix.config.DynamicLongProperty;
 
 public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
@@ -45,6 +49,8 @@ public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
     private static final DynamicLongProperty PING_RESOURCES_EVERY = ArchaiusUtil.getLong("agent.ping.resources.every");
     private static final DynamicLongProperty PING_INSTANCES_EVERY = ArchaiusUtil.getLong("agent.ping.instances.every");
     private static final DynamicLongProperty PING_SCHEDULE = ArchaiusUtil.getLong("task.agent.ping.schedule");
+    private static final DynamicLongProperty PING_RELOAD_EVERY = ArchaiusUtil.getLong("agent.ping.agents.reload.every");
+    private static final DynamicBooleanProperty PING_SPREAD = ArchaiusUtil.getBoolean("agent.ping.spread");
 
     private static final Logger log = LoggerFactory.getLogger(PingMonitorImpl.class);
 
@@ -55,6 +61,8 @@ public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
     LockDelegator lockDelegator;
     AgentLocator agentLocator;
     ListeningExecutorService executorService;
+    ScheduledExecutorService scheduledExecutorService;
+    List<? extends Agent> agents;
     LoadingCache<Long, PingStatus> status = CacheBuilder.newBuilder().expireAfterAccess(PING_SCHEDULE.get() * 3, TimeUnit.SECONDS).build(
             new CacheLoader<Long, PingStatus>() {
                 @Override
@@ -63,42 +71,40 @@ public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
                 }
             });
 
-    protected void handleUnowned(Agent agent) {
-        if (isInterval(PING_UNMANAGED_EVERY.get())) {
+    protected void handleUnowned(Agent agent, PingStatus agentStatus) {
+        if (agentStatus.isInterval(PING_UNMANAGED_EVERY.get())) {
             RemoteAgent remoteAgent = agentLocator.lookupAgent(agent);
             remoteAgent.publish(AgentUtils.newPing(agent));
         }
     }
 
-    protected void handleOwned(Agent agent) {
+    protected void handleOwned(Agent agent, PingStatus agentStatus) {
         Ping ping = AgentUtils.newPing(agent);
 
-        if (isInterval(PING_STATS_EVERY.get())) {
+        if (agentStatus.isInterval(PING_STATS_EVERY.get())) {
             ping.setOption(Ping.STATS, true);
         }
 
-        if (isInterval(PING_RESOURCES_EVERY.get())) {
+        if (agentStatus.isInterval(PING_RESOURCES_EVERY.get())) {
             ping.setOption(Ping.RESOURCES, true);
         }
 
-        if (isInterval(PING_INSTANCES_EVERY.get())) {
+        if (agentStatus.isInterval(PING_INSTANCES_EVERY.get())) {
             ping.setOption(Ping.INSTANCES, true);
         }
 
         doPing(agent, ping);
     }
 
-    protected boolean isInterval(long every) {
-        return interation % every == 0;
-    }
-
     protected void ping(Agent agent) {
+        PingStatus agentStatus = status.getUnchecked(agent.getId());
         LockDefinition lockDef = AgentConnectionUtils.getConnectionLock(agent);
         if (lockDelegator.isLocked(lockDef)) {
-            handleOwned(agent);
+            handleOwned(agent, agentStatus);
         } else {
-            handleUnowned(agent);
+            handleUnowned(agent, agentStatus);
         }
+        agentStatus.next();
     }
 
     protected void doPing(final Agent agent, Ping ping) {
@@ -142,10 +148,37 @@ public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
 
     @Override
     public void run() {
-        for (Agent agent : pingDao.findAgentsToPing()) {
-            ping(agent);
+        List<? extends Agent> agents = this.agents;
+        if (agents == null || PING_RELOAD_EVERY.get() <= 1 || interation % PING_RELOAD_EVERY.get() == 0) {
+            agents = pingDao.findAgentsToPing();
+            this.agents = agents;
         }
         interation++;
+
+        if (!PING_SPREAD.get()) {
+            for (Agent agent : agents) {
+                ping(agent);
+            }
+            return;
+        }
+
+        /* Each agent is pinged at a fixed point of the tick based on a hash of its id, so pings
+         * and their replies are spread evenly over the tick instead of all sent at once */
+        long window = PING_SCHEDULE.get() * 1000;
+        for (final Agent agent : agents) {
+            long offset = status.getUnchecked(agent.getId()).getOffset(window);
+            scheduledExecutorService.schedule(new ManagedContextRunnable() {
+                @Override
+                protected void runInContext() {
+                    try {
+                        ping(agent);
+                    } catch (RuntimeException e) {
+                        /* Nothing reads the future, so log here or the failure is lost */
+                        log.error("Failed to ping agent [{}]", agent.getId(), e);
+                    }
+                }
+            }, offset, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -199,6 +232,15 @@ public class PingMonitorImpl implements PingMonitor, Task, TaskOptions {
         this.executorService = executorService;
     }
 
+    public ScheduledExecutorService getScheduledExecutorService() {
+        return scheduledExecutorService;
+    }
+
+    @Inject
+    public void setScheduledExecutorService(ScheduledExecutorService scheduledExecutorService) {
+        this.scheduledExecutorService = scheduledExecutorService;
+    }
+
     public ObjectProcessManager getProcessManager() {
         return processManager;
     }
@@ -3,16 +3,39 @@ package io.cattle.platform.agent.server.ping.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.hash.Hashing;
+
 public class PingStatus {
 
     private static final Logger log = LoggerFactory.getLogger(PingStatus.class);
 
     long agentId;
     int failures = 0;
+    int hash;
+    long iteration;
 
     public PingStatus(long agentId) {
         super();
         this.agentId = agentId;
+        this.hash = Hashing.murmur3_32().hashLong(agentId).asInt() & Integer.MAX_VALUE;
+        // Start agents at different points so the larger payloads don't all land on the same tick
+        this.iteration = hash;
+    }
+
+    /**
+     * @return where in a window of the given length this agent is pinged,
+     *         stable for the agent regardless of what other agents exist
+     */
+    public long getOffset(long window) {
+        return window <= 0 ? 0 : hash % window;
+    }
+
+    public boolean isInterval(long every) {
+        return every > 0 && iteration % every == 0;
+    }
+
+    public void next() {
+        iteration++;
     }
 
     public void success() {
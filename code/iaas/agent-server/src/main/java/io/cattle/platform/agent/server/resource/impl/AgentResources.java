@@ -3,6 +3,7 @@ package io.cattle.platform.agent.server.resource.impl;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -17,13 +18,19 @@ public class AgentResources {
     Map<String, Map<String, Object>> hosts = new TreeMap<>();
     Map<String, Map<String, Object>> storagePools = new TreeMap<>();
     Map<String, Map<String, Object>> ipAddresses = new TreeMap<>();
-    String hash = null;
 
-    public String getHash() {
-        if (hash != null) {
-            return hash;
-        }
+    public boolean hasContent() {
+        return hosts.size() > 0;
+    }
 
+    public boolean isEmpty() {
+        return hosts.isEmpty() && storagePools.isEmpty() && ipAddresses.isEmpty();
+    }
+
+    /**
+     * Hash of one resource's fields in key order, skipping the excluded keys
+     */
+    public static String hash(Map<String, Object> data, Collection<String> exclude) {
         MessageDigest md;
         try {
             md = MessageDigest.getInstance("SHA1");
@@ -31,31 +38,22 @@ public class AgentResources {
             throw new RuntimeException("Failed to find SHA1 digest", e);
         }
 
-        hashMap(md, hosts);
-        hashMap(md, storagePools);
-        hashMap(md, ipAddresses);
-
-        return Hex.encodeHexString(md.digest());
-    }
-
-    public boolean hasContent() {
-        return hosts.size() > 0;
-    }
-
-    protected void hashMap(MessageDigest md, Map<String, Map<String, Object>> data) {
-        for (Map<String, Object> value : data.values()) {
-            for (Map.Entry<String, Object> entry : value.entrySet()) {
-                try {
-                    md.update(entry.getKey().getBytes("UTF-8"));
-                    Object obj = entry.getValue();
-                    if (obj != null) {
-                        md.update(obj.toString().getBytes("UTF-8"));
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    log.error("Failed to hash [{}]", entry, e);
+        for (Map.Entry<String, Object> entry : new TreeMap<>(data).entrySet()) {
+            if (exclude.contains(entry.getKey())) {
+                continue;
+            }
+            try {
+                md.update(entry.getKey().getBytes("UTF-8"));
+                Object obj = entry.getValue();
+                if (obj != null) {
+                    md.update(obj.toString().getBytes("UTF-8"));
                 }
+            } catch (UnsupportedEncodingException e) {
+                log.error("Failed to hash [{}]", entry, e);
             }
         }
+
+        return Hex.encodeHexString(md.digest());
     }
 
     public void setHost(String uuid, Map<String, Object> data) {
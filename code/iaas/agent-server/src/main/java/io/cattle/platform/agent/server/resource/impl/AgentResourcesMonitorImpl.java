@@ -28,7 +28,9 @@ import io.cattle.platform.object.ObjectManager;
 import io.cattle.platform.object.meta.ObjectMetaDataManager;
 import io.cattle.platform.object.util.DataAccessor;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -42,11 +44,14 @@ import org.slf4j.LoggerFactory;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicStringListProperty;
 
 public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
 
     private static final Logger log = LoggerFactory.getLogger(AgentResourcesMonitorImpl.class);
     private static final DynamicLongProperty CACHE_RESOURCE = ArchaiusUtil.getLong("agent.resource.monitor.cache.resource.seconds");
+    private static final DynamicStringListProperty VOLATILE_FIELDS = ArchaiusUtil.getList("agent.resource.monitor.volatile.fields");
+    private static final DynamicLongProperty VOLATILE_THROTTLE = ArchaiusUtil.getLong("agent.resource.monitor.volatile.throttle.seconds");
 
     private static final String[] UPDATABLE_HOST_FIELDS = new String[] { HostConstants.FIELD_API_PROXY, HostConstants.FIELD_INFO };
 
@@ -66,7 +71,7 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
     LockDelegator lockDelegator;
     @Inject
     LockManager lockManager;
-    Cache<String, Boolean> resourceCache;
+    Cache<String, ResourceState> resourceCache;
 
     public AgentResourcesMonitorImpl() {
         super();
@@ -80,7 +85,8 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
     }
 
     protected void buildCache() {
-        resourceCache = CacheBuilder.newBuilder().expireAfterWrite(CACHE_RESOURCE.get(), TimeUnit.SECONDS).build();
+        /* Entries are read on every ping, so they only expire for resources that are no longer reported */
+        resourceCache = CacheBuilder.newBuilder().expireAfterAccess(CACHE_RESOURCE.get(), TimeUnit.SECONDS).build();
     }
 
     @Override
@@ -105,9 +111,7 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
             return;
         }
 
-        Boolean done = resourceCache.getIfPresent(resources.getHash());
-
-        if (done != null && done.booleanValue()) {
+        if (getChanged(agentId, resources).isEmpty()) {
             return;
         }
 
@@ -116,25 +120,84 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
         lockManager.lock(new AgentResourceCreateLock(agent), new LockCallbackNoReturn() {
             @Override
             public void doWithLockNoResult() {
-                Boolean done = resourceCache.getIfPresent(resources.getHash());
-
-                if (done != null && done.booleanValue()) {
+                AgentResources changed = getChanged(agent.getId(), resources);
+                if (changed.isEmpty()) {
                     return;
                 }
 
-                Map<String, Host> hosts = setHosts(agent, resources);
-                setStoragePools(hosts, agent, resources);
-                setIpAddresses(hosts, agent, resources);
+                Map<String, Host> hosts = setHosts(agent, changed);
+                setStoragePools(hosts, agent, changed);
+                setIpAddresses(hosts, agent, changed);
 
-                resourceCache.put(resources.getHash(), true);
+                written(agent.getId(), changed);
             }
         });
     }
 
+    /**
+     * @return the hosts, pools and IPs whose content differs from what was
+     *         last written. Changes only to volatile fields count once the
+     *         last write of the resource is older than the throttle.
+     */
+    protected AgentResources getChanged(long agentId, AgentResources resources) {
+        AgentResources changed = new AgentResources();
+        filterChanged(agentId, HostConstants.TYPE, resources.getHosts(), changed.getHosts());
+        filterChanged(agentId, StoragePoolConstants.TYPE, resources.getStoragePools(), changed.getStoragePools());
+        filterChanged(agentId, IpAddressConstants.TYPE, resources.getIpAddresses(), changed.getIpAddresses());
+        return changed;
+    }
+
+    protected void filterChanged(long agentId, String type, Map<String, Map<String, Object>> reported, Map<String, Map<String, Object>> changed) {
+        List<String> volatileFields = VOLATILE_FIELDS.get();
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, Map<String, Object>> entry : reported.entrySet()) {
+            ResourceState state = resourceCache.getIfPresent(getKey(agentId, type, entry.getKey()));
+            if (state == null) {
+                changed.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            String full = AgentResources.hash(entry.getValue(), Collections.<String> emptyList());
+            if (full.equals(state.fullHash)) {
+                continue;
+            }
+
+            String stable = AgentResources.hash(entry.getValue(), volatileFields);
+            if (!stable.equals(state.stableHash) || now - state.written >= VOLATILE_THROTTLE.get() * 1000) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    protected void written(long agentId, AgentResources changed) {
+        written(agentId, HostConstants.TYPE, changed.getHosts());
+        written(agentId, StoragePoolConstants.TYPE, changed.getStoragePools());
+        written(agentId, IpAddressConstants.TYPE, changed.getIpAddresses());
+    }
+
+    protected void written(long agentId, String type, Map<String, Map<String, Object>> resources) {
+        for (Map.Entry<String, Map<String, Object>> entry : resources.entrySet()) {
+            resourceCache.put(getKey(agentId, type, entry.getKey()), new ResourceState(
+                    AgentResources.hash(entry.getValue(), VOLATILE_FIELDS.get()),
+                    AgentResources.hash(entry.getValue(), Collections.<String> emptyList())));
+        }
+    }
+
+    protected String getKey(long agentId, String type, String uuid) {
+        return agentId + ":" + type + ":" + uuid;
+    }
+
+    /**
+     * Pools that could not be written are removed from resources so they are
+     * not recorded as written and are tried again on the next ping.
+     */
     protected Map<String, StoragePool> setStoragePools(Map<String, Host> hosts, Agent agent, AgentResources resources) {
         Map<String, StoragePool> pools = agentDao.getStoragePools(agent.getId());
 
-        for (Map.Entry<String, Map<String, Object>> poolData : resources.getStoragePools().entrySet()) {
+        Iterator<Map.Entry<String, Map<String, Object>>> iter = resources.getStoragePools().entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, Map<String, Object>> poolData = iter.next();
             String uuid = poolData.getKey();
             Map<String, Object> data = poolData.getValue();
 
@@ -145,6 +208,7 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
             Host host = hosts.get(ObjectUtils.toString(data.get(HostConstants.FIELD_HOST_UUID), null));
 
             if (host == null) {
+                iter.remove();
                 continue;
             }
 
@@ -155,13 +219,20 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
         return pools;
     }
 
+    /**
+     * Same as {@link #setStoragePools(Map, Agent, AgentResources)}, IPs
+     * without a host are removed from resources.
+     */
     protected void setIpAddresses(Map<String, Host> hosts, Agent agent, AgentResources resources) {
-        for (Map.Entry<String, Map<String, Object>> ipData : resources.getIpAddresses().entrySet()) {
+        Iterator<Map.Entry<String, Map<String, Object>>> iter = resources.getIpAddresses().entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, Map<String, Object>> ipData = iter.next();
             String address = ipData.getKey();
             Map<String, Object> data = ipData.getValue();
             Host host = hosts.get(ObjectUtils.toString(data.get(HostConstants.FIELD_HOST_UUID), null));
 
             if (host == null) {
+                iter.remove();
                 continue;
             }
 
@@ -302,4 +373,16 @@ public class AgentResourcesMonitorImpl implements AgentResourcesEventListener {
 
         return resources;
     }
+
+    private static final class ResourceState {
+        String stableHash;
+        String fullHash;
+        long written = System.currentTimeMillis();
+
+        public ResourceState(String stableHash, String fullHash) {
+            this.stableHash = stableHash;
+            this.fullHash = fullHash;
+        }
+    }
+
 }
@@ -0,0 +1,95 @@
+package io.cattle.platform.agent.server.ping.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.agent.AgentLocator;
+import io.cattle.platform.agent.RemoteAgent;
+import io.cattle.platform.agent.server.ping.dao.PingDao;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.eventing.EventCallOptions;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.framework.event.Ping;
+import io.cattle.platform.lock.LockDelegator;
+import io.cattle.platform.lock.definition.LockDefinition;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cloudstack.managed.context.ManagedContextRunnable;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.config.ConfigurationManager;
+
+public class PingMonitorImplTest {
+
+    PingMonitorImpl monitor;
+    ScheduledExecutorService executor;
+    AgentLocator agentLocator;
+    RemoteAgent remoteAgent;
+    Agent agent;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("task.agent.ping.schedule", 5);
+        ConfigurationManager.getConfigInstance().setProperty("agent.ping.spread", true);
+        ConfigurationManager.getConfigInstance().setProperty("agent.ping.agents.reload.every", 6);
+        ConfigurationManager.getConfigInstance().setProperty("agent.ping.timeout.seconds", 5);
+    }
+
+    @Before
+    public void setup() {
+        agent = mock(Agent.class);
+        when(agent.getId()).thenReturn(1L);
+
+        PingDao pingDao = mock(PingDao.class);
+        doReturn(Arrays.asList(agent)).when(pingDao).findAgentsToPing();
+
+        LockDelegator lockDelegator = mock(LockDelegator.class);
+        when(lockDelegator.isLocked(any(LockDefinition.class))).thenReturn(true);
+
+        remoteAgent = mock(RemoteAgent.class);
+        when(remoteAgent.call(any(Event.class), eq(Ping.class), any(EventCallOptions.class))).thenReturn(SettableFuture.<Ping> create());
+        agentLocator = mock(AgentLocator.class);
+        when(agentLocator.lookupAgent(agent)).thenReturn(remoteAgent);
+
+        executor = mock(ScheduledExecutorService.class);
+
+        monitor = new PingMonitorImpl();
+        monitor.setPingDao(pingDao);
+        monitor.setLockDelegator(lockDelegator);
+        monitor.setAgentLocator(agentLocator);
+        monitor.setScheduledExecutorService(executor);
+    }
+
+    @Test
+    public void testPingScheduledInManagedContext() {
+        monitor.run();
+
+        Runnable runnable = scheduled().get(0);
+        assertTrue(runnable instanceof ManagedContextRunnable);
+
+        runnable.run();
+        verify(remoteAgent).call(any(Event.class), eq(Ping.class), any(EventCallOptions.class));
+    }
+
+    @Test
+    public void testFailedPingDoesNotEscape() {
+        when(agentLocator.lookupAgent(agent)).thenThrow(new IllegalStateException());
+
+        monitor.run();
+        scheduled().get(0).run();
+    }
+
+    protected List<Runnable> scheduled() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(captor.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        return captor.getAllValues();
+    }
+
+}
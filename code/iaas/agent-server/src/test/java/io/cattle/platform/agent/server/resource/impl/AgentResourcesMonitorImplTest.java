@@ -0,0 +1,179 @@
+package io.cattle.platform.agent.server.resource.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.core.constants.HostConstants;
+import io.cattle.platform.core.constants.IpAddressConstants;
+import io.cattle.platform.core.constants.StoragePoolConstants;
+import io.cattle.platform.core.dao.AgentDao;
+import io.cattle.platform.core.dao.IpAddressDao;
+import io.cattle.platform.core.dao.StoragePoolDao;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.Host;
+import io.cattle.platform.core.model.IpAddress;
+import io.cattle.platform.core.model.StoragePool;
+import io.cattle.platform.framework.event.Ping;
+import io.cattle.platform.lock.LockCallback;
+import io.cattle.platform.lock.LockDelegator;
+import io.cattle.platform.lock.LockManager;
+import io.cattle.platform.lock.definition.LockDefinition;
+import io.cattle.platform.object.ObjectManager;
+import io.cattle.platform.object.meta.ObjectMetaDataManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.netflix.config.ConfigurationManager;
+
+public class AgentResourcesMonitorImplTest {
+
+    AgentResourcesMonitorImpl monitor;
+    AgentDao agentDao;
+    StoragePoolDao storagePoolDao;
+    IpAddressDao ipAddressDao;
+    ObjectManager objectManager;
+    LockManager lockManager;
+    Map<String, Host> hosts;
+    Host host;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("agent.resource.monitor.cache.resource.seconds", 300);
+        ConfigurationManager.getConfigInstance().setProperty("agent.resource.monitor.volatile.fields", "info");
+        ConfigurationManager.getConfigInstance().setProperty("agent.resource.monitor.volatile.throttle.seconds", 300);
+    }
+
+    @Before
+    public void setup() {
+        host = mock(Host.class);
+        hosts = new HashMap<String, Host>();
+        hosts.put("host1", host);
+
+        agentDao = mock(AgentDao.class);
+        when(agentDao.getHosts(1L)).thenAnswer(new Answer<Map<String, Host>>() {
+            @Override
+            public Map<String, Host> answer(InvocationOnMock invocation) throws Throwable {
+                return new HashMap<String, Host>(hosts);
+            }
+        });
+        when(agentDao.getStoragePools(1L)).thenReturn(new HashMap<String, StoragePool>());
+
+        Agent agent = mock(Agent.class);
+        when(agent.getId()).thenReturn(1L);
+
+        IpAddress ip = mock(IpAddress.class);
+        when(ip.getAddress()).thenReturn("10.0.0.1");
+
+        objectManager = mock(ObjectManager.class);
+        when(objectManager.loadResource(Agent.class, 1L)).thenReturn(agent);
+        when(objectManager.mappedChildren(any(), eq(IpAddress.class))).thenReturn(Arrays.asList(ip));
+
+        LockDelegator lockDelegator = mock(LockDelegator.class);
+        when(lockDelegator.isLocked(any(LockDefinition.class))).thenReturn(true);
+
+        lockManager = mock(LockManager.class);
+        when(lockManager.lock(any(LockDefinition.class), any(LockCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((LockCallback<?>) invocation.getArguments()[1]).doWithLock();
+            }
+        });
+
+        storagePoolDao = mock(StoragePoolDao.class);
+        ipAddressDao = mock(IpAddressDao.class);
+
+        monitor = new AgentResourcesMonitorImpl();
+        monitor.agentDao = agentDao;
+        monitor.storagePoolDao = storagePoolDao;
+        monitor.ipAddressDao = ipAddressDao;
+        monitor.objectManager = objectManager;
+        monitor.lockDelegator = lockDelegator;
+        monitor.lockManager = lockManager;
+    }
+
+    @Test
+    public void testUnchangedNotWritten() {
+        monitor.pingReply(ping(resource(HostConstants.TYPE, "host1", null)));
+        monitor.pingReply(ping(resource(HostConstants.TYPE, "host1", null)));
+
+        verify(lockManager, times(1)).lock(any(LockDefinition.class), any(LockCallback.class));
+    }
+
+    @Test
+    public void testPoolWithoutHostRetried() {
+        Ping ping = ping(resource(HostConstants.TYPE, "host1", null), resource(StoragePoolConstants.TYPE, "pool1", "host2"));
+
+        monitor.pingReply(ping);
+        monitor.pingReply(ping);
+        verify(lockManager, times(2)).lock(any(LockDefinition.class), any(LockCallback.class));
+        verify(storagePoolDao, never()).mapNewPool(any(Host.class), anyMapOf(String.class, Object.class));
+
+        Host host2 = mock(Host.class);
+        hosts.put("host2", host2);
+        monitor.pingReply(ping);
+        verify(storagePoolDao).mapNewPool(eq(host2), anyMapOf(String.class, Object.class));
+
+        monitor.pingReply(ping);
+        verify(lockManager, times(3)).lock(any(LockDefinition.class), any(LockCallback.class));
+    }
+
+    @Test
+    public void testIpWithoutHostRetried() {
+        Ping ping = ping(resource(HostConstants.TYPE, "host1", null), resource(IpAddressConstants.TYPE, "10.0.0.2", "host2"));
+
+        monitor.pingReply(ping);
+        monitor.pingReply(ping);
+        verify(lockManager, times(2)).lock(any(LockDefinition.class), any(LockCallback.class));
+
+        hosts.put("host2", mock(Host.class));
+        monitor.pingReply(ping);
+        monitor.pingReply(ping);
+        verify(lockManager, times(3)).lock(any(LockDefinition.class), any(LockCallback.class));
+        verify(objectManager).persist(any(IpAddress.class));
+    }
+
+    @Test
+    public void testWrittenResourcesNotRetriedWithSkippedOnes() {
+        monitor.pingReply(ping(resource(HostConstants.TYPE, "host1", null), resource(StoragePoolConstants.TYPE, "pool1", "host2")));
+
+        AgentResources changed = new AgentResources();
+        changed.getHosts().put("host1", resource(HostConstants.TYPE, "host1", null));
+        changed.getStoragePools().put("pool1", resource(StoragePoolConstants.TYPE, "pool1", "host2"));
+
+        AgentResources result = monitor.getChanged(1L, changed);
+        assertTrue(result.getHosts().isEmpty());
+        assertEquals(1, result.getStoragePools().size());
+    }
+
+    protected Ping ping(Map<String, Object>... resources) {
+        List<Map<String, Object>> data = new ArrayList<Map<String, Object>>();
+        for (Map<String, Object> resource : resources) {
+            data.add(new HashMap<String, Object>(resource));
+        }
+
+        Ping ping = new Ping();
+        ping.setResourceId("1");
+        ping.getData().setResources(data);
+        return ping;
+    }
+
+    protected static Map<String, Object> resource(String type, String uuid, String hostUuid) {
+        Map<String, Object> resource = new HashMap<String, Object>();
+        resource.put(ObjectMetaDataManager.TYPE_FIELD, type);
+        resource.put(ObjectMetaDataManager.UUID_FIELD, uuid);
+        if (hostUuid != null) {
+            resource.put(HostConstants.FIELD_HOST_UUID, hostUuid);
+        }
+        return resource;
+    }
+
+}
@@ -4,6 +4,7 @@ import io.cattle.platform.allocator.constraint.AffinityConstraintDefinition.Affi
 import io.cattle.platform.allocator.dao.AllocatorDao;
 import io.cattle.platform.allocator.service.AllocationAttempt;
 import io.cattle.platform.allocator.service.AllocationCandidate;
+import io.cattle.platform.allocator.service.AllocatorInventory;
 
 import java.util.Set;
 
@@ -12,35 +13,35 @@ public class ContainerLabelAffinityConstraint implements Constraint {
     public static final String LABEL_HEADER_AFFINITY_CONTAINER_LABEL = "io.rancher.scheduler.affinity:container_label";
 
     AllocatorDao allocatorDao;
+    AllocatorInventory allocatorInventory;
 
     AffinityOps op;
     String labelKey;
     String labelValue;
 
-    public ContainerLabelAffinityConstraint(AffinityConstraintDefinition def, AllocatorDao allocatorDao) {
+    public ContainerLabelAffinityConstraint(AffinityConstraintDefinition def, AllocatorDao allocatorDao, AllocatorInventory allocatorInventory) {
         this.op = def.op;
         this.labelKey = def.key;
         this.labelValue = def.value;
 
         this.allocatorDao = allocatorDao;
+        this.allocatorInventory = allocatorInventory;
     }
 
-    // If necessary we can do additional optimizations to allow multiple container label or host label
-    // affinity constraints to share results from DB queries
     @Override
     public boolean matches(AllocationAttempt attempt,
             AllocationCandidate candidate) {
         Set<Long> hostIds = candidate.getHosts();
         if (op == AffinityOps.SOFT_EQ || op == AffinityOps.EQ) {
             for (Long hostId : hostIds) {
-                if (!allocatorDao.hostHasContainerLabel(hostId, labelKey, labelValue)) {
+                if (!hostHasContainerLabel(attempt, hostId)) {
                     return false;
                 }
             }
             return true;
         } else {
             for (Long hostId : hostIds) {
-                if (allocatorDao.hostHasContainerLabel(hostId, labelKey, labelValue)) {
+                if (hostHasContainerLabel(attempt, hostId)) {
                     return false;
                 }
             }
@@ -48,6 +49,14 @@ public class ContainerLabelAffinityConstraint implements Constraint {
         }
     }
 
+    protected boolean hostHasContainerLabel(AllocationAttempt attempt, long hostId) {
+        // Outside of an allocation (attempt is null) read straight from the DB
+        if (attempt == null || allocatorInventory == null) {
+            return allocatorDao.hostHasContainerLabel(hostId, labelKey, labelValue);
+        }
+        return allocatorInventory.getHost(hostId).hasContainerLabel(labelKey, labelValue);
+    }
+
     @Override
     public boolean isHardConstraint() {
         return (op == AffinityOps.EQ || op == AffinityOps.NE);
@@ -4,6 +4,7 @@ import io.cattle.platform.allocator.constraint.AffinityConstraintDefinition.Affi
 import io.cattle.platform.allocator.dao.AllocatorDao;
 import io.cattle.platform.allocator.service.AllocationAttempt;
 import io.cattle.platform.allocator.service.AllocationCandidate;
+import io.cattle.platform.allocator.service.AllocatorInventory;
 import io.cattle.platform.core.constants.CommonStatesConstants;
 
 import java.util.Map;
@@ -14,18 +15,19 @@ public class HostAffinityConstraint implements Constraint {
     public static final String LABEL_HEADER_AFFINITY_HOST_LABEL = "io.rancher.scheduler.affinity:host_label";
 
     AllocatorDao allocatorDao;
+    AllocatorInventory allocatorInventory;
 
     AffinityOps op;
     String labelKey;
     String labelValue;
 
-    // TODO: Might actually do an early lookup for host lists as an optimization
-    public HostAffinityConstraint(AffinityConstraintDefinition def, AllocatorDao allocatorDao) {
+    public HostAffinityConstraint(AffinityConstraintDefinition def, AllocatorDao allocatorDao, AllocatorInventory allocatorInventory) {
         this.op = def.op;
         this.labelKey = def.key;
         this.labelValue = def.value;
 
         this.allocatorDao = allocatorDao;
+        this.allocatorInventory = allocatorInventory;
     }
 
     @Override
@@ -34,7 +36,7 @@ public class HostAffinityConstraint implements Constraint {
         Set<Long> hostIds = candidate.getHosts();
         if (op == AffinityOps.SOFT_EQ || op == AffinityOps.EQ) {
             for (Long hostId : hostIds) {
-                Map<String, String[]> labelsForHost = allocatorDao.getLabelsForHost(hostId);
+                Map<String, String[]> labelsForHost = getLabelsForHost(attempt, hostId);
                 if (labelsForHost.get(labelKey) == null) { // key doesn't exist
                     return false;
                 }
@@ -50,7 +52,7 @@ public class HostAffinityConstraint implements Constraint {
             return true;
         } else {
             for (Long hostId : hostIds) {
-                Map<String, String[]> labelsForHost = allocatorDao.getLabelsForHost(hostId);
+                Map<String, String[]> labelsForHost = getLabelsForHost(attempt, hostId);
                 if (labelsForHost.get(labelKey) != null 
                         && labelValue.equals(labelsForHost.get(labelKey)[0]) 
                         && (CommonStatesConstants.CREATING.equals(labelsForHost.get(labelKey)[1])
@@ -62,6 +64,14 @@ public class HostAffinityConstraint implements Constraint {
         }
     }
 
+    protected Map<String, String[]> getLabelsForHost(AllocationAttempt attempt, long hostId) {
+        // Outside of an allocation (attempt is null) read straight from the DB
+        if (attempt == null || allocatorInventory == null) {
+            return allocatorDao.getLabelsForHost(hostId);
+        }
+        return allocatorInventory.getHost(hostId).getLabels();
+    }
+
     @Override
     public boolean isHardConstraint() {
         return (op == AffinityOps.EQ || op == AffinityOps.NE);
@@ -3,6 +3,7 @@ package io.cattle.platform.allocator.constraint;
 import io.cattle.platform.allocator.dao.AllocatorDao;
 import io.cattle.platform.allocator.service.AllocationAttempt;
 import io.cattle.platform.allocator.service.AllocationCandidate;
+import io.cattle.platform.allocator.service.AllocatorInventory;
 import io.cattle.platform.core.model.Port;
 
 import java.util.List;
@@ -11,12 +12,14 @@ import java.util.Set;
 public class PortsConstraint extends HardConstraint implements Constraint {
 
     AllocatorDao allocatorDao;
+    AllocatorInventory allocatorInventory;
 
     List<Port> ports;
 
-    public PortsConstraint(List<Port> ports, AllocatorDao allocatorDao) {
+    public PortsConstraint(List<Port> ports, AllocatorDao allocatorDao, AllocatorInventory allocatorInventory) {
         this.ports = ports;
         this.allocatorDao = allocatorDao;
+        this.allocatorInventory = allocatorInventory;
     }
 
     @Override
@@ -25,8 +28,9 @@ public class PortsConstraint extends HardConstraint implements Constraint {
         Set<Long> hostIds = candidate.getHosts();
 
         for (Long hostId : hostIds) {
-            // TODO: Performance improvement. Move more of the filtering into the DB query itself
-            List<Port> portsUsedByHost = allocatorDao.getUsedPortsForHostExcludingInstance(hostId, attempt.getInstanceId());
+            List<Port> portsUsedByHost = allocatorInventory == null ?
+                    allocatorDao.getUsedPortsForHostExcludingInstance(hostId, attempt.getInstanceId()) :
+                    allocatorInventory.getHost(hostId).getUsedPortsExcludingInstance(attempt.getInstanceId());
             for (Port portUsed : portsUsedByHost) {
                 for (Port requestedPort : ports) {
                     if (requestedPort.getPublicPort() != null &&
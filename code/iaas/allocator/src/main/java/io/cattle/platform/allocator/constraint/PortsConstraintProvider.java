@@ -4,6 +4,7 @@ import static io.cattle.platform.core.model.tables.PortTable.PORT;
 import io.cattle.platform.allocator.dao.AllocatorDao;
 import io.cattle.platform.allocator.service.AllocationAttempt;
 import io.cattle.platform.allocator.service.AllocationLog;
+import io.cattle.platform.allocator.service.AllocatorInventory;
 import io.cattle.platform.core.model.Instance;
 import io.cattle.platform.core.model.Port;
 import io.cattle.platform.object.ObjectManager;
@@ -17,6 +18,9 @@ public class PortsConstraintProvider implements AllocationConstraintsProvider {
     @Inject
     AllocatorDao allocatorDao;
 
+    @Inject
+    AllocatorInventory allocatorInventory;
+
     @Inject
     ObjectManager objectManager;
 
@@ -28,7 +32,7 @@ public class PortsConstraintProvider implements AllocationConstraintsProvider {
         if (instance != null) {
             List<Port> ports = objectManager.find(Port.class, PORT.INSTANCE_ID, instance.getId(), PORT.REMOVED, null);
             if (ports.size() > 0) {
-                constraints.add(new PortsConstraint(ports, allocatorDao));
+                constraints.add(new PortsConstraint(ports, allocatorDao, allocatorInventory));
             }
         }
     }
@@ -17,6 +17,10 @@ public class VolumeValidStoragePoolConstraint extends HardConstraint implements
         this.volume = volume;
     }
 
+    public Volume getVolume() {
+        return volume;
+    }
+
     public Set<Long> getStoragePools() {
         return storagePools;
     }
@@ -39,6 +39,12 @@ public interface AllocatorDao {
 
     List<Port> getUsedPortsForHostExcludingInstance(long hostId, long instanceId);
 
+    // all ports of instances on the host, regardless of instance state
+    List<Port> getPortsForHost(long hostId);
+
+    // instanceId -> state
+    Map<Long, String> getInstanceStatesForHost(long hostId);
+
     // key -> [value,mapping.state]
     Map<String, String[]> getLabelsForHost(long hostId);
 
@@ -35,9 +35,11 @@ import io.cattle.platform.core.model.VolumeStoragePoolMap;
 import io.cattle.platform.core.model.tables.records.HostRecord;
 import io.cattle.platform.core.model.tables.records.StoragePoolRecord;
 import io.cattle.platform.db.jooq.dao.impl.AbstractJooqDao;
+import io.cattle.platform.metrics.util.MetricsUtil;
 import io.cattle.platform.object.ObjectManager;
 import io.cattle.platform.object.util.DataAccessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,12 +49,14 @@ import javax.inject.Inject;
 
 import org.apache.commons.lang.StringUtils;
 import org.jooq.Condition;
+import org.jooq.Record2;
 import org.jooq.Record3;
 import org.jooq.RecordHandler;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
@@ -60,6 +64,8 @@ public class AllocatorDaoImpl extends AbstractJooqDao implements AllocatorDao {
 
     private static final Logger log = LoggerFactory.getLogger(AllocatorDaoImpl.class);
 
+    private static final Counter COMPUTE_CONFLICT = MetricsUtil.getRegistry().counter("allocator.compute.conflict");
+
     ObjectManager objectManager;
     GenericMapDao mapDao;
 
@@ -139,27 +145,26 @@ public class AllocatorDaoImpl extends AbstractJooqDao implements AllocatorDao {
                 .fetchInto(HostRecord.class);
     }
 
-    protected void modifyCompute(long hostId, Instance instance, boolean add) {
-        Host host = objectManager.loadResource(Host.class, hostId);
-        Long computeFree = host.getComputeFree();
-
-        if ( computeFree == null ) {
-            return;
-        }
-
+    /**
+     * Adjusts compute_free in a single UPDATE so concurrent allocations and
+     * deallocations on the same host can not lose each other's changes. Taking
+     * compute only succeeds if the host still has enough free.
+     *
+     * @return false if the host no longer has the compute free
+     */
+    protected boolean modifyCompute(long hostId, Instance instance, boolean add) {
         long delta = AllocatorUtils.getCompute(instance);
-        long newValue;
-        if ( add ) {
-            newValue = computeFree + delta;
-        } else {
-            newValue = computeFree - delta;
-        }
 
-        log.debug("Modifying computeFree on host [{}], {} {} {} = {}", host.getId(), computeFree,
-                add ? "+" : "-", delta, newValue);
+        int count = create()
+            .update(HOST)
+            .set(HOST.COMPUTE_FREE, add ? HOST.COMPUTE_FREE.add(delta) : HOST.COMPUTE_FREE.sub(delta))
+            .where(HOST.ID.eq(hostId)
+                    .and(add ? DSL.trueCondition() : HOST.COMPUTE_FREE.isNull().or(HOST.COMPUTE_FREE.ge(delta))))
+            .execute();
 
-        host.setComputeFree(newValue);
-        objectManager.persist(host);
+        log.debug("Modifying computeFree on host [{}], {} {} : {}", hostId, add ? "+" : "-", delta, count == 1 ? "done" : "conflict");
+
+        return count == 1;
     }
 
     @Override
@@ -168,13 +173,15 @@ public class AllocatorDaoImpl extends AbstractJooqDao implements AllocatorDao {
         Set<Long> newHosts = candidate.getHosts();
 
         if ( existingHosts.size() == 0 ) {
+            if ( ! reserveCompute(attempt.getInstance(), newHosts) ) {
+                return false;
+            }
+
             for ( long hostId : newHosts ) {
                 log.info("Associating instance [{}] to host [{}]", attempt.getInstance().getId(), hostId);
                 objectManager.create(InstanceHostMap.class,
                         INSTANCE_HOST_MAP.HOST_ID, hostId,
                         INSTANCE_HOST_MAP.INSTANCE_ID, attempt.getInstance().getId());
-
-                modifyCompute(hostId, attempt.getInstance(), false);
             }
         } else {
             if ( ! existingHosts.equals(newHosts) ) {
@@ -240,6 +247,25 @@ public class AllocatorDaoImpl extends AbstractJooqDao implements AllocatorDao {
         return true;
     }
 
+    protected boolean reserveCompute(Instance instance, Set<Long> hostIds) {
+        List<Long> reserved = new ArrayList<Long>();
+        for ( long hostId : hostIds ) {
+            if ( modifyCompute(hostId, instance, false) ) {
+                reserved.add(hostId);
+                continue;
+            }
+
+            log.info("Host [{}] no longer has compute free for instance [{}]", hostId, instance.getId());
+            COMPUTE_CONFLICT.inc();
+            for ( long reservedHostId : reserved ) {
+                modifyCompute(reservedHostId, instance, true);
+            }
+            return false;
+        }
+
+        return true;
+    }
+
     protected boolean isEmtpy(Map<Long,Set<Long>> set) {
         for ( Set<Long> value : set.values() ) {
             if ( value.size() > 0 ) {
@@ -349,6 +375,44 @@ public class AllocatorDaoImpl extends AbstractJooqDao implements AllocatorDao {
                 .fetchInto(Port.class);
     }
 
+    @Override
+    public List<Port> getPortsForHost(long hostId) {
+        return create()
+                .select(PORT.fields())
+                    .from(PORT)
+                    .join(INSTANCE_HOST_MAP)
+                        .on(PORT.INSTANCE_ID.eq(INSTANCE_HOST_MAP.INSTANCE_ID))
+                    .join(INSTANCE)
+                        .on(INSTANCE_HOST_MAP.INSTANCE_ID.eq(INSTANCE.ID))
+                    .where(INSTANCE_HOST_MAP.HOST_ID.eq(hostId)
+                        .and(INSTANCE.REMOVED.isNull())
+                        .and(INSTANCE_HOST_MAP.REMOVED.isNull())
+                        .and(PORT.REMOVED.isNull()))
+                .fetchInto(Port.class);
+    }
+
+    @Override
+    public Map<Long, String> getInstanceStatesForHost(long hostId) {
+        final Map<Long, String> states = new HashMap<Long, String>();
+
+        create()
+            .select(INSTANCE.ID, INSTANCE.STATE)
+                .from(INSTANCE)
+                .join(INSTANCE_HOST_MAP)
+                    .on(INSTANCE_HOST_MAP.INSTANCE_ID.eq(INSTANCE.ID))
+                .where(INSTANCE_HOST_MAP.HOST_ID.eq(hostId))
+                    .and(INSTANCE.REMOVED.isNull())
+                    .and(INSTANCE_HOST_MAP.REMOVED.isNull())
+            .fetchInto(new RecordHandler<Record2<Long, String>>() {
+                @Override
+                public void next(Record2<Long, String> record) {
+                    states.put(record.value1(), record.value2());
+                }
+            });
+
+        return states;
+    }
+
     @Override
     public Map<String, String[]> getLabelsForHost(long hostId) {
         final Map<String, String[]> labelKeyValueStatusMap = new HashMap<String, String[]>();
@@ -0,0 +1,19 @@
+package io.cattle.platform.allocator.eventing.impl;
+
+import io.cattle.platform.allocator.eventing.AllocatorInventoryEventListener;
+import io.cattle.platform.allocator.service.AllocatorInventory;
+import io.cattle.platform.eventing.model.Event;
+
+import javax.inject.Inject;
+
+public class AllocatorInventoryEventListenerImpl implements AllocatorInventoryEventListener {
+
+    @Inject
+    AllocatorInventory allocatorInventory;
+
+    @Override
+    public void resourceChange(Event event) {
+        allocatorInventory.resourceChanged(event.getResourceType(), event.getResourceId());
+    }
+
+}
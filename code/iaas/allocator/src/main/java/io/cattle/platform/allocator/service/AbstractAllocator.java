@@ -8,6 +8,7 @@ import io.cattle.platform.allocator.lock.AllocateResourceLock;
 import io.cattle.platform.allocator.lock.AllocateVolumesResourceLock;
 import io.cattle.platform.allocator.service.AllocationRequest.Type;
 import io.cattle.platform.allocator.util.AllocatorUtils;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.core.constants.InstanceConstants;
 import io.cattle.platform.core.model.Host;
 import io.cattle.platform.core.model.Instance;
@@ -25,6 +26,7 @@ import io.cattle.platform.object.process.ObjectProcessManager;
 import io.cattle.platform.object.util.DataAccessor;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -41,15 +43,18 @@ import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
+import com.netflix.config.DynamicBooleanProperty;
 
 public abstract class AbstractAllocator implements Allocator {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractAllocator.class);
+    private static final DynamicBooleanProperty SCORING = ArchaiusUtil.getBoolean("allocator.scoring.enabled");
 
     Timer allocateTimer = MetricsUtil.getRegistry().timer("allocator.allocate");
     Timer deallocateTimer = MetricsUtil.getRegistry().timer("allocator.deallocate");
 
     AllocatorDao allocatorDao;
+    AllocatorInventory allocatorInventory;
     LockManager lockManager;
     ObjectManager objectManager;
     ObjectProcessManager processManager;
@@ -137,6 +142,7 @@ public abstract class AbstractAllocator implements Allocator {
 
     protected void releaseAllocation(Instance instance) {
         allocatorDao.releaseAllocation(instance);
+        allocatorInventory.invalidateInstance(instance.getId());
     }
 
     protected void releaseAllocation(Volume volume) {
@@ -225,6 +231,11 @@ public abstract class AbstractAllocator implements Allocator {
         lockManager.lock(getAllocationLock(request, attempt), new LockCallbackNoReturn() {
             @Override
             public void doWithLockNoResult() {
+                if (SCORING.get()) {
+                    runScoredAllocation(request, attempt);
+                    return;
+                }
+
                 do {
                     Set<Constraint> failedConstraints = runAllocation(request, attempt);
                     if (attempt.getMatchedCandidate() == null) {
@@ -279,21 +290,94 @@ public abstract class AbstractAllocator implements Allocator {
                 }
 
                 log.info("{}   candidates result [{}]", prefix, good);
-                if (good) {
-                    if (candidate.getHosts().size() > 0 && request.getType() == Type.VOLUME) {
-                        throw new IllegalStateException("Attempting to allocate hosts during a volume allocation");
+                if (good && recordMatch(request, attempt, candidate, prefix)) {
+                    return failedConstraints;
+                }
+                candidateFailedConstraintSets.add(failedConstraints);
+            }
+            return getWeakestConstraintSet(candidateFailedConstraintSets);
+        } finally {
+            if (iter != null) {
+                close(iter);
+            }
+        }
+    }
+
+    /**
+     * Evaluates every constraint once per candidate. Candidates failing a hard
+     * constraint are skipped as soon as it fails, the rest are scored by a
+     * mask of the soft constraints they fail. The first candidate that fails
+     * nothing is taken immediately, otherwise the candidate failing the fewest
+     * soft constraints wins, ties going to the earlier candidate.
+     */
+    protected void runScoredAllocation(AllocationRequest request, AllocationAttempt attempt) {
+        logStart(attempt);
+
+        List<Constraint> hardConstraints = new ArrayList<Constraint>();
+        List<Constraint> softConstraints = new ArrayList<Constraint>();
+        for (Constraint constraint : attempt.getConstraints()) {
+            if (constraint.isHardConstraint()) {
+                hardConstraints.add(constraint);
+            } else {
+                softConstraints.add(constraint);
+            }
+        }
+
+        List<ScoredCandidate> scored = new ArrayList<ScoredCandidate>();
+        Iterator<AllocationCandidate> iter = getCandidates(attempt);
+        try {
+            while (iter.hasNext()) {
+                AllocationCandidate candidate = iter.next();
+                attempt.getCandidates().add(candidate);
+
+                String prefix = String.format("[%s][%s]", attempt.getId(), candidate.getId());
+                logCandidate(prefix, attempt, candidate);
+
+                boolean good = true;
+                for (Constraint constraint : hardConstraints) {
+                    boolean match = constraint.matches(attempt, candidate);
+                    log.info("{}   checking candidate [{}] : {}", prefix, match, constraint);
+                    if (!match) {
+                        good = false;
+                        break;
                     }
+                }
 
-                    if (recordCandidate(attempt, candidate)) {
-                        attempt.setMatchedCandidate(candidate);
-                        return failedConstraints;
-                    } else {
-                        log.info("{}   can not record result", prefix);
+                if (!good) {
+                    log.info("{}   candidates result [false]", prefix);
+                    continue;
+                }
+
+                BitSet failed = new BitSet(softConstraints.size());
+                for (int i = 0; i < softConstraints.size(); i++) {
+                    Constraint constraint = softConstraints.get(i);
+                    boolean match = constraint.matches(attempt, candidate);
+                    log.info("{}   checking candidate [{}] : {}", prefix, match, constraint);
+                    if (!match) {
+                        failed.set(i);
                     }
                 }
-                candidateFailedConstraintSets.add(failedConstraints);
+
+                log.info("{}   candidates result [{}], failed soft constraints [{}]", prefix, failed.isEmpty(), failed.cardinality());
+                if (failed.isEmpty()) {
+                    if (recordMatch(request, attempt, candidate, prefix)) {
+                        return;
+                    }
+                } else {
+                    scored.add(new ScoredCandidate(candidate, failed, prefix));
+                }
+            }
+
+            Collections.sort(scored);
+            for (ScoredCandidate scoredCandidate : scored) {
+                if (recordMatch(request, attempt, scoredCandidate.candidate, scoredCandidate.prefix)) {
+                    for (int i = scoredCandidate.failed.nextSetBit(0); i >= 0; i = scoredCandidate.failed.nextSetBit(i + 1)) {
+                        log.info("{}   ignoring soft constraint : {}", scoredCandidate.prefix, softConstraints.get(i));
+                        attempt.getConstraints().remove(softConstraints.get(i));
+                    }
+                    return;
+                }
             }
-            return getWeakestConstraintSet(candidateFailedConstraintSets);
         } finally {
             if (iter != null) {
                 close(iter);
@@ -301,6 +385,50 @@ public abstract class AbstractAllocator implements Allocator {
         }
     }
 
+    protected boolean recordMatch(AllocationRequest request, AllocationAttempt attempt, AllocationCandidate candidate, String prefix) {
+        if (candidate.getHosts().size() > 0 && request.getType() == Type.VOLUME) {
+            throw new IllegalStateException("Attempting to allocate hosts during a volume allocation");
+        }
+
+        if (!revalidate(attempt, candidate, prefix)) {
+            return false;
+        }
+
+        if (recordCandidate(attempt, candidate)) {
+            attempt.setMatchedCandidate(candidate);
+            return true;
+        }
+
+        log.info("{}   can not record result", prefix);
+        return false;
+    }
+
+    /**
+     * Constraints may have been checked against a cached {@link HostInventory}
+     * that another node has since changed. Still under the allocation lock, the
+     * hosts are reloaded from the database and the hard constraints checked
+     * again before the candidate is recorded. Soft constraints only rank
+     * candidates, so they are not re-checked.
+     */
+    protected boolean revalidate(AllocationAttempt attempt, AllocationCandidate candidate, String prefix) {
+        if (allocatorInventory == null || !allocatorInventory.isCaching() || candidate.getHosts().isEmpty()) {
+            return true;
+        }
+
+        for (Long hostId : candidate.getHosts()) {
+            allocatorInventory.invalidateHost(hostId);
+        }
+
+        for (Constraint constraint : attempt.getConstraints()) {
+            if (constraint.isHardConstraint() && !constraint.matches(attempt, candidate)) {
+                log.info("{}   no longer matches after reload : {}", prefix, constraint);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     // ideally we want zero hard constraints and the fewest soft constraints
     private Set<Constraint> getWeakestConstraintSet(List<Set<Constraint>> candidateFailedConstraintSets) {
         if (candidateFailedConstraintSets == null || candidateFailedConstraintSets.isEmpty()) {
@@ -343,7 +471,15 @@ public abstract class AbstractAllocator implements Allocator {
     }
 
     protected boolean recordCandidate(AllocationAttempt attempt, AllocationCandidate candidate) {
-        return allocatorDao.recordCandidate(attempt, candidate);
+        try {
+            return allocatorDao.recordCandidate(attempt, candidate);
+        } finally {
+            if (candidate.getHosts() != null) {
+                for (Long hostId : candidate.getHosts()) {
+                    allocatorInventory.invalidateHost(hostId);
+                }
+            }
+        }
     }
 
     protected abstract LockDefinition getAllocationLock(AllocationRequest request, AllocationAttempt attempt);
@@ -448,6 +584,15 @@ public abstract class AbstractAllocator implements Allocator {
         this.allocatorDao = allocatorDao;
     }
 
+    public AllocatorInventory getAllocatorInventory() {
+        return allocatorInventory;
+    }
+
+    @Inject
+    public void setAllocatorInventory(AllocatorInventory allocatorInventory) {
+        this.allocatorInventory = allocatorInventory;
+    }
+
     public ObjectProcessManager getProcessManager() {
         return processManager;
     }
@@ -466,4 +611,21 @@ public abstract class AbstractAllocator implements Allocator {
         this.allocationConstraintProviders = allocationConstraintProviders;
     }
 
+    private static final class ScoredCandidate implements Comparable<ScoredCandidate> {
+        AllocationCandidate candidate;
+        BitSet failed;
+        String prefix;
+
+        public ScoredCandidate(AllocationCandidate candidate, BitSet failed, String prefix) {
+            this.candidate = candidate;
+            this.failed = failed;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int compareTo(ScoredCandidate o) {
+            return Integer.compare(failed.cardinality(), o.failed.cardinality());
+        }
+    }
+
 }
@@ -50,6 +50,19 @@ public class AllocationCandidate {
         }
     }
 
+    /**
+     * Uses the given host and pool sets as is so they can be shared between
+     * candidates, they must not be modified afterwards.
+     */
+    public AllocationCandidate(ObjectManager objectManager, Map<Pair<Class<?>, Long>, Object> resources, Set<Long> hosts,
+            Map<Long, Set<Long>> pools) {
+        super();
+        this.objectManager = objectManager;
+        this.resources = resources;
+        this.hosts = hosts;
+        this.pools = pools;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T loadResource(Class<T> clz, Long id) {
         if (id == null) {
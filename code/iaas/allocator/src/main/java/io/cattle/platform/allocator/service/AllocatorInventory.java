@@ -0,0 +1,23 @@
+package io.cattle.platform.allocator.service;
+
+/**
+ * Cache of {@link HostInventory} used while evaluating constraints. Entries
+ * are dropped when this node allocates to or releases from a host, when a
+ * resource.change event is received for the host or anything on it, and
+ * otherwise after allocator.inventory.ttl.millis. Changes made by other
+ * nodes are only seen through events or the TTL, so allocators re-check a
+ * chosen host against the database before recording it.
+ */
+public interface AllocatorInventory {
+
+    HostInventory getHost(long hostId);
+
+    boolean isCaching();
+
+    void invalidateHost(long hostId);
+
+    void invalidateInstance(long instanceId);
+
+    void resourceChanged(String resourceType, String resourceId);
+
+}
@@ -0,0 +1,144 @@
+package io.cattle.platform.allocator.service;
+
+import io.cattle.platform.allocator.dao.AllocatorDao;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.core.constants.HostConstants;
+import io.cattle.platform.core.constants.InstanceConstants;
+import io.cattle.platform.core.model.HostLabelMap;
+import io.cattle.platform.core.model.InstanceHostMap;
+import io.cattle.platform.core.model.InstanceLabelMap;
+import io.cattle.platform.core.model.Port;
+import io.cattle.platform.metrics.util.MetricsUtil;
+import io.cattle.platform.object.ObjectManager;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import com.codahale.metrics.Counter;
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicLongProperty;
+
+public class AllocatorInventoryImpl implements AllocatorInventory {
+
+    private static final DynamicBooleanProperty ENABLED = ArchaiusUtil.getBoolean("allocator.inventory.enabled");
+    private static final DynamicLongProperty TTL = ArchaiusUtil.getLong("allocator.inventory.ttl.millis");
+
+    private static final Set<String> MAPPING_TYPES = new HashSet<String>(Arrays.asList("port", "instanceHostMap", "hostLabelMap",
+            "instanceLabelMap"));
+
+    private static final Counter HIT = MetricsUtil.getRegistry().counter("allocator.inventory.hit");
+    private static final Counter MISS = MetricsUtil.getRegistry().counter("allocator.inventory.miss");
+
+    @Inject
+    AllocatorDao allocatorDao;
+
+    @Inject
+    ObjectManager objectManager;
+
+    Map<Long, HostInventory> hosts = new ConcurrentHashMap<Long, HostInventory>();
+    Map<Long, Long> instanceHosts = new ConcurrentHashMap<Long, Long>();
+    Map<Long, Long> invalidated = new ConcurrentHashMap<Long, Long>();
+
+    @Override
+    public HostInventory getHost(long hostId) {
+        if (!ENABLED.get()) {
+            return load(hostId);
+        }
+
+        HostInventory inventory = hosts.get(hostId);
+        if (inventory != null && isValid(inventory)) {
+            HIT.inc();
+            return inventory;
+        }
+
+        MISS.inc();
+        inventory = load(hostId);
+        hosts.put(hostId, inventory);
+        for (Long instanceId : inventory.getInstanceIds()) {
+            instanceHosts.put(instanceId, hostId);
+        }
+
+        return inventory;
+    }
+
+    @Override
+    public boolean isCaching() {
+        return ENABLED.get();
+    }
+
+    protected boolean isValid(HostInventory inventory) {
+        long loaded = inventory.getLoadedNanos();
+        if (System.nanoTime() - loaded > TimeUnit.MILLISECONDS.toNanos(TTL.get())) {
+            return false;
+        }
+
+        /* An invalidation that raced with the load leaves a timestamp at or after
+         * the start of the load, so the entry it put is never served */
+        Long invalidatedNanos = invalidated.get(inventory.getHostId());
+        return invalidatedNanos == null || invalidatedNanos - loaded < 0;
+    }
+
+    protected HostInventory load(long hostId) {
+        long start = System.nanoTime();
+        return new HostInventory(hostId, start,
+                allocatorDao.getLabelsForHost(hostId),
+                allocatorDao.getLabelsForContainersForHost(hostId),
+                allocatorDao.getInstanceStatesForHost(hostId),
+                allocatorDao.getPortsForHost(hostId));
+    }
+
+    @Override
+    public void invalidateHost(long hostId) {
+        invalidated.put(hostId, System.nanoTime());
+
+        HostInventory inventory = hosts.remove(hostId);
+        if (inventory != null) {
+            for (Long instanceId : inventory.getInstanceIds()) {
+                instanceHosts.remove(instanceId);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateInstance(long instanceId) {
+        Long hostId = instanceHosts.remove(instanceId);
+        if (hostId != null) {
+            invalidateHost(hostId);
+        }
+    }
+
+    @Override
+    public void resourceChanged(String resourceType, String resourceId) {
+        if (hosts.isEmpty() || resourceType == null || !NumberUtils.isDigits(resourceId)) {
+            return;
+        }
+
+        long id = Long.parseLong(resourceId);
+
+        if (HostConstants.TYPE.equals(resourceType)) {
+            invalidateHost(id);
+        } else if (InstanceConstants.TYPE.equals(resourceType)) {
+            invalidateInstance(id);
+        } else if (MAPPING_TYPES.contains(resourceType)) {
+            Object obj = objectManager.loadResource(resourceType, id);
+            if (obj instanceof Port && ((Port) obj).getInstanceId() != null) {
+                invalidateInstance(((Port) obj).getInstanceId());
+            } else if (obj instanceof InstanceLabelMap && ((InstanceLabelMap) obj).getInstanceId() != null) {
+                invalidateInstance(((InstanceLabelMap) obj).getInstanceId());
+            } else if (obj instanceof InstanceHostMap && ((InstanceHostMap) obj).getHostId() != null) {
+                invalidateHost(((InstanceHostMap) obj).getHostId());
+            } else if (obj instanceof HostLabelMap && ((HostLabelMap) obj).getHostId() != null) {
+                invalidateHost(((HostLabelMap) obj).getHostId());
+            }
+        }
+    }
+
+}
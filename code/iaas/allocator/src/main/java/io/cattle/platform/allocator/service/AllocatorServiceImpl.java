@@ -48,6 +48,9 @@ public class AllocatorServiceImpl implements AllocatorService {
     @Inject
     AllocatorDao allocatorDao;
 
+    @Inject
+    AllocatorInventory allocatorInventory;
+
     @Inject
     InstanceDao instanceDao;
 
@@ -196,7 +199,7 @@ public class AllocatorServiceImpl implements AllocatorService {
                     affinityDef = affinityDef.substring(ContainerLabelAffinityConstraint.ENV_HEADER_AFFINITY_CONTAINER_LABEL.length());
                     AffinityConstraintDefinition def = extractAffinitionConstraintDefinitionFromEnv(affinityDef);
                     if (def != null && !StringUtils.isEmpty(def.getKey())) {
-                        constraints.add(new ContainerLabelAffinityConstraint(def, allocatorDao));
+                        constraints.add(new ContainerLabelAffinityConstraint(def, allocatorDao, allocatorInventory));
                     }
 
                 } else if (affinityDef.startsWith(ContainerAffinityConstraint.ENV_HEADER_AFFINITY_CONTAINER)) {
@@ -210,7 +213,7 @@ public class AllocatorServiceImpl implements AllocatorService {
                     affinityDef = affinityDef.substring(HostAffinityConstraint.ENV_HEADER_AFFINITY_HOST_LABEL.length());
                     AffinityConstraintDefinition def = extractAffinitionConstraintDefinitionFromEnv(affinityDef);
                     if (def != null && !StringUtils.isEmpty(def.getKey())) {
-                        constraints.add(new HostAffinityConstraint(def, allocatorDao));
+                        constraints.add(new HostAffinityConstraint(def, allocatorDao, allocatorInventory));
                     }
 
                 }
@@ -243,7 +246,7 @@ public class AllocatorServiceImpl implements AllocatorService {
                 opStr = key.substring(ContainerLabelAffinityConstraint.LABEL_HEADER_AFFINITY_CONTAINER_LABEL.length());
                 List<AffinityConstraintDefinition> defs = extractAffinityConstraintDefinitionFromLabel(opStr, valueStr, true);
                 for (AffinityConstraintDefinition def: defs) {
-                    constraints.add(new ContainerLabelAffinityConstraint(def, allocatorDao));
+                    constraints.add(new ContainerLabelAffinityConstraint(def, allocatorDao, allocatorInventory));
                 }
 
             } else if (key.startsWith(ContainerAffinityConstraint.LABEL_HEADER_AFFINITY_CONTAINER)) {
@@ -257,7 +260,7 @@ public class AllocatorServiceImpl implements AllocatorService {
                 opStr = key.substring(HostAffinityConstraint.LABEL_HEADER_AFFINITY_HOST_LABEL.length());
                 List<AffinityConstraintDefinition> defs = extractAffinityConstraintDefinitionFromLabel(opStr, valueStr, true);
                 for (AffinityConstraintDefinition def: defs) {
-                    constraints.add(new HostAffinityConstraint(def, allocatorDao));
+                    constraints.add(new HostAffinityConstraint(def, allocatorDao, allocatorInventory));
                 }
             }
         }
@@ -0,0 +1,82 @@
+package io.cattle.platform.allocator.service;
+
+import io.cattle.platform.core.constants.InstanceConstants;
+import io.cattle.platform.core.model.Port;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * Snapshot of the scheduling relevant state of one host: its labels, the
+ * labels of the containers on it and the ports they hold.
+ */
+public class HostInventory {
+
+    long hostId;
+    long loadedNanos;
+    Map<String, String[]> labels;
+    Multimap<String, String> containerLabels;
+    Map<Long, String> instanceStates;
+    List<Port> ports;
+
+    public HostInventory(long hostId, long loadedNanos, Map<String, String[]> labels, Multimap<String, String> containerLabels,
+            Map<Long, String> instanceStates, List<Port> ports) {
+        this.hostId = hostId;
+        this.loadedNanos = loadedNanos;
+        this.labels = labels;
+        this.instanceStates = instanceStates;
+        this.ports = ports;
+        this.containerLabels = HashMultimap.create();
+        for (Map.Entry<String, String> entry : containerLabels.entries()) {
+            this.containerLabels.put(StringUtils.lowerCase(entry.getKey()), StringUtils.lowerCase(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return key -> [value,mapping.state]
+     */
+    public Map<String, String[]> getLabels() {
+        return labels;
+    }
+
+    public boolean hasContainerLabel(String labelKey, String labelValue) {
+        return containerLabels.containsEntry(StringUtils.lowerCase(labelKey), StringUtils.lowerCase(labelValue));
+    }
+
+    public List<Port> getUsedPortsExcludingInstance(long instanceId) {
+        List<Port> result = new ArrayList<Port>();
+        for (Port port : ports) {
+            Long portInstanceId = port.getInstanceId();
+            if (portInstanceId == null || portInstanceId.longValue() == instanceId) {
+                continue;
+            }
+
+            String state = instanceStates.get(portInstanceId);
+            if (InstanceConstants.STATE_STARTING.equals(state) || InstanceConstants.STATE_RESTARTING.equals(state)
+                    || InstanceConstants.STATE_RUNNING.equals(state)) {
+                result.add(port);
+            }
+        }
+        return result;
+    }
+
+    public Set<Long> getInstanceIds() {
+        return instanceStates.keySet();
+    }
+
+    public long getHostId() {
+        return hostId;
+    }
+
+    public long getLoadedNanos() {
+        return loadedNanos;
+    }
+
+}
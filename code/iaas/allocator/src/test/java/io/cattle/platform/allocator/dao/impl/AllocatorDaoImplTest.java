@@ -0,0 +1,136 @@
+package io.cattle.platform.allocator.dao.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.metrics.util.MetricsUtil;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DefaultConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * Checks the conditional compute_free updates against an in memory H2
+ * database.
+ */
+public class AllocatorDaoImplTest {
+
+    Connection conn;
+    AllocatorDaoImpl dao;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:allocator");
+        Statement stmt = conn.createStatement();
+        stmt.execute("drop table if exists \"host\"");
+        stmt.execute("create table \"host\" (\"id\" bigint primary key, \"compute_free\" bigint)");
+        stmt.close();
+
+        DefaultConfiguration config = new DefaultConfiguration();
+        config.set(conn);
+        config.set(SQLDialect.H2);
+        config.set(new Settings().withRenderSchema(false));
+
+        dao = new AllocatorDaoImpl();
+        dao.setConfiguration(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testTakesCompute() throws Exception {
+        insert(1L, 10L);
+
+        assertTrue(dao.modifyCompute(1L, instance(4L), false));
+        assertEquals(Long.valueOf(6L), computeFree(1L));
+
+        assertTrue(dao.modifyCompute(1L, instance(4L), true));
+        assertEquals(Long.valueOf(10L), computeFree(1L));
+    }
+
+    @Test
+    public void testInsufficientComputeFree() throws Exception {
+        insert(1L, 3L);
+
+        assertFalse(dao.modifyCompute(1L, instance(4L), false));
+        assertEquals(Long.valueOf(3L), computeFree(1L));
+    }
+
+    @Test
+    public void testNullComputeFree() throws Exception {
+        insert(1L, null);
+
+        assertTrue(dao.modifyCompute(1L, instance(4L), false));
+        assertNull(computeFree(1L));
+    }
+
+    @Test
+    public void testConflictReleasesReservedHosts() throws Exception {
+        insert(1L, 10L);
+        insert(2L, 10L);
+        insert(3L, 1L);
+        Counter conflicts = MetricsUtil.getRegistry().counter("allocator.compute.conflict");
+        long before = conflicts.getCount();
+
+        assertFalse(dao.reserveCompute(instance(4L), new LinkedHashSet<Long>(Arrays.asList(1L, 2L, 3L))));
+
+        assertEquals(Long.valueOf(10L), computeFree(1L));
+        assertEquals(Long.valueOf(10L), computeFree(2L));
+        assertEquals(Long.valueOf(1L), computeFree(3L));
+        assertEquals(before + 1, conflicts.getCount());
+    }
+
+    @Test
+    public void testReservesEveryHost() throws Exception {
+        insert(1L, 10L);
+        insert(2L, 4L);
+
+        assertTrue(dao.reserveCompute(instance(4L), new LinkedHashSet<Long>(Arrays.asList(1L, 2L))));
+
+        assertEquals(Long.valueOf(6L), computeFree(1L));
+        assertEquals(Long.valueOf(0L), computeFree(2L));
+    }
+
+    protected Instance instance(Long compute) {
+        Instance instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(42L);
+        when(instance.getCompute()).thenReturn(compute);
+        return instance;
+    }
+
+    protected void insert(Long id, Long computeFree) throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("insert into \"host\" (\"id\", \"compute_free\") values (?, ?)");
+        stmt.setLong(1, id);
+        stmt.setObject(2, computeFree);
+        stmt.execute();
+        stmt.close();
+    }
+
+    protected Long computeFree(Long id) throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("select \"compute_free\" from \"host\" where \"id\" = ?");
+        stmt.setLong(1, id);
+        ResultSet rs = stmt.executeQuery();
+        assertTrue(rs.next());
+        long value = rs.getLong(1);
+        Long result = rs.wasNull() ? null : value;
+        stmt.close();
+        return result;
+    }
+
+}
@@ -0,0 +1,121 @@
+package io.cattle.platform.allocator.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.allocator.dao.AllocatorDao;
+import io.cattle.platform.core.constants.InstanceConstants;
+import io.cattle.platform.core.model.Port;
+import io.cattle.platform.core.model.tables.records.PortRecord;
+import io.cattle.platform.object.ObjectManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.netflix.config.ConfigurationManager;
+
+public class AllocatorInventoryImplTest {
+
+    AllocatorInventoryImpl inventory;
+    AllocatorDao allocatorDao;
+    ObjectManager objectManager;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.enabled", true);
+        ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.ttl.millis", 30000);
+    }
+
+    @Before
+    public void setUp() {
+        allocatorDao = mock(AllocatorDao.class);
+        objectManager = mock(ObjectManager.class);
+
+        Map<Long, String> states = new HashMap<Long, String>();
+        states.put(10L, InstanceConstants.STATE_RUNNING);
+
+        when(allocatorDao.getLabelsForHost(1L)).thenReturn(new HashMap<String, String[]>());
+        when(allocatorDao.getLabelsForContainersForHost(1L)).thenReturn(HashMultimap.<String, String> create());
+        when(allocatorDao.getInstanceStatesForHost(1L)).thenReturn(states);
+        when(allocatorDao.getPortsForHost(1L)).thenReturn(Collections.<Port> emptyList());
+
+        inventory = new AllocatorInventoryImpl();
+        inventory.allocatorDao = allocatorDao;
+        inventory.objectManager = objectManager;
+    }
+
+    @Test
+    public void testCachedUntilInvalidated() {
+        HostInventory first = inventory.getHost(1L);
+        assertSame(first, inventory.getHost(1L));
+        verify(allocatorDao, times(1)).getPortsForHost(1L);
+
+        inventory.invalidateHost(1L);
+        assertNotSame(first, inventory.getHost(1L));
+        verify(allocatorDao, times(2)).getPortsForHost(1L);
+    }
+
+    @Test
+    public void testInstanceChangeInvalidatesItsHost() {
+        HostInventory first = inventory.getHost(1L);
+
+        inventory.resourceChanged(InstanceConstants.TYPE, "10");
+
+        assertNotSame(first, inventory.getHost(1L));
+    }
+
+    @Test
+    public void testPortChangeInvalidatesHostOfInstance() {
+        HostInventory first = inventory.getHost(1L);
+        PortRecord port = new PortRecord();
+        port.setInstanceId(10L);
+        when(objectManager.loadResource("port", 5L)).thenReturn(port);
+
+        inventory.resourceChanged("port", "5");
+
+        assertNotSame(first, inventory.getHost(1L));
+    }
+
+    @Test
+    public void testUnrelatedChangeKeepsEntry() {
+        HostInventory first = inventory.getHost(1L);
+
+        inventory.resourceChanged(InstanceConstants.TYPE, "11");
+        inventory.resourceChanged("volume", "1");
+
+        assertSame(first, inventory.getHost(1L));
+        verifyZeroInteractions(objectManager);
+    }
+
+    @Test
+    public void testExpiredEntryReloaded() {
+        ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.ttl.millis", 0);
+        try {
+            HostInventory first = inventory.getHost(1L);
+            assertNotSame(first, inventory.getHost(1L));
+        } finally {
+            ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.ttl.millis", 30000);
+        }
+    }
+
+    @Test
+    public void testDisabledReadsThrough() {
+        ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.enabled", false);
+        try {
+            assertFalse(inventory.isCaching());
+            inventory.getHost(1L);
+            inventory.getHost(1L);
+            verify(allocatorDao, times(2)).getInstanceStatesForHost(1L);
+            assertEquals(Arrays.asList(), inventory.getHost(1L).getUsedPortsExcludingInstance(10L));
+        } finally {
+            ConfigurationManager.getConfigInstance().setProperty("allocator.inventory.enabled", true);
+        }
+    }
+
+}
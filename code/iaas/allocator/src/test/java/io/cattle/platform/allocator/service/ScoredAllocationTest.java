@@ -0,0 +1,212 @@
+package io.cattle.platform.allocator.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import io.cattle.platform.allocator.constraint.Constraint;
+import io.cattle.platform.core.model.Host;
+import io.cattle.platform.core.model.StoragePool;
+import io.cattle.platform.core.model.Volume;
+import io.cattle.platform.eventing.model.EventVO;
+import io.cattle.platform.lock.definition.LockDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ScoredAllocationTest {
+
+    TestAllocator allocator;
+    AllocationRequest request;
+    AllocationAttempt attempt;
+
+    @Before
+    public void setUp() {
+        allocator = new TestAllocator();
+        request = new AllocationRequest(EventVO.newEvent("instance.allocate").withResourceId("1"));
+        attempt = new AllocationAttempt(null, new HashSet<Host>(), new HashSet<Volume>(), new HashMap<Volume, Set<StoragePool>>(), null, null);
+    }
+
+    @Test
+    public void testFewestSoftFailuresWins() {
+        TestConstraint softA = new TestConstraint(false, 2L, 3L);
+        TestConstraint softB = new TestConstraint(false, 3L);
+        attempt.getConstraints().addAll(Arrays.<Constraint> asList(softA, softB));
+
+        allocator.hosts(1L, 2L, 3L, 4L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(3L)), attempt.getMatchedCandidate().getHosts());
+        assertTrue(attempt.getConstraints().containsAll(Arrays.asList(softA, softB)));
+        assertEquals(3, softA.checked);
+    }
+
+    @Test
+    public void testRelaxedConstraintsRemoved() {
+        TestConstraint softA = new TestConstraint(false, 1L);
+        TestConstraint softB = new TestConstraint(false, 2L);
+        attempt.getConstraints().addAll(Arrays.<Constraint> asList(softA, softB));
+
+        allocator.hosts(1L, 2L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(1L)), attempt.getMatchedCandidate().getHosts());
+        assertTrue(attempt.getConstraints().contains(softA));
+        assertFalse(attempt.getConstraints().contains(softB));
+    }
+
+    @Test
+    public void testHardConstraintShortCircuits() {
+        TestConstraint hard = new TestConstraint(true, 2L);
+        TestConstraint soft = new TestConstraint(false, 1L);
+        attempt.getConstraints().addAll(Arrays.<Constraint> asList(hard, soft));
+
+        allocator.hosts(1L, 2L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(2L)), attempt.getMatchedCandidate().getHosts());
+        assertEquals(1, soft.checked);
+        assertTrue(attempt.getConstraints().contains(hard));
+        assertFalse(attempt.getConstraints().contains(soft));
+    }
+
+    @Test
+    public void testNoCandidate() {
+        attempt.getConstraints().add(new TestConstraint(true));
+
+        allocator.hosts(1L, 2L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertNull(attempt.getMatchedCandidate());
+    }
+
+    @Test
+    public void testFallsBackWhenRecordFails() {
+        TestConstraint soft = new TestConstraint(false, 1L);
+        attempt.getConstraints().add(soft);
+
+        allocator.hosts(1L, 2L);
+        allocator.unavailable.add(1L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(2L)), attempt.getMatchedCandidate().getHosts());
+        assertFalse(attempt.getConstraints().contains(soft));
+    }
+
+    @Test
+    public void testStaleCandidateRevalidatedBeforeRecord() {
+        AllocatorInventory inventory = mock(AllocatorInventory.class);
+        when(inventory.isCaching()).thenReturn(true);
+        allocator.setAllocatorInventory(inventory);
+
+        final Set<Long> changedElsewhere = new HashSet<Long>();
+        TestConstraint hard = new TestConstraint(true, 1L, 2L) {
+            @Override
+            public boolean matches(AllocationAttempt attempt, AllocationCandidate candidate) {
+                return super.matches(attempt, candidate) && !changedElsewhere.containsAll(candidate.getHosts());
+            }
+        };
+        attempt.getConstraints().add(hard);
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                changedElsewhere.add((Long) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(inventory).invalidateHost(1L);
+
+        allocator.hosts(1L, 2L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(2L)), attempt.getMatchedCandidate().getHosts());
+        verify(inventory).invalidateHost(1L);
+        verify(inventory).invalidateHost(2L);
+        assertTrue(allocator.recorded.contains(2L));
+        assertFalse(allocator.recorded.contains(1L));
+    }
+
+    @Test
+    public void testNoRevalidationWithoutCache() {
+        AllocatorInventory inventory = mock(AllocatorInventory.class);
+        allocator.setAllocatorInventory(inventory);
+        TestConstraint hard = new TestConstraint(true, 1L);
+        attempt.getConstraints().add(hard);
+
+        allocator.hosts(1L);
+        allocator.runScoredAllocation(request, attempt);
+
+        assertEquals(1, hard.checked);
+        verify(inventory, never()).invalidateHost(anyLong());
+    }
+
+    private static class TestConstraint implements Constraint {
+        boolean hard;
+        Set<Long> hosts;
+        int checked;
+
+        public TestConstraint(boolean hard, Long... hosts) {
+            this.hard = hard;
+            this.hosts = new HashSet<Long>(Arrays.asList(hosts));
+        }
+
+        @Override
+        public boolean matches(AllocationAttempt attempt, AllocationCandidate candidate) {
+            checked++;
+            return hosts.containsAll(candidate.getHosts());
+        }
+
+        @Override
+        public boolean isHardConstraint() {
+            return hard;
+        }
+    }
+
+    private static class TestAllocator extends AbstractAllocator {
+        List<AllocationCandidate> candidates = new ArrayList<AllocationCandidate>();
+        Set<Long> unavailable = new HashSet<Long>();
+        Set<Long> recorded = new HashSet<Long>();
+
+        void hosts(Long... hostIds) {
+            for (Long hostId : hostIds) {
+                AllocationCandidate candidate = new AllocationCandidate();
+                candidate.getHosts().add(hostId);
+                candidates.add(candidate);
+            }
+        }
+
+        @Override
+        protected boolean recordCandidate(AllocationAttempt attempt, AllocationCandidate candidate) {
+            if (unavailable.containsAll(candidate.getHosts())) {
+                return false;
+            }
+            recorded.addAll(candidate.getHosts());
+            return true;
+        }
+
+        @Override
+        protected Iterator<AllocationCandidate> getCandidates(AllocationAttempt instanceRequest) {
+            return candidates.iterator();
+        }
+
+        @Override
+        protected LockDefinition getAllocationLock(AllocationRequest request, AllocationAttempt attempt) {
+            return null;
+        }
+
+        @Override
+        protected boolean supports(AllocationRequest request) {
+            return true;
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import io.cattle.platform.lock.LockDelegator;
 import io.cattle.platform.object.meta.ObjectMetaDataManager;
 import io.cattle.platform.task.Task;
 import io.cattle.platform.task.TaskOptions;
+import io.cattle.platform.util.type.CollectionUtils;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -68,7 +69,12 @@ public class ResourceChangeEventListenerImpl implements ResourceChangeEventListe
             Pair<String, String> pair = entry.getKey();
             Object accountId = entry.getValue();
 
-            eventService.publish(EventVO.newEvent(IaasEvents.RESOURCE_CHANGE).withResourceType(pair.getLeft()).withResourceId(pair.getRight()));
+            EventVO<Object> change = EventVO.newEvent(IaasEvents.RESOURCE_CHANGE).withResourceType(pair.getLeft()).withResourceId(pair.getRight());
+            if (accountId instanceof Number) {
+                /* Lets in-memory caches drop only what they hold for the account */
+                change.withData(CollectionUtils.asMap(ObjectMetaDataManager.ACCOUNT_FIELD, accountId));
+            }
+            eventService.publish(change);
 
             if (accountId instanceof Number) {
                 String event = IaasEvents.appendAccount(IaasEvents.RESOURCE_CHANGE, ((Number) accountId).longValue());
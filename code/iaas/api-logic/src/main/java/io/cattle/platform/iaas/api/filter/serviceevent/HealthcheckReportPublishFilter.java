@@ -0,0 +1,69 @@
+package io.cattle.platform.iaas.api.filter.serviceevent;
+
+import io.cattle.platform.api.auth.Policy;
+import io.cattle.platform.api.pubsub.model.Publish;
+import io.cattle.platform.api.pubsub.util.SubscriptionUtils;
+import io.cattle.platform.api.pubsub.util.SubscriptionUtils.SubscriptionStyle;
+import io.cattle.platform.api.utils.ApiUtils;
+import io.cattle.platform.core.constants.HealthcheckConstants;
+import io.cattle.platform.core.dao.AgentDao;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.eventing.EventService;
+import io.cattle.platform.eventing.model.EventVO;
+import io.cattle.platform.iaas.api.filter.common.AbstractDefaultResourceManagerFilter;
+import io.cattle.platform.object.ObjectManager;
+import io.github.ibuildthecloud.gdapi.exception.ClientVisibleException;
+import io.github.ibuildthecloud.gdapi.request.ApiRequest;
+import io.github.ibuildthecloud.gdapi.request.resource.ResourceManager;
+import io.github.ibuildthecloud.gdapi.util.ResponseCodes;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+/**
+ * Lets an agent publish the batched healthcheck report. Agents may otherwise
+ * only publish replies, so the event is published here for the agent the
+ * request is authenticated as, whatever resource the request names.
+ */
+public class HealthcheckReportPublishFilter extends AbstractDefaultResourceManagerFilter {
+
+    @Inject
+    ObjectManager objectManager;
+
+    @Inject
+    AgentDao agentDao;
+
+    @Inject
+    EventService eventService;
+
+    @Override
+    public Class<?>[] getTypeClasses() {
+        return new Class<?>[] { Publish.class };
+    }
+
+    @Override
+    public Object create(String type, ApiRequest request, ResourceManager next) {
+        Publish publish = request.proxyRequestObject(Publish.class);
+        Policy policy = ApiUtils.getPolicy();
+
+        if (!HealthcheckConstants.EVENT_HEALTHCHECK_REPORT.equals(publish.getName())
+                || SubscriptionUtils.getSubscriptionStyle(policy) == SubscriptionStyle.RAW) {
+            return super.create(type, request, next);
+        }
+
+        Agent agent = objectManager.loadResource(Agent.class, policy.getOption(Policy.AGENT_ID));
+        if (agent == null || agentDao.getHostAgentForDelegate(agent.getId()) == null) {
+            throw new ClientVisibleException(ResponseCodes.FORBIDDEN, ServiceEventFilter.VERIFY_AGENT);
+        }
+
+        EventVO<Map<String, Object>> event = new EventVO<Map<String, Object>>(HealthcheckConstants.EVENT_HEALTHCHECK_REPORT);
+        event.setResourceType(objectManager.getType(Agent.class));
+        event.setResourceId(agent.getId().toString());
+        event.setData(publish.getData());
+        eventService.publish(event);
+
+        return publish;
+    }
+
+}
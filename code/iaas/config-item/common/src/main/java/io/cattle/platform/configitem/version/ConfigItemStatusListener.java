@@ -0,0 +1,17 @@
+package io.cattle.platform.configitem.version;
+
+import io.cattle.platform.configitem.model.Client;
+
+import java.util.Collection;
+
+/**
+ * Told when the requested version of items on a client is incremented. It is
+ * called after the increment is committed and before the client is asked to
+ * update, so anything cached for the items can be dropped before the client
+ * comes to fetch them.
+ */
+public interface ConfigItemStatusListener {
+
+    void itemsIncremented(Client client, Collection<String> itemNames);
+
+}
@@ -4,6 +4,9 @@ import io.cattle.platform.configitem.model.Client;
 import io.cattle.platform.configitem.model.ItemVersion;
 import io.cattle.platform.configitem.request.ConfigUpdateRequest;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.google.common.util.concurrent.ListenableFuture;
 
 public interface ConfigItemStatusManager {
@@ -20,6 +23,14 @@ public interface ConfigItemStatusManager {
 
     void updateConfig(ConfigUpdateRequest request);
 
+    /**
+     * Increments the items on all the clients at once and sends each client
+     * its config update, coalesced like any other trigger.
+     *
+     * @return the new requested versions by client and item name
+     */
+    Map<Client, Map<String, Long>> updateConfig(Collection<Client> clients, Collection<String> itemNames);
+
     ListenableFuture<?> whenReady(ConfigUpdateRequest request);
 
     void waitFor(ConfigUpdateRequest request);
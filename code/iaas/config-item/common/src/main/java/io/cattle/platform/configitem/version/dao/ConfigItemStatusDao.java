@@ -5,6 +5,7 @@ import io.cattle.platform.configitem.model.ItemVersion;
 import io.cattle.platform.configitem.request.ConfigUpdateRequest;
 import io.cattle.platform.core.model.ConfigItemStatus;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +15,14 @@ public interface ConfigItemStatusDao {
 
     long incrementOrApply(Client client, String itemName);
 
+    /**
+     * Increments, or applies at version 1, every item on every client with
+     * set based statements.
+     *
+     * @return the new requested versions by client and item name
+     */
+    Map<Client, Map<String, Long>> incrementOrApply(Collection<Client> clients, Collection<String> itemNames);
+
     boolean setApplied(Client client, String itemName, ItemVersion version);
 
     void setLatest(Client client, String itemName, String sourceRevision);
@@ -27,6 +27,8 @@ import io.cattle.platform.util.type.CollectionUtils;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -36,18 +38,22 @@ import java.util.Set;
 import javax.inject.Inject;
 
 import org.jooq.Condition;
+import org.jooq.InsertValuesStep6;
 import org.jooq.Record2;
+import org.jooq.Record3;
 import org.jooq.TableField;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.netflix.config.DynamicIntProperty;
 
 public class ConfigItemStatusDaoImpl extends AbstractJooqDao implements ConfigItemStatusDao {
 
     private static final Logger log = LoggerFactory.getLogger(ConfigItemStatusDaoImpl.class);
     private static final DynamicIntProperty BATCH_SIZE = ArchaiusUtil.getInt("item.sync.batch.size");
+    private static final DynamicIntProperty INCREMENT_BATCH_SIZE = ArchaiusUtil.getInt("item.increment.batch.size");
 
     ObjectManager objectManager;
 
@@ -65,6 +71,115 @@ public class ConfigItemStatusDaoImpl extends AbstractJooqDao implements ConfigIt
         return getRequestedVersion(client, itemName);
     }
 
+    @Override
+    public Map<Client, Map<String, Long>> incrementOrApply(Collection<Client> clients, Collection<String> itemNames) {
+        Map<Client, Map<String, Long>> result = new HashMap<>();
+        if (itemNames.isEmpty()) {
+            return result;
+        }
+
+        Map<Class<?>, Map<Long, Client>> byType = new HashMap<>();
+        for (Client client : clients) {
+            Map<Long, Client> byId = byType.get(client.getResourceType());
+            if (byId == null) {
+                byId = new HashMap<>();
+                byType.put(client.getResourceType(), byId);
+            }
+            byId.put(client.getResourceId(), client);
+        }
+
+        /* Bounds both the IN list and the rows of the multi-row insert */
+        int clientsPerBatch = Math.max(1, INCREMENT_BATCH_SIZE.get() / itemNames.size());
+        for (Map<Long, Client> byId : byType.values()) {
+            for (List<Long> ids : Lists.partition(new ArrayList<>(byId.keySet()), clientsPerBatch)) {
+                Map<Long, Client> batch = new HashMap<>();
+                for (Long id : ids) {
+                    batch.put(id, byId.get(id));
+                }
+                incrementOrApply(batch, itemNames, result);
+            }
+        }
+
+        return result;
+    }
+
+    protected void incrementOrApply(Map<Long, Client> byId, Collection<String> itemNames, Map<Client, Map<String, Long>> result) {
+        Client first = byId.values().iterator().next();
+        TableField<ConfigItemStatusRecord, Long> resourceField = getResourceField(first);
+        Condition condition = CONFIG_ITEM_STATUS.RESOURCE_TYPE.eq(getResourceNameField(first))
+                .and(CONFIG_ITEM_STATUS.RESOURCE_ID.in(byId.keySet()))
+                .and(CONFIG_ITEM_STATUS.NAME.in(itemNames));
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        Set<String> existing = new HashSet<>();
+        for (Record2<Long, String> record : create()
+                .select(CONFIG_ITEM_STATUS.RESOURCE_ID, CONFIG_ITEM_STATUS.NAME)
+                .from(CONFIG_ITEM_STATUS)
+                .where(condition)
+                .fetch()) {
+            existing.add(record.value1() + ":" + record.value2());
+        }
+
+        if (existing.size() > 0) {
+            create()
+                .update(CONFIG_ITEM_STATUS)
+                    .set(CONFIG_ITEM_STATUS.REQUESTED_VERSION, CONFIG_ITEM_STATUS.REQUESTED_VERSION.plus(1))
+                    .set(CONFIG_ITEM_STATUS.REQUESTED_UPDATED, now)
+                .where(condition)
+                .execute();
+        }
+
+        List<Client> missingClients = new ArrayList<>();
+        List<String> missingNames = new ArrayList<>();
+        InsertValuesStep6<ConfigItemStatusRecord, String, Long, String, Long, Long, Date> insert = create()
+                .insertInto(CONFIG_ITEM_STATUS,
+                        CONFIG_ITEM_STATUS.NAME,
+                        resourceField,
+                        CONFIG_ITEM_STATUS.RESOURCE_TYPE,
+                        CONFIG_ITEM_STATUS.RESOURCE_ID,
+                        CONFIG_ITEM_STATUS.REQUESTED_VERSION,
+                        CONFIG_ITEM_STATUS.REQUESTED_UPDATED);
+
+        for (Client client : byId.values()) {
+            for (String itemName : itemNames) {
+                if (!existing.contains(client.getResourceId() + ":" + itemName)) {
+                    missingClients.add(client);
+                    missingNames.add(itemName);
+                    insert = insert.values(itemName, client.getResourceId(), getResourceNameField(client), client.getResourceId(), 1L, now);
+                }
+            }
+        }
+
+        if (missingClients.size() > 0) {
+            try {
+                insert.execute();
+            } catch (DataAccessException e) {
+                /*
+                 * Another server applied some of the same items in the meantime. The insert
+                 * was rolled back as a whole, so every pair still needs its increment
+                 */
+                log.info("Bulk apply of {} failed, applying individually", itemNames, e);
+                for (int i = 0; i < missingClients.size(); i++) {
+                    incrementOrApply(missingClients.get(i), missingNames.get(i));
+                }
+            }
+        }
+
+        for (Record3<Long, String, Long> record : create()
+                .select(CONFIG_ITEM_STATUS.RESOURCE_ID, CONFIG_ITEM_STATUS.NAME, CONFIG_ITEM_STATUS.REQUESTED_VERSION)
+                .from(CONFIG_ITEM_STATUS)
+                .where(condition)
+                .fetch()) {
+            Client client = byId.get(record.value1());
+            Map<String, Long> versions = result.get(client);
+            if (versions == null) {
+                versions = new HashMap<>();
+                result.put(client, versions);
+            }
+            versions.put(record.value2(), record.value3());
+        }
+    }
+
     @Override
     public Long getRequestedVersion(Client client, String itemName) {
         return create()
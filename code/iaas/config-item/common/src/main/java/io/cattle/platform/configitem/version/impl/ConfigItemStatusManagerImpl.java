@@ -11,6 +11,7 @@ import io.cattle.platform.configitem.model.Client;
 import io.cattle.platform.configitem.model.ItemVersion;
 import io.cattle.platform.configitem.request.ConfigUpdateItem;
 import io.cattle.platform.configitem.request.ConfigUpdateRequest;
+import io.cattle.platform.configitem.version.ConfigItemStatusListener;
 import io.cattle.platform.configitem.version.ConfigItemStatusManager;
 import io.cattle.platform.configitem.version.dao.ConfigItemStatusDao;
 import io.cattle.platform.core.model.Agent;
@@ -22,16 +23,22 @@ import io.cattle.platform.eventing.EventService;
 import io.cattle.platform.eventing.RetryCallback;
 import io.cattle.platform.eventing.model.Event;
 import io.cattle.platform.eventing.model.EventVO;
+import io.cattle.platform.metrics.util.MetricsUtil;
 import io.cattle.platform.object.ObjectManager;
 import io.cattle.platform.server.context.ServerContext;
 import io.cattle.platform.server.context.ServerContext.BaseProtocol;
 import io.cattle.platform.util.type.CollectionUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -39,10 +46,12 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.netflix.config.DynamicBooleanProperty;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicLongProperty;
@@ -52,6 +61,9 @@ public class ConfigItemStatusManagerImpl implements ConfigItemStatusManager {
     private static final DynamicBooleanProperty BLOCK = ArchaiusUtil.getBoolean("item.migration.block.on.failure");
     private static final DynamicIntProperty RETRY = ArchaiusUtil.getInt("item.wait.for.event.tries");
     private static final DynamicLongProperty TIMEOUT = ArchaiusUtil.getLong("item.wait.for.event.timeout.millis");
+    private static final DynamicLongProperty COALESCE_WINDOW = ArchaiusUtil.getLong("item.update.coalesce.window.millis");
+
+    private static final Counter COALESCED = MetricsUtil.getRegistry().counter("config.item.update.coalesced");
 
     private static final Logger log = LoggerFactory.getLogger(ConfigItemStatusManagerImpl.class);
 
@@ -67,6 +79,13 @@ public class ConfigItemStatusManagerImpl implements ConfigItemStatusManager {
     @Inject
     EventService eventService;
 
+    @Inject
+    ScheduledExecutorService scheduledExecutorService;
+
+    List<ConfigItemStatusListener> listeners = Collections.emptyList();
+
+    Map<Client, PendingUpdate> pending = new HashMap<Client, PendingUpdate>();
+
     protected Map<String, ConfigItemStatus> getStatus(ConfigUpdateRequest request) {
         Map<String, ConfigItemStatus> statuses = new HashMap<String, ConfigItemStatus>();
 
@@ -119,16 +138,62 @@ public class ConfigItemStatusManagerImpl implements ConfigItemStatusManager {
         triggerUpdate(request, toTrigger);
     }
 
+    @Override
+    public Map<Client, Map<String, Long>> updateConfig(Collection<Client> clients, Collection<String> itemNames) {
+        Map<Client, Map<String, Long>> versions = configItemStatusDao.incrementOrApply(clients, itemNames);
+        long window = COALESCE_WINDOW.get();
+
+        for (Map.Entry<Client, Map<String, Long>> entry : versions.entrySet()) {
+            final Client client = entry.getKey();
+            itemsIncremented(client, entry.getValue().keySet());
+
+            final ConfigUpdateRequest request = new ConfigUpdateRequest(client);
+            for (Map.Entry<String, Long> version : entry.getValue().entrySet()) {
+                request.addItem(version.getKey()).withApply(false).withIncrement(false).withRequestedVersion(version.getValue());
+            }
+
+            Event event = getEvent(request, request.getItems());
+            ListenableFuture<? extends Event> future = window > 0 ? coalesce(request, event, request.getItems(), window)
+                    : call(client, event, defaultOptions(request));
+            Futures.addCallback(future, new FutureCallback<Event>() {
+                @Override
+                public void onSuccess(Event result) {
+                    logResponse(request, result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.info("Failed to update item(s) {} on [{}], will be retried by sync", request.getItems(), client, t);
+                }
+            });
+        }
+
+        return versions;
+    }
+
     protected void triggerUpdate(final ConfigUpdateRequest request, final List<ConfigUpdateItem> items) {
         final Event event = getEvent(request, items);
         if (event == null) {
             return;
         }
 
+        final long window = COALESCE_WINDOW.get();
         Runnable run = new Runnable() {
             @Override
             public void run() {
-                request.setUpdateFuture(call(request.getClient(), event, defaultOptions(request)));
+                if (items.size() > 0) {
+                    List<String> names = new ArrayList<String>();
+                    for (ConfigUpdateItem item : items) {
+                        names.add(item.getName());
+                    }
+                    itemsIncremented(request.getClient(), names);
+                }
+
+                if (window > 0 && items.size() > 0 && !request.isMigration()) {
+                    request.setUpdateFuture(coalesce(request, event, items, window));
+                } else {
+                    request.setUpdateFuture(call(request.getClient(), event, defaultOptions(request)));
+                }
             }
         };
 
@@ -139,6 +204,103 @@ public class ConfigItemStatusManagerImpl implements ConfigItemStatusManager {
         }
     }
 
+    protected void itemsIncremented(Client client, Collection<String> itemNames) {
+        for (ConfigItemStatusListener listener : listeners) {
+            try {
+                listener.itemsIncremented(client, itemNames);
+            } catch (Throwable t) {
+                log.error("Failed to notify [{}] of item(s) {} incremented on [{}]", listener, itemNames, client, t);
+            }
+        }
+    }
+
+    /**
+     * The first trigger for a client is sent right away and opens a window.
+     * Triggers within the window are joined and sent as one call, carrying
+     * the latest requested versions, when the window closes. A busy client
+     * gets at most one update per window, an idle one never waits.
+     */
+    protected ListenableFuture<? extends Event> coalesce(ConfigUpdateRequest request, Event event, List<ConfigUpdateItem> items, long window) {
+        Client client = request.getClient();
+        synchronized (pending) {
+            PendingUpdate update = pending.get(client);
+            if (update != null) {
+                update.triggers++;
+                COALESCED.inc();
+
+                for (ConfigUpdateItem item : items) {
+                    update.items.add(item.getName());
+                }
+
+                return update.future;
+            }
+
+            openWindow(client, window);
+        }
+
+        return call(client, event, defaultOptions(request));
+    }
+
+    protected void openWindow(Client client, final long window) {
+        final PendingUpdate update = new PendingUpdate(client);
+        pending.put(client, update);
+
+        scheduledExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                closeWindow(update, window);
+            }
+        }, window, TimeUnit.MILLISECONDS);
+    }
+
+    protected void closeWindow(PendingUpdate update, long window) {
+        synchronized (pending) {
+            if (pending.get(update.client) != update) {
+                return;
+            }
+
+            pending.remove(update.client);
+            if (update.triggers == 0) {
+                return;
+            }
+
+            /* Still busy, keep coalescing what comes in while this is sent */
+            openWindow(update.client, window);
+        }
+
+        flush(update);
+    }
+
+    protected void flush(final PendingUpdate update) {
+        try {
+            ConfigUpdateRequest request = new ConfigUpdateRequest(update.client);
+            for (String name : update.items) {
+                request.addItem(name).withApply(false).withIncrement(false)
+                        .withRequestedVersion(configItemStatusDao.getRequestedVersion(update.client, name));
+            }
+
+            if (update.triggers > 1) {
+                log.debug("Coalesced [{}] triggers of item(s) {} on [{}]", update.triggers, update.items, update.client);
+            }
+
+            Event event = getEvent(request, request.getItems());
+            Futures.addCallback(call(update.client, event, defaultOptions(request)), new FutureCallback<Event>() {
+                @Override
+                public void onSuccess(Event result) {
+                    update.future.set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    update.future.setException(t);
+                }
+            });
+        } catch (Throwable t) {
+            log.error("Failed to send update of item(s) {} on [{}]", update.items, update.client, t);
+            update.future.setException(t);
+        }
+    }
+
     protected EventCallOptions defaultOptions(final ConfigUpdateRequest request) {
         EventCallOptions options = new EventCallOptions(RETRY.get(), TIMEOUT.get()).withProgress(new EventProgress() {
             @Override
@@ -347,4 +509,23 @@ public class ConfigItemStatusManagerImpl implements ConfigItemStatusManager {
         return configItemStatusDao.getRequestedItemVersion(client, itemName);
     }
 
-}
\ No newline at end of file
+    public List<ConfigItemStatusListener> getListeners() {
+        return listeners;
+    }
+
+    public void setListeners(List<ConfigItemStatusListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    private static final class PendingUpdate {
+        Client client;
+        Set<String> items = new LinkedHashSet<String>();
+        SettableFuture<Event> future = SettableFuture.create();
+        int triggers = 0;
+
+        public PendingUpdate(Client client) {
+            this.client = client;
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package io.cattle.platform.configitem.version.dao.impl;
+
+import static org.junit.Assert.*;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jooq.ExecuteContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+/**
+ * Checks the set based increment against an in memory H2 database.
+ */
+public class ConfigItemStatusDaoImplTest {
+
+    private static final int BATCH = 4;
+
+    Connection conn;
+    DefaultConfiguration config;
+    ConfigItemStatusDaoImpl dao;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("item.increment.batch.size", BATCH);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:config_item_status");
+        createTable(conn);
+
+        config = new DefaultConfiguration();
+        config.set(conn);
+        config.set(SQLDialect.H2);
+        config.set(new Settings().withRenderSchema(false));
+
+        dao = new ConfigItemStatusDaoImpl();
+        dao.setConfiguration(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testAppliesMissingAndIncrementsExisting() throws Exception {
+        insert(conn, "hosts", "agent_id", 1L, 3L);
+        Client one = new Client(Agent.class, 1L);
+        Client two = new Client(Agent.class, 2L);
+
+        Map<Client, Map<String, Long>> versions = dao.incrementOrApply(Arrays.asList(one, two), Arrays.asList("hosts", "iptables"));
+
+        assertEquals(2, versions.size());
+        assertEquals(4L, versions.get(one).get("hosts").longValue());
+        assertEquals(1L, versions.get(one).get("iptables").longValue());
+        assertEquals(1L, versions.get(two).get("hosts").longValue());
+        assertEquals(1L, versions.get(two).get("iptables").longValue());
+
+        assertEquals(4L, dao.getRequestedVersion(one, "hosts").longValue());
+        assertEquals(1L, dao.getRequestedVersion(two, "iptables").longValue());
+    }
+
+    @Test
+    public void testBatchesCoverEveryClient() throws Exception {
+        /* Two items per client, so two clients per batch */
+        List<Client> clients = new ArrayList<Client>();
+        for (long i = 1; i <= 7; i++) {
+            clients.add(new Client(Agent.class, i));
+        }
+        insert(conn, "hosts", "agent_id", 5L, 10L);
+
+        dao.incrementOrApply(clients, Arrays.asList("hosts", "iptables"));
+        Map<Client, Map<String, Long>> versions = dao.incrementOrApply(clients, Arrays.asList("hosts", "iptables"));
+
+        assertEquals(7, versions.size());
+        for (Client client : clients) {
+            long hosts = client.getResourceId() == 5L ? 12L : 2L;
+            assertEquals(hosts, versions.get(client).get("hosts").longValue());
+            assertEquals(2L, versions.get(client).get("iptables").longValue());
+        }
+        assertEquals(14, count(conn));
+    }
+
+    @Test
+    public void testSameAsSingleClientPath() throws Exception {
+        Client bulk = new Client(Agent.class, 1L);
+        Client single = new Client(Agent.class, 2L);
+
+        for (int i = 0; i < 3; i++) {
+            dao.incrementOrApply(Arrays.asList(bulk), Arrays.asList("hosts"));
+            dao.incrementOrApply(single, "hosts");
+        }
+
+        assertEquals(dao.getRequestedVersion(single, "hosts"), dao.getRequestedVersion(bulk, "hosts"));
+        assertEquals(3L, dao.getRequestedVersion(bulk, "hosts").longValue());
+    }
+
+    @Test
+    public void testRowAppliedConcurrentlyIsIncremented() throws Exception {
+        Client one = new Client(Agent.class, 1L);
+        Client two = new Client(Agent.class, 2L);
+
+        /* Another server applies the item for two right after the existence check */
+        config.set(new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+            private static final long serialVersionUID = 1L;
+            boolean applied = false;
+
+            @Override
+            public void end(ExecuteContext ctx) {
+                if (!applied && ctx.sql().startsWith("select")) {
+                    applied = true;
+                    try {
+                        insert(conn, "hosts", "agent_id", 2L, 1L);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }));
+
+        Map<Client, Map<String, Long>> versions = dao.incrementOrApply(Arrays.asList(one, two), Arrays.asList("hosts"));
+
+        assertEquals(1L, versions.get(one).get("hosts").longValue());
+        assertEquals(2L, versions.get(two).get("hosts").longValue());
+        assertEquals(2, count(conn));
+    }
+
+    @Test
+    public void testClientTypesKeptApart() throws Exception {
+        Client agent = new Client(Agent.class, 1L);
+        Client service = new Client(Service.class, 1L);
+
+        dao.incrementOrApply(Arrays.asList(agent), Arrays.asList("reconcile"));
+        Map<Client, Map<String, Long>> versions = dao.incrementOrApply(Arrays.asList(agent, service), Arrays.asList("reconcile"));
+
+        assertEquals(2L, versions.get(agent).get("reconcile").longValue());
+        assertEquals(1L, versions.get(service).get("reconcile").longValue());
+    }
+
+    @Test
+    public void testNoItems() throws Exception {
+        assertTrue(dao.incrementOrApply(Arrays.asList(new Client(Agent.class, 1L)), new ArrayList<String>()).isEmpty());
+        assertEquals(0, count(conn));
+    }
+
+    protected static void createTable(Connection conn) throws Exception {
+        Statement stmt = conn.createStatement();
+        stmt.execute("drop table if exists \"config_item_status\"");
+        stmt.execute("create table \"config_item_status\" (\"id\" bigint auto_increment primary key, \"name\" varchar(255) not null, "
+                + "\"requested_version\" bigint default 0 not null, \"applied_version\" bigint default -1 not null, "
+                + "\"source_version\" varchar(255), \"requested_updated\" timestamp not null, \"applied_updated\" timestamp, "
+                + "\"agent_id\" bigint, \"account_id\" bigint, \"service_id\" bigint, "
+                + "\"resource_id\" bigint not null, \"resource_type\" varchar(128) not null)");
+        stmt.execute("create unique index \"idx_config_item_status_resource\" on \"config_item_status\" "
+                + "(\"name\", \"resource_type\", \"resource_id\")");
+        stmt.close();
+    }
+
+    protected static void insert(Connection conn, String name, String type, long id, long version) throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("insert into \"config_item_status\" (\"name\", \"" + type + "\", \"resource_type\", "
+                + "\"resource_id\", \"requested_version\", \"requested_updated\") values (?, ?, ?, ?, ?, current_timestamp)");
+        stmt.setString(1, name);
+        stmt.setLong(2, id);
+        stmt.setString(3, type);
+        stmt.setLong(4, id);
+        stmt.setLong(5, version);
+        stmt.execute();
+        stmt.close();
+    }
+
+    protected static int count(Connection conn) throws Exception {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("select count(*) from \"config_item_status\"");
+        rs.next();
+        int count = rs.getInt(1);
+        stmt.close();
+        return count;
+    }
+
+}
@@ -0,0 +1,197 @@
+package io.cattle.platform.configitem.version.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.agent.AgentLocator;
+import io.cattle.platform.agent.RemoteAgent;
+import io.cattle.platform.configitem.events.ConfigUpdate;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.configitem.request.ConfigUpdateItem;
+import io.cattle.platform.configitem.request.ConfigUpdateRequest;
+import io.cattle.platform.configitem.version.dao.ConfigItemStatusDao;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.ConfigItemStatus;
+import io.cattle.platform.eventing.EventCallOptions;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.object.ObjectManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.config.ConfigurationManager;
+
+public class ConfigItemStatusManagerImplTest {
+
+    ConfigItemStatusManagerImpl manager;
+    ConfigItemStatusDao dao;
+    ScheduledExecutorService executor;
+    RemoteAgent agent;
+    SettableFuture<Event> response;
+    Client client = new Client(Agent.class, 1L);
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("api.host", "localhost:8080");
+        ConfigurationManager.getConfigInstance().setProperty("item.update.coalesce.window.millis", 250);
+    }
+
+    @Before
+    public void setup() {
+        dao = mock(ConfigItemStatusDao.class);
+        doReturn(Collections.<ConfigItemStatus> emptyList()).when(dao).listItems(any(ConfigUpdateRequest.class));
+
+        executor = mock(ScheduledExecutorService.class);
+        agent = mock(RemoteAgent.class);
+        response = SettableFuture.create();
+        doReturn(response).when(agent).call(any(Event.class), any(EventCallOptions.class));
+
+        AgentLocator agentLocator = mock(AgentLocator.class);
+        when(agentLocator.lookupAgent(1L)).thenReturn(agent);
+
+        ObjectManager objectManager = mock(ObjectManager.class);
+        when(objectManager.getType(Agent.class)).thenReturn("agent");
+
+        manager = new ConfigItemStatusManagerImpl();
+        manager.configItemStatusDao = dao;
+        manager.objectManager = objectManager;
+        manager.agentLocator = agentLocator;
+        manager.scheduledExecutorService = executor;
+    }
+
+    @Test
+    public void testSingleTriggerSentRightAway() {
+        when(dao.incrementOrApply(client, "hosts")).thenReturn(2L);
+
+        ConfigUpdateRequest request = trigger("hosts");
+
+        List<ConfigUpdate> sent = sent(1);
+        assertEquals(names("hosts"), items(sent.get(0)));
+        assertSame(response, request.getUpdateFuture());
+
+        runWindows(1);
+        sent(1);
+    }
+
+    @Test
+    public void testTriggersWithinWindowCoalesced() {
+        when(dao.incrementOrApply(client, "hosts")).thenReturn(2L, 3L);
+        when(dao.incrementOrApply(client, "iptables")).thenReturn(5L);
+        when(dao.getRequestedVersion(client, "hosts")).thenReturn(3L);
+        when(dao.getRequestedVersion(client, "iptables")).thenReturn(5L);
+
+        trigger("hosts");
+        ConfigUpdateRequest second = trigger("hosts");
+        ConfigUpdateRequest third = trigger("iptables");
+
+        sent(1);
+        assertSame(second.getUpdateFuture(), third.getUpdateFuture());
+        assertFalse(second.getUpdateFuture().isDone());
+
+        runWindows(1);
+
+        List<ConfigUpdate> sent = sent(2);
+        List<ConfigUpdateItem> items = sent.get(1).getData().getItems();
+        assertEquals(names("hosts", "iptables"), items(sent.get(1)));
+        assertEquals(3L, items.get(0).getRequestedVersion().longValue());
+        assertEquals(5L, items.get(1).getRequestedVersion().longValue());
+
+        Event reply = mock(Event.class);
+        response.set(reply);
+        assertTrue(second.getUpdateFuture().isDone());
+
+        /* A window was opened for the flush, nothing came in so nothing more is sent */
+        runWindows(2);
+        sent(2);
+    }
+
+    @Test
+    public void testNewTriggerAfterQuietWindowSentRightAway() {
+        when(dao.incrementOrApply(client, "hosts")).thenReturn(2L, 3L);
+
+        trigger("hosts");
+        runWindows(1);
+        trigger("hosts");
+
+        sent(2);
+    }
+
+    @Test
+    public void testMigrationNotCoalesced() {
+        when(dao.incrementOrApply(client, "hosts")).thenReturn(2L, 3L);
+
+        trigger("hosts");
+        ConfigUpdateRequest request = new ConfigUpdateRequest(client).withMigration(true);
+        request.addItem("hosts").withIncrement(true);
+        manager.updateConfig(request);
+
+        sent(2);
+    }
+
+    @Test
+    public void testBulkUpdateCoalesced() {
+        Map<String, Long> versions = new HashMap<String, Long>();
+        versions.put("hosts", 3L);
+        when(dao.incrementOrApply(client, "hosts")).thenReturn(2L);
+        when(dao.incrementOrApply(Arrays.asList(client), Arrays.asList("hosts"))).thenReturn(Collections.singletonMap(client, versions));
+        when(dao.getRequestedVersion(client, "hosts")).thenReturn(3L);
+
+        trigger("hosts");
+        assertEquals(Collections.singletonMap(client, versions), manager.updateConfig(Arrays.asList(client), Arrays.asList("hosts")));
+        sent(1);
+
+        runWindows(1);
+        List<ConfigUpdate> sent = sent(2);
+        assertEquals(3L, sent.get(1).getData().getItems().get(0).getRequestedVersion().longValue());
+    }
+
+    protected ConfigUpdateRequest trigger(String name) {
+        ConfigUpdateRequest request = new ConfigUpdateRequest(client);
+        request.addItem(name).withIncrement(true);
+        manager.updateConfig(request);
+        return request;
+    }
+
+    protected void runWindows(int count) {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(count)).schedule(captor.capture(), eq(250L), eq(TimeUnit.MILLISECONDS));
+        captor.getAllValues().get(count - 1).run();
+    }
+
+    protected List<ConfigUpdate> sent(int count) {
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(agent, times(count)).call(captor.capture(), any(EventCallOptions.class));
+
+        List<ConfigUpdate> result = new ArrayList<ConfigUpdate>();
+        for (Event event : captor.getAllValues()) {
+            result.add((ConfigUpdate) event);
+        }
+        return result;
+    }
+
+    protected static List<String> items(ConfigUpdate update) {
+        List<String> names = new ArrayList<String>();
+        for (ConfigUpdateItem item : update.getData().getItems()) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+
+    protected static List<String> names(String... names) {
+        List<String> result = new ArrayList<String>();
+        Collections.addAll(result, names);
+        return result;
+    }
+
+}
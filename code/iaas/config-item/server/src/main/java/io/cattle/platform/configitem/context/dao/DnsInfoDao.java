@@ -15,4 +15,10 @@ public interface DnsInfoDao {
     List<DnsEntryData> getExternalServiceDnsData(Instance instance);
 
     List<DnsEntryData> getDnsServiceLinks(Instance instance, boolean isVIPProvider);
+
+    /**
+     * @return the vnets of the instance's nics. All the queries above are only
+     *         scoped by these, so instances on the same vnets get the same entries.
+     */
+    List<Long> getVnetIds(Instance instance);
 }
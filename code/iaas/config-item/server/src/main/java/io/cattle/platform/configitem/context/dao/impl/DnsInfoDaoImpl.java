@@ -535,6 +535,18 @@ public class DnsInfoDaoImpl extends AbstractJooqDao implements DnsInfoDao {
                 .fetch().map(mapper);
     }
 
+    @Override
+    public List<Long> getVnetIds(Instance instance) {
+        return create()
+                .selectDistinct(NIC.VNET_ID)
+                .from(NIC)
+                .where(NIC.INSTANCE_ID.eq(instance.getId())
+                        .and(NIC.VNET_ID.isNotNull())
+                        .and(NIC.REMOVED.isNull()))
+                .orderBy(NIC.VNET_ID.asc())
+                .fetch(NIC.VNET_ID);
+    }
+
     protected String getDnsName(Object service, Object serviceConsumeMap, Object serviceExposeMap, boolean self) {
 
         String dnsPrefix = null;
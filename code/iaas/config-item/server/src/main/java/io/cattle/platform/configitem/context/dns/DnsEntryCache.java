@@ -0,0 +1,33 @@
+package io.cattle.platform.configitem.context.dns;
+
+import io.cattle.platform.configitem.context.data.DnsEntryData;
+import io.cattle.platform.core.model.Instance;
+
+import java.util.Collection;
+
+/**
+ * DNS entries per set of vnets. Every network agent on the same vnets is
+ * served the same entries, so they are built once and shared until the
+ * account's DNS item is incremented or one of the resources they are built
+ * from changes.
+ */
+public interface DnsEntryCache {
+
+    /**
+     * @return the entries the instance's DNS should serve, aggregated by
+     *         source IP. Callers must not modify them.
+     */
+    Collection<DnsEntryData> getDnsEntries(Instance instance, boolean isVIPProvider);
+
+    /**
+     * Drops the views of the account, or of every account if it is not known.
+     */
+    void resourceChanged(String resourceType, Long accountId);
+
+    /**
+     * Rebuilds every cached view from the DB and replaces the ones whose
+     * checksum no longer matches.
+     */
+    void verify();
+
+}
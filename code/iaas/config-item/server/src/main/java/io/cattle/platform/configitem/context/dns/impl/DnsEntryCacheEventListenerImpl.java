@@ -0,0 +1,30 @@
+package io.cattle.platform.configitem.context.dns.impl;
+
+import io.cattle.platform.configitem.context.dns.DnsEntryCache;
+import io.cattle.platform.configitem.context.dns.DnsEntryCacheEventListener;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.object.meta.ObjectMetaDataManager;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+public class DnsEntryCacheEventListenerImpl implements DnsEntryCacheEventListener {
+
+    @Inject
+    DnsEntryCache dnsEntryCache;
+
+    @Override
+    public void resourceChange(Event event) {
+        Long accountId = null;
+        if (event.getData() instanceof Map) {
+            Object value = ((Map<?, ?>) event.getData()).get(ObjectMetaDataManager.ACCOUNT_FIELD);
+            if (value instanceof Number) {
+                accountId = ((Number) value).longValue();
+            }
+        }
+
+        dnsEntryCache.resourceChanged(event.getResourceType(), accountId);
+    }
+
+}
@@ -0,0 +1,308 @@
+package io.cattle.platform.configitem.context.dns.impl;
+
+import static io.cattle.platform.core.model.tables.InstanceTable.*;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.configitem.context.dao.DnsInfoDao;
+import io.cattle.platform.configitem.context.data.DnsEntryData;
+import io.cattle.platform.configitem.context.dns.DnsEntryCache;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.configitem.version.ConfigItemStatusListener;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.metrics.util.MetricsUtil;
+import io.cattle.platform.object.ObjectManager;
+import io.cattle.platform.object.util.DataAccessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicStringListProperty;
+
+public class DnsEntryCacheImpl implements DnsEntryCache, ConfigItemStatusListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DnsEntryCacheImpl.class);
+
+    private static final DynamicBooleanProperty ENABLED = ArchaiusUtil.getBoolean("dns.entry.cache.enabled");
+    private static final DynamicStringListProperty ITEMS = ArchaiusUtil.getList("item.context.dns.info.items");
+
+    private static final Counter HIT = MetricsUtil.getRegistry().counter("dns.entry.cache.hit");
+    private static final Counter MISS = MetricsUtil.getRegistry().counter("dns.entry.cache.miss");
+    private static final Counter MISMATCH = MetricsUtil.getRegistry().counter("dns.entry.cache.mismatch");
+
+    private static final Set<String> SOURCE_TYPES = new HashSet<String>(Arrays.asList(
+            "instance", "container", "virtualMachine", "nic", "ipAddress", "ipAddressNicMap", "instanceLink",
+            "instanceHostMap", "hostIpAddressMap", "host", "service", "loadBalancerService", "dnsService",
+            "externalService", "serviceConsumeMap", "serviceExposeMap"));
+
+    private static final Ordering<String> IPS = Ordering.<String> natural().nullsFirst();
+    private static final int LOCK_STRIPES = 64;
+
+    @Inject
+    DnsInfoDao dnsInfoDao;
+
+    @Inject
+    ObjectManager objectManager;
+
+    AtomicLong generation = new AtomicLong();
+    /* Views by account, then by vnets */
+    ConcurrentMap<Long, ConcurrentMap<String, View>> views = new ConcurrentHashMap<Long, ConcurrentMap<String, View>>();
+    /* The view key of each instance served by account, so a hit costs no query */
+    ConcurrentMap<Long, ConcurrentMap<String, String>> instanceKeys = new ConcurrentHashMap<Long, ConcurrentMap<String, String>>();
+    ConcurrentMap<Long, Long> agentAccounts = new ConcurrentHashMap<Long, Long>();
+    Object[] locks = new Object[LOCK_STRIPES];
+
+    public DnsEntryCacheImpl() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public Collection<DnsEntryData> getDnsEntries(Instance instance, boolean isVIPProvider) {
+        if (!ENABLED.get()) {
+            return build(instance, isVIPProvider);
+        }
+
+        Long accountId = instance.getAccountId();
+        String key = getKey(instance, isVIPProvider);
+        ConcurrentMap<String, View> accountViews = getViews(accountId);
+        View view = accountViews.get(key);
+        if (view != null) {
+            HIT.inc();
+            return view.entries;
+        }
+
+        /* Agents on the same vnets tend to ask at the same time after a change,
+         * only one of them builds */
+        synchronized (getLock(accountId + ":" + key)) {
+            view = accountViews.get(key);
+            if (view != null) {
+                HIT.inc();
+                return view.entries;
+            }
+
+            MISS.inc();
+            long start = generation.get();
+            view = new View(instance, isVIPProvider, build(instance, isVIPProvider));
+            if (generation.get() == start && views.get(accountId) == accountViews) {
+                accountViews.put(key, view);
+            }
+            return view.entries;
+        }
+    }
+
+    @Override
+    public void itemsIncremented(Client client, Collection<String> itemNames) {
+        if (client.getResourceType() != Agent.class || views.isEmpty() || Collections.disjoint(ITEMS.get(), itemNames)) {
+            return;
+        }
+
+        Long accountId = agentAccounts.get(client.getResourceId());
+        if (accountId == null) {
+            Instance instance = objectManager.findAny(Instance.class, INSTANCE.AGENT_ID, client.getResourceId(), INSTANCE.REMOVED, null);
+            accountId = instance == null ? null : instance.getAccountId();
+        }
+
+        if (accountId != null) {
+            invalidate(accountId);
+        }
+    }
+
+    @Override
+    public void resourceChanged(String resourceType, Long accountId) {
+        if (resourceType == null || !SOURCE_TYPES.contains(resourceType)) {
+            return;
+        }
+
+        if (accountId == null) {
+            generation.incrementAndGet();
+            views.clear();
+            instanceKeys.clear();
+        } else {
+            invalidate(accountId);
+        }
+    }
+
+    protected void invalidate(long accountId) {
+        generation.incrementAndGet();
+        views.remove(accountId);
+        /* Nic changes in the account may have moved its instances to other vnets */
+        instanceKeys.remove(accountId);
+    }
+
+    @Override
+    public void verify() {
+        for (Map.Entry<Long, ConcurrentMap<String, View>> account : views.entrySet()) {
+            for (Map.Entry<String, View> entry : account.getValue().entrySet()) {
+                View cached = entry.getValue();
+                long start = generation.get();
+
+                if (!entry.getKey().equals(getVnetKey(cached.instance, cached.isVIPProvider))) {
+                    // The instance the view was built for moved, the next request rebuilds it
+                    account.getValue().remove(entry.getKey(), cached);
+                    getInstanceKeys(account.getKey()).remove(cached.instance.getId() + ":" + cached.isVIPProvider);
+                    continue;
+                }
+
+                View current = new View(cached.instance, cached.isVIPProvider, build(cached.instance, cached.isVIPProvider));
+
+                if (!current.checksum.equals(cached.checksum) && generation.get() == start) {
+                    MISMATCH.inc();
+                    log.warn("DNS entries for account [{}] vnets [{}] are out of sync with the database, replacing", account.getKey(), entry.getKey());
+                    account.getValue().replace(entry.getKey(), cached, current);
+                }
+            }
+        }
+    }
+
+    protected String getKey(Instance instance, boolean isVIPProvider) {
+        String instanceKey = instance.getId() + ":" + isVIPProvider;
+        ConcurrentMap<String, String> accountKeys = getInstanceKeys(instance.getAccountId());
+        String key = accountKeys.get(instanceKey);
+        if (key == null) {
+            key = getVnetKey(instance, isVIPProvider);
+            accountKeys.put(instanceKey, key);
+            if (instance.getAgentId() != null) {
+                agentAccounts.put(instance.getAgentId(), instance.getAccountId());
+            }
+        }
+
+        return key;
+    }
+
+    protected String getVnetKey(Instance instance, boolean isVIPProvider) {
+        return dnsInfoDao.getVnetIds(instance) + ":" + isVIPProvider;
+    }
+
+    protected ConcurrentMap<String, View> getViews(Long accountId) {
+        ConcurrentMap<String, View> accountViews = views.get(accountId);
+        if (accountViews == null) {
+            views.putIfAbsent(accountId, new ConcurrentHashMap<String, View>());
+            accountViews = views.get(accountId);
+        }
+        return accountViews;
+    }
+
+    protected ConcurrentMap<String, String> getInstanceKeys(Long accountId) {
+        ConcurrentMap<String, String> accountKeys = instanceKeys.get(accountId);
+        if (accountKeys == null) {
+            instanceKeys.putIfAbsent(accountId, new ConcurrentHashMap<String, String>());
+            accountKeys = instanceKeys.get(accountId);
+        }
+        return accountKeys;
+    }
+
+    protected Object getLock(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    protected Collection<DnsEntryData> build(Instance instance, boolean isVIPProvider) {
+        List<DnsEntryData> dnsEntries = new ArrayList<DnsEntryData>();
+        // 1. retrieve all instance links for the hosts
+        dnsEntries.addAll(dnsInfoDao.getInstanceLinksHostDnsData(instance));
+        // 2. retrieve all service links for the host
+        dnsEntries.addAll(dnsInfoDao.getServiceHostDnsData(instance, isVIPProvider));
+        // 3. retrieve self service links
+        dnsEntries.addAll(dnsInfoDao.getSelfServiceLinks(instance, isVIPProvider));
+        // 4. retrieve external service links
+        dnsEntries.addAll(dnsInfoDao.getExternalServiceDnsData(instance));
+        // 5. get dns service links
+        dnsEntries.addAll(dnsInfoDao.getDnsServiceLinks(instance, isVIPProvider));
+
+        // 6. aggregate the links based on the source ip address
+        Map<String, DnsEntryData> processedDnsEntries = new HashMap<>();
+        for (DnsEntryData dnsEntry : dnsEntries) {
+            DnsEntryData newData = null;
+            if (processedDnsEntries.containsKey(dnsEntry.getSourceIpAddress().getAddress())) {
+                newData = processedDnsEntries.get(dnsEntry.getSourceIpAddress().getAddress());
+                populateARecords(dnsEntry, newData);
+                populateCnameRecords(dnsEntry, newData);
+            } else {
+                newData = dnsEntry;
+            }
+
+            processedDnsEntries.put(dnsEntry.getSourceIpAddress().getAddress(), newData);
+        }
+
+        return processedDnsEntries.values();
+    }
+
+    protected void populateARecords(DnsEntryData dnsEntry, DnsEntryData newData) {
+        Map<String, List<String>> resolve = newData.getResolve();
+        for (String dnsName : dnsEntry.getResolve().keySet()) {
+            Set<String> ips = new HashSet<>();
+            if (resolve.containsKey(dnsName)) {
+                ips.addAll(resolve.get(dnsName));
+            }
+            ips.addAll(dnsEntry.getResolve().get(dnsName));
+            resolve.put(dnsName, Lists.newArrayList(ips));
+            newData.setResolve(resolve);
+        }
+    }
+
+    protected void populateCnameRecords(DnsEntryData dnsEntry, DnsEntryData newData) {
+        Map<String, String> resolveCname = newData.getResolveCname();
+        for (String dnsName : dnsEntry.getResolveCname().keySet()) {
+            if (!resolveCname.containsKey(dnsName)) {
+                resolveCname.putAll(dnsEntry.getResolveCname());
+            }
+            newData.setResolveCname(resolveCname);
+        }
+    }
+
+    /**
+     * Order independent digest of what the template renders from the entries
+     */
+    protected static String checksum(Collection<DnsEntryData> entries) {
+        TreeMap<String, String> sorted = new TreeMap<String, String>();
+        for (DnsEntryData entry : entries) {
+            StringBuilder buffer = new StringBuilder();
+            if (entry.getInstance() != null) {
+                buffer.append(entry.getInstance().getId()).append(DataAccessor.field(entry.getInstance(), "dns", Object.class));
+            }
+            for (Map.Entry<String, List<String>> resolve : new TreeMap<String, List<String>>(entry.getResolve()).entrySet()) {
+                buffer.append('|').append(resolve.getKey()).append('=').append(IPS.sortedCopy(resolve.getValue()));
+            }
+            buffer.append('|').append(new TreeMap<String, String>(entry.getResolveCname()));
+            sorted.put(entry.getSourceIpAddress().getAddress(), buffer.toString());
+        }
+
+        return DigestUtils.shaHex(sorted.toString());
+    }
+
+    private static final class View {
+        Instance instance;
+        boolean isVIPProvider;
+        Collection<DnsEntryData> entries;
+        String checksum;
+
+        public View(Instance instance, boolean isVIPProvider, Collection<DnsEntryData> entries) {
+            this.instance = instance;
+            this.isVIPProvider = isVIPProvider;
+            this.entries = entries;
+            this.checksum = checksum(entries);
+        }
+    }
+
+}
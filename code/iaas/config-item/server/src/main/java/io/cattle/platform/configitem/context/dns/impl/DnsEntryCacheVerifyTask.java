@@ -0,0 +1,26 @@
+package io.cattle.platform.configitem.context.dns.impl;
+
+import io.cattle.platform.configitem.context.dns.DnsEntryCache;
+import io.cattle.platform.task.Task;
+
+import javax.inject.Inject;
+
+/**
+ * Runs on every server, each one has its own cache
+ */
+public class DnsEntryCacheVerifyTask implements Task {
+
+    @Inject
+    DnsEntryCache dnsEntryCache;
+
+    @Override
+    public void run() {
+        dnsEntryCache.verify();
+    }
+
+    @Override
+    public String getName() {
+        return "dns.entry.cache.verify";
+    }
+
+}
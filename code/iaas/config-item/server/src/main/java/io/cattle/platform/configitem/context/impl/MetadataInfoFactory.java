@@ -1,26 +1,24 @@
 package io.cattle.platform.configitem.context.impl;
 
+import io.cattle.platform.configitem.model.Client;
 import io.cattle.platform.configitem.server.model.ConfigItem;
 import io.cattle.platform.configitem.server.model.impl.ArchiveContext;
+import io.cattle.platform.configitem.version.ConfigItemStatusListener;
 import io.cattle.platform.core.model.Agent;
 import io.cattle.platform.core.model.Instance;
 import io.cattle.platform.json.JsonMapper;
 import io.cattle.platform.metadata.service.MetadataService;
 import io.github.ibuildthecloud.gdapi.id.IdFormatter;
 
-import java.io.IOException;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 @Named
-public class MetadataInfoFactory extends AbstractAgentBaseContextFactory {
-
-    private static final Logger log = LoggerFactory.getLogger(MetadataInfoFactory.class);
+public class MetadataInfoFactory extends AbstractAgentBaseContextFactory implements ConfigItemStatusListener {
 
     MetadataService metadataService;
     JsonMapper jsonMapper;
@@ -32,14 +30,16 @@ public class MetadataInfoFactory extends AbstractAgentBaseContextFactory {
     }
 
     protected String getMetadata(Instance agentInstance) {
-        Map<String, Object> metadata = metadataService.getMetadata(agentInstance, idFormatter);
+        return metadataService.getMetadataJson(agentInstance, idFormatter);
+    }
 
-        try {
-            return jsonMapper.writeValueAsString(metadata);
-        } catch (IOException e) {
-            log.error("Failed to marshal metadata", e);
-            return "{}";
+    @Override
+    public void itemsIncremented(Client client, Collection<String> itemNames) {
+        if (client.getResourceType() != Agent.class || Collections.disjoint(Arrays.asList(getItems()), itemNames)) {
+            return;
         }
+
+        metadataService.invalidateAgent(client.getResourceId());
     }
 
     public JsonMapper getJsonMapper() {
@@ -5,6 +5,7 @@ import io.cattle.platform.configitem.model.ItemVersion;
 import io.cattle.platform.configitem.server.model.Request;
 import io.cattle.platform.configitem.server.resource.ResourceRoot;
 import io.cattle.platform.configitem.version.ConfigItemStatusManager;
+import io.cattle.platform.metrics.util.MetricsUtil;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -13,31 +14,55 @@ import java.io.OutputStream;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.jooq.Record;
+
+import com.codahale.metrics.Counter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
 public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRootConfigItem {
 
+    private static final ArchiveCache CACHE = new ArchiveCache();
+    private static final ObjectMapper CONTEXT_MAPPER = newContextMapper();
+    private static final long ONE_DAY = 60 * 60 * 24 * 1000;
+
     List<ConfigItemContextFactory> contextFactories;
+    Counter cacheHit;
+    Counter cacheMiss;
+    volatile SourceTime sourceTime;
 
     public AbstractArchiveBasedConfigItem(String name, ConfigItemStatusManager versionManager, ResourceRoot resourceRoot,
             List<ConfigItemContextFactory> contextFactories) {
         super(name, versionManager, resourceRoot);
 
         this.contextFactories = contextFactories;
+        this.cacheHit = MetricsUtil.getRegistry().counter("config.item.archive.cache." + name + ".hit");
+        this.cacheMiss = MetricsUtil.getRegistry().counter("config.item.archive.cache." + name + ".miss");
     }
 
     @Override
     public void handleRequest(Request req) throws IOException {
         req.setContentType("application/octet-stream");
 
+        String sourceRevision = getSourceRevision();
         OutputStream os = req.getOutputStream();
         GZIPOutputStream gzos = new GZIPOutputStream(os);
         TarArchiveOutputStream taos = null;
@@ -47,6 +72,7 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
             taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
 
             ArchiveContext context = new ArchiveContext(req, taos, getVersion(req));
+            context.setModTime(getModTime(sourceRevision));
 
             ItemVersion current = req.getCurrentVersion();
             if (current != null && current.toExternalForm().equals(context.getVersion())) {
@@ -56,7 +82,10 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
                     factory.populateContext(req, this, context);
                 }
 
-                writeContent(context);
+                writeVersion(context);
+                for (RenderedEntry entry : getRenderedEntries(context, sourceRevision)) {
+                    writeRendered(context, entry);
+                }
             }
 
             writeHashes(context);
@@ -65,6 +94,71 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
         }
     }
 
+    /**
+     * The content entries are the same for every client that gets the same
+     * source revision and context data, only the version differs. They are
+     * rendered and hashed once and served from the cache after that.
+     */
+    protected List<RenderedEntry> getRenderedEntries(ArchiveContext context, String sourceRevision) throws IOException {
+        String key = null;
+        if (CACHE.isEnabled()) {
+            key = getCacheKey(context, sourceRevision);
+            List<RenderedEntry> rendered = key == null ? null : CACHE.get(key);
+            if (rendered != null) {
+                cacheHit.inc();
+                return rendered;
+            }
+            cacheMiss.inc();
+        }
+
+        List<RenderedEntry> rendered = new ArrayList<RenderedEntry>();
+        context.setRendered(rendered);
+        try {
+            writeContent(context);
+        } finally {
+            context.setRendered(null);
+        }
+
+        if (key != null) {
+            CACHE.put(key, rendered);
+        }
+
+        return rendered;
+    }
+
+    /**
+     * The item name, source revision and a SHA1 of the context data. The
+     * "version" value is per client and left out, so templates must not
+     * render it. Returns null when the data can not be serialized, and the
+     * content is then not cached.
+     */
+    protected String getCacheKey(ArchiveContext context, String sourceRevision) {
+        Map<String, Object> data = new HashMap<String, Object>(context.getData());
+        data.remove("version");
+
+        try {
+            DigestOutputStream dos = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, MessageDigest.getInstance("SHA1"));
+            CONTEXT_MAPPER.writeValue(dos, data);
+
+            return getName() + ":" + sourceRevision + ":" + Hex.encodeHexString(dos.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Missing SHA1 digest", e);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    protected void writeRendered(ArchiveContext context, RenderedEntry rendered) throws IOException {
+        TarArchiveOutputStream taos = context.getOutputStream();
+        TarArchiveEntry entry = getDefaultEntry(context, rendered.getName(), rendered.getContent().length);
+
+        taos.putArchiveEntry(entry);
+        taos.write(rendered.getContent());
+        taos.closeArchiveEntry();
+
+        context.getHashes().put(entry.getName(), rendered.getHash());
+    }
+
     protected void writeHashes(final ArchiveContext context) throws IOException {
         StringBuilder stringContent = new StringBuilder();
         Map<String, String> hashes = context.getHashes();
@@ -95,7 +189,15 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
         });
     }
 
+    /**
+     * Writes the content entries. They are rendered into the context rather
+     * than the archive so they can be cached, the version entry is written
+     * before them for each request.
+     */
     protected void writeContent(final ArchiveContext context) throws IOException {
+    }
+
+    protected void writeVersion(final ArchiveContext context) throws IOException {
         final byte[] content = (context.getVersion() + "\n").getBytes("UTF-8");
         withEntry(context, "version", content.length, new WithEntry() {
             @Override
@@ -116,6 +218,15 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
     }
 
     protected void withEntry(ArchiveContext context, String entryName, long size, WithEntry with) throws IOException {
+        List<RenderedEntry> rendered = context.getRendered();
+        if (rendered != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            with.with(baos);
+            byte[] content = baos.toByteArray();
+            rendered.add(new RenderedEntry(entryName, content, DigestUtils.shaHex(content)));
+            return;
+        }
+
         if (size < 0) {
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
             with.with(baos);
@@ -160,10 +271,24 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
         entry.setGroupName("root");
         entry.setMode(0644);
         entry.setSize(size);
-        entry.setModTime(new Date(System.currentTimeMillis() - (60 * 60 * 24 * 1000)));
+        entry.setModTime(context.getModTime());
         return entry;
     }
 
+    /**
+     * A day before this item first served the source revision, so cached and
+     * freshly rendered entries carry the same mtime.
+     */
+    protected Date getModTime(String sourceRevision) {
+        SourceTime current = sourceTime;
+        if (current == null || sourceRevision == null || !sourceRevision.equals(current.revision)) {
+            current = new SourceTime(sourceRevision, System.currentTimeMillis() - ONE_DAY);
+            sourceTime = current;
+        }
+
+        return new Date(current.time);
+    }
+
     @Override
     public String getSourceRevision() {
         String hash = super.getSourceRevision();
@@ -174,7 +299,34 @@ public abstract class AbstractArchiveBasedConfigItem extends AbstractResourceRoo
         return hash;
     }
 
+    protected static ObjectMapper newContextMapper() {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Record.class, new JsonSerializer<Record>() {
+            @Override
+            public void serialize(Record value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+                provider.defaultSerializeValue(value.intoMap(), jgen);
+            }
+        });
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(module);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        mapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+        return mapper;
+    }
+
     protected interface WithEntry {
         public void with(OutputStream os) throws IOException;
     }
+
+    private static class SourceTime {
+        String revision;
+        long time;
+
+        public SourceTime(String revision, long time) {
+            this.revision = revision;
+            this.time = time;
+        }
+    }
 }
\ No newline at end of file
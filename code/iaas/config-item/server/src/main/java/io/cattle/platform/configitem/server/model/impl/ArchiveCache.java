@@ -0,0 +1,64 @@
+package io.cattle.platform.configitem.server.model.impl;
+
+import io.cattle.platform.archaius.util.ArchaiusUtil;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netflix.config.DynamicLongProperty;
+
+/**
+ * Rendered archive entries keyed by item, source revision and context hash.
+ * Least recently used entries are dropped once the total content size goes
+ * over config.item.archive.cache.max.bytes.
+ */
+public class ArchiveCache {
+
+    private static final DynamicLongProperty MAX_BYTES = ArchaiusUtil.getLong("config.item.archive.cache.max.bytes");
+
+    LinkedHashMap<String, List<RenderedEntry>> rendered = new LinkedHashMap<String, List<RenderedEntry>>(16, 0.75f, true);
+    long size = 0;
+
+    public boolean isEnabled() {
+        return MAX_BYTES.get() > 0;
+    }
+
+    public synchronized List<RenderedEntry> get(String key) {
+        return rendered.get(key);
+    }
+
+    public synchronized void put(String key, List<RenderedEntry> entries) {
+        long max = MAX_BYTES.get();
+        long length = size(entries);
+        if (length > max) {
+            return;
+        }
+
+        List<RenderedEntry> old = rendered.put(key, entries);
+        if (old != null) {
+            size -= size(old);
+        }
+        size += length;
+
+        Iterator<Map.Entry<String, List<RenderedEntry>>> iter = rendered.entrySet().iterator();
+        while (size > max && iter.hasNext()) {
+            size -= size(iter.next().getValue());
+            iter.remove();
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    protected static long size(List<RenderedEntry> entries) {
+        long size = 0;
+        for (RenderedEntry entry : entries) {
+            size += entry.getContent().length;
+        }
+        return size;
+    }
+
+}
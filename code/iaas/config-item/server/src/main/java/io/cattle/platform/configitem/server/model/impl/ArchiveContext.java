@@ -2,7 +2,9 @@ package io.cattle.platform.configitem.server.model.impl;
 
 import io.cattle.platform.configitem.server.model.Request;
 
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -14,6 +16,8 @@ public class ArchiveContext {
     TarArchiveOutputStream taos;
     Map<String, Object> data = new HashMap<String, Object>();
     Map<String, String> hashes = new HashMap<String, String>();
+    Date modTime = new Date(System.currentTimeMillis() - (60 * 60 * 24 * 1000));
+    List<RenderedEntry> rendered;
 
     public ArchiveContext(Request request, TarArchiveOutputStream taos, String version) {
         super();
@@ -44,4 +48,24 @@ public class ArchiveContext {
         return hashes;
     }
 
+    public Date getModTime() {
+        return modTime;
+    }
+
+    public void setModTime(Date modTime) {
+        this.modTime = modTime;
+    }
+
+    /**
+     * When set, content entries are collected here instead of being written
+     * to the archive.
+     */
+    public List<RenderedEntry> getRendered() {
+        return rendered;
+    }
+
+    public void setRendered(List<RenderedEntry> rendered) {
+        this.rendered = rendered;
+    }
+
 }
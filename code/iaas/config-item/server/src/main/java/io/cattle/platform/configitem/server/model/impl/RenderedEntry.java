@@ -0,0 +1,32 @@
+package io.cattle.platform.configitem.server.model.impl;
+
+/**
+ * The content and SHA1 of an archive entry, named relative to the
+ * item-version directory so it can be written for any client version.
+ */
+public class RenderedEntry {
+
+    String name;
+    byte[] content;
+    String hash;
+
+    public RenderedEntry(String name, byte[] content, String hash) {
+        super();
+        this.name = name;
+        this.content = content;
+        this.hash = hash;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+}
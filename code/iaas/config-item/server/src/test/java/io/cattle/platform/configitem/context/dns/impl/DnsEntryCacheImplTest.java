@@ -0,0 +1,148 @@
+package io.cattle.platform.configitem.context.dns.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.configitem.context.dao.DnsInfoDao;
+import io.cattle.platform.configitem.context.data.DnsEntryData;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.core.model.IpAddress;
+import io.cattle.platform.object.ObjectManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class DnsEntryCacheImplTest {
+
+    DnsEntryCacheImpl cache;
+    DnsInfoDao dnsInfoDao;
+    Instance instance;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("dns.entry.cache.enabled", true);
+        ConfigurationManager.getConfigInstance().setProperty("item.context.dns.info.items", "hosts");
+    }
+
+    @Before
+    public void setup() {
+        dnsInfoDao = mock(DnsInfoDao.class);
+        when(dnsInfoDao.getVnetIds(any(Instance.class))).thenReturn(Arrays.asList(1L));
+
+        cache = new DnsEntryCacheImpl();
+        cache.dnsInfoDao = dnsInfoDao;
+        cache.objectManager = mock(ObjectManager.class);
+
+        instance = instance(10L, 5L, 7L);
+    }
+
+    @Test
+    public void testBumpThenFetch() {
+        DnsEntryData before = entry("10.42.0.1");
+        DnsEntryData after = entry("10.42.0.2");
+        when(dnsInfoDao.getInstanceLinksHostDnsData(instance)).thenReturn(Arrays.asList(before), Arrays.asList(after));
+
+        assertEquals(Arrays.asList(before), list(cache.getDnsEntries(instance, false)));
+        assertEquals(Arrays.asList(before), list(cache.getDnsEntries(instance, false)));
+
+        cache.itemsIncremented(new Client(Agent.class, 7L), Arrays.asList("hosts"));
+
+        assertEquals(Arrays.asList(after), list(cache.getDnsEntries(instance, false)));
+        verify(dnsInfoDao, times(2)).getInstanceLinksHostDnsData(instance);
+    }
+
+    @Test
+    public void testHitCostsNoQuery() {
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(instance, false);
+
+        verify(dnsInfoDao, times(1)).getVnetIds(instance);
+        verify(dnsInfoDao, times(1)).getInstanceLinksHostDnsData(instance);
+    }
+
+    @Test
+    public void testSharedByAgentsOnSameVnets() {
+        Instance other = instance(11L, 5L, 8L);
+
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(other, false);
+
+        verify(dnsInfoDao, times(1)).getInstanceLinksHostDnsData(any(Instance.class));
+    }
+
+    @Test
+    public void testInvalidatesOnlyTheAccount() {
+        Instance other = instance(20L, 6L, 9L);
+
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(other, false);
+
+        cache.itemsIncremented(new Client(Agent.class, 7L), Arrays.asList("hosts"));
+
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(other, false);
+
+        verify(dnsInfoDao, times(2)).getInstanceLinksHostDnsData(instance);
+        verify(dnsInfoDao, times(1)).getInstanceLinksHostDnsData(other);
+        /* Only the instance keys of the bumped account are looked up again */
+        verify(dnsInfoDao, times(2)).getVnetIds(instance);
+        verify(dnsInfoDao, times(1)).getVnetIds(other);
+    }
+
+    @Test
+    public void testOtherItemsIgnored() {
+        cache.getDnsEntries(instance, false);
+        cache.itemsIncremented(new Client(Agent.class, 7L), Arrays.asList("iptables"));
+        cache.getDnsEntries(instance, false);
+
+        verify(dnsInfoDao, times(1)).getInstanceLinksHostDnsData(instance);
+    }
+
+    @Test
+    public void testResourceChangeWithoutAccountDropsAll() {
+        Instance other = instance(20L, 6L, 9L);
+
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(other, false);
+
+        cache.resourceChanged("credential", null);
+        cache.getDnsEntries(instance, false);
+        verify(dnsInfoDao, times(1)).getInstanceLinksHostDnsData(instance);
+
+        cache.resourceChanged("nic", null);
+        cache.getDnsEntries(instance, false);
+        cache.getDnsEntries(other, false);
+        verify(dnsInfoDao, times(2)).getInstanceLinksHostDnsData(instance);
+        verify(dnsInfoDao, times(2)).getInstanceLinksHostDnsData(other);
+    }
+
+    protected Instance instance(long id, long accountId, long agentId) {
+        Instance instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getAccountId()).thenReturn(accountId);
+        when(instance.getAgentId()).thenReturn(agentId);
+        return instance;
+    }
+
+    protected DnsEntryData entry(String address) {
+        IpAddress ipAddress = mock(IpAddress.class);
+        when(ipAddress.getAddress()).thenReturn(address);
+
+        DnsEntryData data = new DnsEntryData();
+        data.setSourceIpAddress(ipAddress);
+        return data;
+    }
+
+    protected static Object list(Collection<DnsEntryData> entries) {
+        return Arrays.asList(entries.toArray());
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.cattle.platform.configitem.context.impl;
+
+import static org.mockito.Mockito.*;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.core.model.Service;
+import io.cattle.platform.metadata.service.MetadataService;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class MetadataInfoFactoryTest {
+
+    MetadataInfoFactory factory;
+    MetadataService metadataService;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("item.context.metadata.info.items", "metadata");
+    }
+
+    @Before
+    public void setup() {
+        metadataService = mock(MetadataService.class);
+
+        factory = new MetadataInfoFactory();
+        factory.setMetadataService(metadataService);
+    }
+
+    @Test
+    public void testBumpInvalidatesAgent() {
+        factory.itemsIncremented(new Client(Agent.class, 7L), Arrays.asList("iptables", "metadata"));
+
+        verify(metadataService).invalidateAgent(7L);
+    }
+
+    @Test
+    public void testOtherItemsIgnored() {
+        factory.itemsIncremented(new Client(Agent.class, 7L), Arrays.asList("iptables"));
+        factory.itemsIncremented(new Client(Service.class, 7L), Arrays.asList("metadata"));
+
+        verifyZeroInteractions(metadataService);
+    }
+
+}
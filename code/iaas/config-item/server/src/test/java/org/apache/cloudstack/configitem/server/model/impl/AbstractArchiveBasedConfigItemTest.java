@@ -0,0 +1,178 @@
+package org.apache.cloudstack.configitem.server.model.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.configitem.context.ConfigItemContextFactory;
+import io.cattle.platform.configitem.model.Client;
+import io.cattle.platform.configitem.model.DefaultItemVersion;
+import io.cattle.platform.configitem.server.model.ConfigItem;
+import io.cattle.platform.configitem.server.model.Request;
+import io.cattle.platform.configitem.server.model.impl.AbstractArchiveBasedConfigItem;
+import io.cattle.platform.configitem.server.model.impl.ArchiveContext;
+import io.cattle.platform.configitem.server.resource.ResourceRoot;
+import io.cattle.platform.configitem.version.ConfigItemStatusManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class AbstractArchiveBasedConfigItemTest {
+
+    static int items = 0;
+
+    ConfigItemStatusManager versionManager;
+    ResourceRoot resourceRoot;
+    ContentItem item;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("config.item.archive.cache.max.bytes", 1024 * 1024);
+    }
+
+    @Before
+    public void setup() {
+        versionManager = mock(ConfigItemStatusManager.class);
+        resourceRoot = mock(ResourceRoot.class);
+        when(resourceRoot.getSourceRevision()).thenReturn("abc");
+
+        /* Each test gets its own item name so the shared cache starts empty */
+        item = new ContentItem("testitem" + items++, versionManager, resourceRoot);
+    }
+
+    @Test
+    public void testReRequestRendersCurrentContent() throws Exception {
+        TestRequest req = new TestRequest();
+        when(versionManager.getRequestedVersion(any(Client.class), anyString())).thenReturn(new DefaultItemVersion(1, "abc"));
+
+        item.content = "first";
+        item.handleRequest(req);
+        assertEquals("first", readEntries(req).get("testitem-1-abc/content"));
+
+        item.content = "second";
+        req = new TestRequest();
+        item.handleRequest(req);
+        assertEquals("second", readEntries(req).get("testitem-1-abc/content"));
+        assertEquals(2, item.rendered);
+    }
+
+    @Test
+    public void testSameContextIsRenderedOnce() throws Exception {
+        item.content = "first";
+
+        when(versionManager.getRequestedVersion(any(Client.class), anyString())).thenReturn(new DefaultItemVersion(1, "abc"));
+        TestRequest first = new TestRequest();
+        item.handleRequest(first);
+
+        when(versionManager.getRequestedVersion(any(Client.class), anyString())).thenReturn(new DefaultItemVersion(2, "abc"));
+        TestRequest second = new TestRequest();
+        item.handleRequest(second);
+
+        assertEquals(1, item.rendered);
+
+        Map<String, String> entries = readEntries(second);
+        assertEquals("2-abc\n", entries.get("testitem-2-abc/version"));
+        assertEquals("first", entries.get("testitem-2-abc/content"));
+        assertTrue(entries.get("testitem-2-abc/SHA1SUMS").contains(DigestUtils.shaHex("first") + " *testitem-2-abc/content\n"));
+        assertTrue(entries.get("testitem-2-abc/SHA1SUMS").contains(DigestUtils.shaHex("2-abc\n") + " *testitem-2-abc/version\n"));
+    }
+
+    @Test
+    public void testCachedArchiveMatchesRendered() throws Exception {
+        item.content = "first";
+        when(versionManager.getRequestedVersion(any(Client.class), anyString())).thenReturn(new DefaultItemVersion(1, "abc"));
+
+        TestRequest rendered = new TestRequest();
+        item.handleRequest(rendered);
+        TestRequest cached = new TestRequest();
+        item.handleRequest(cached);
+
+        assertEquals(1, item.rendered);
+        assertArrayEquals(rendered.baos.toByteArray(), cached.baos.toByteArray());
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        TestRequest req = new TestRequest();
+        req.setCurrentVersion(new DefaultItemVersion(1, "abc"));
+        when(versionManager.getRequestedVersion(any(Client.class), anyString())).thenReturn(new DefaultItemVersion(1, "abc"));
+
+        item.content = "first";
+        item.handleRequest(req);
+
+        Map<String, String> entries = readEntries(req);
+        assertNull(entries.get("testitem-1-abc/content"));
+        assertEquals("1-abc\n", entries.get("testitem-1-abc/uptodate"));
+        assertEquals(0, item.rendered);
+    }
+
+    protected Map<String, String> readEntries(TestRequest req) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        TarArchiveInputStream tais = new TarArchiveInputStream(new GZIPInputStream(new ByteArrayInputStream(req.baos.toByteArray())));
+        try {
+            TarArchiveEntry entry = null;
+            while ((entry = tais.getNextTarEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toString(tais, "UTF-8"));
+            }
+            return entries;
+        } finally {
+            tais.close();
+        }
+    }
+
+    private static class ContentItem extends AbstractArchiveBasedConfigItem {
+
+        String content;
+        int rendered = 0;
+
+        public ContentItem(String name, ConfigItemStatusManager versionManager, ResourceRoot resourceRoot) {
+            super(name, versionManager, resourceRoot, Arrays.<ConfigItemContextFactory> asList(new ContentFactory()));
+        }
+
+        @Override
+        protected void writeContent(ArchiveContext context) throws IOException {
+            super.writeContent(context);
+            rendered++;
+
+            final byte[] bytes = context.getData().get("content").toString().getBytes("UTF-8");
+            withEntry(context, "content", bytes.length, new WithEntry() {
+                @Override
+                public void with(OutputStream os) throws IOException {
+                    os.write(bytes);
+                }
+            });
+        }
+    }
+
+    private static class ContentFactory implements ConfigItemContextFactory {
+
+        @Override
+        public String[] getItems() {
+            return new String[0];
+        }
+
+        @Override
+        public void populateContext(Request req, ConfigItem item, ArchiveContext context) {
+            context.getData().put("content", ((ContentItem) item).content);
+        }
+
+        @Override
+        public String getContentHash(String hash) {
+            return hash;
+        }
+    }
+
+}
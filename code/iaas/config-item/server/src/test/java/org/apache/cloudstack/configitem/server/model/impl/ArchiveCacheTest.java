@@ -0,0 +1,65 @@
+package org.apache.cloudstack.configitem.server.model.impl;
+
+import static org.junit.Assert.*;
+import io.cattle.platform.configitem.server.model.impl.ArchiveCache;
+import io.cattle.platform.configitem.server.model.impl.RenderedEntry;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class ArchiveCacheTest {
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("config.item.archive.cache.max.bytes", 10);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ArchiveCache cache = new ArchiveCache();
+        cache.put("a", entries(4));
+        cache.put("b", entries(2, 2));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", entries(4));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void testReplaceKeepsSize() {
+        ArchiveCache cache = new ArchiveCache();
+        cache.put("a", entries(4));
+        cache.put("a", entries(6));
+
+        assertEquals(6, cache.getSize());
+    }
+
+    @Test
+    public void testSkipsEntriesOverMax() {
+        ArchiveCache cache = new ArchiveCache();
+        cache.put("a", entries(4));
+        cache.put("b", entries(6, 6));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(4, cache.getSize());
+    }
+
+    protected List<RenderedEntry> entries(int... sizes) {
+        RenderedEntry[] entries = new RenderedEntry[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            entries[i] = new RenderedEntry("entry" + i, new byte[sizes[i]], "hash");
+        }
+        return Arrays.asList(entries);
+    }
+
+}
@@ -3,20 +3,25 @@ package io.cattle.platform.engine.manager.impl.jooq;
 import static io.cattle.platform.core.model.tables.ProcessExecutionTable.*;
 import static io.cattle.platform.core.model.tables.ProcessInstanceTable.*;
 import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.core.model.tables.ProcessInstanceTable;
 import io.cattle.platform.core.model.tables.records.ProcessInstanceRecord;
 import io.cattle.platform.db.jooq.dao.impl.AbstractJooqDao;
 import io.cattle.platform.engine.manager.impl.ProcessRecord;
 import io.cattle.platform.engine.manager.impl.ProcessRecordDao;
+import io.cattle.platform.engine.manager.impl.ProcessRecordSnapshot;
 import io.cattle.platform.engine.process.ExitReason;
 import io.cattle.platform.engine.process.ProcessPhase;
 import io.cattle.platform.engine.process.ProcessResult;
 import io.cattle.platform.engine.process.log.ProcessLog;
+import io.cattle.platform.json.JsonCodec;
+import io.cattle.platform.json.JsonCodecs;
 import io.cattle.platform.json.JsonMapper;
 
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -27,37 +32,98 @@ import javax.inject.Inject;
 
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.ObjectUtils;
+import org.jooq.BatchBindStep;
 import org.jooq.Condition;
+import org.jooq.Field;
 import org.jooq.Record3;
 import org.jooq.RecordHandler;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicStringProperty;
 
 public class JooqProcessRecordDao extends AbstractJooqDao implements ProcessRecordDao {
 
     private static DynamicIntProperty PROCESS_REPLAY_BATCH = ArchaiusUtil.getInt("process.replay.batch.size");
 
+    private static final DynamicStringProperty PROCESS_LOG_CODEC = ArchaiusUtil.getString("process.log.codec");
+    private static final int MAX_LOG_LENGTH = 1000000;
+
+    /* The raw column, so the encoded log is written as is instead of through DataConverter */
+    private static final Field<String> LOG_TEXT = DSL.fieldByName(String.class, PROCESS_EXECUTION.LOG.getName());
+
+    private static final Set<SQLDialect> GROUP_BY_DIALECTS = EnumSet.of(SQLDialect.MYSQL, SQLDialect.MARIADB, SQLDialect.H2, SQLDialect.POSTGRES);
+
     private static final Logger log = LoggerFactory.getLogger(JooqProcessRecordDao.class);
 
     JsonMapper jsonMapper;
 
     @Override
     public List<Long> pendingTasks(String resourceType, String resourceId) {
+        if (GROUP_BY_DIALECTS.contains(getConfiguration().dialect())) {
+            return pendingTasksGrouped(resourceType, resourceId);
+        }
+
+        return pendingTasksFiltered(resourceType, resourceId);
+    }
+
+    @Override
+    public List<Long> unfinished(List<Long> ids) {
+        if (ids.size() == 0) {
+            return new ArrayList<Long>();
+        }
+
+        return create().select(PROCESS_INSTANCE.ID)
+                .from(PROCESS_INSTANCE)
+                .where(PROCESS_INSTANCE.ID.in(ids))
+                .and(PROCESS_INSTANCE.END_TIME.isNull())
+                .fetch(PROCESS_INSTANCE.ID);
+    }
+
+    /**
+     * Picks the head of each resource in the database. First the highest
+     * priority per resource is found and then the lowest id with that
+     * priority, which gives the same ordering as
+     * {@link #pendingTasksFiltered(String, String)} without fetching rows that
+     * will just be thrown away.
+     */
+    protected List<Long> pendingTasksGrouped(String resourceType, String resourceId) {
+        ProcessInstanceTable head = PROCESS_INSTANCE.as("head");
+        Field<Integer> maxPriority = PROCESS_INSTANCE.PRIORITY.max().as("max_priority");
+
+        Table<Record3<String, String, Integer>> heads = create()
+                .select(PROCESS_INSTANCE.RESOURCE_TYPE, PROCESS_INSTANCE.RESOURCE_ID, maxPriority)
+                .from(PROCESS_INSTANCE)
+                .where(processCondition(resourceType, resourceId))
+                .groupBy(PROCESS_INSTANCE.RESOURCE_TYPE, PROCESS_INSTANCE.RESOURCE_ID)
+                .asTable("heads");
+
+        Field<Long> minId = head.ID.min();
+
+        return create().select(minId)
+                .from(head)
+                .join(heads)
+                    .on(head.RESOURCE_TYPE.eq(heads.field(PROCESS_INSTANCE.RESOURCE_TYPE))
+                        .and(head.RESOURCE_ID.eq(heads.field(PROCESS_INSTANCE.RESOURCE_ID)))
+                        .and(head.PRIORITY.eq(heads.field(maxPriority))))
+                .where(head.END_TIME.isNull())
+                .groupBy(head.RESOURCE_TYPE, head.RESOURCE_ID, head.PRIORITY)
+                .orderBy(head.PRIORITY.desc(), minId.asc())
+                .limit(PROCESS_REPLAY_BATCH.get())
+                .fetch(minId);
+    }
+
+    protected List<Long> pendingTasksFiltered(String resourceType, String resourceId) {
         final List<Long> result = new ArrayList<Long>();
         /*
-         * I know I should and can do this unique logic in SQL, but I couldn't
-         * figure out a simple way to do it in HSQLDB. So if you're reading this
-         * and can find a query that does this across all the supported DB,
-         * please let someone know. Here's what I wanted to do select
-         * min(PROCESS_INSTANCE.ID) from PROCESS_INSTANCE where
-         * PROCESS_INSTANCE.END_TIME is null group by
-         * PROCESS_INSTANCE.RESOURCE_TYPE, PROCESS_INSTANCE.RESOURCE_ID order by
-         * PROCESS_INSTANCE.START_TIME asc limit 10000 offset 0 But you can't
-         * order by something that is not in the group by. So how do I get a
-         * unique pair of resource_type, resource_id, but still order by id or
-         * start_time
+         * This is the fallback for databases that can't do the group by join
+         * in pendingTasksGrouped, like HSQLDB. The unique logic is done in
+         * Java, so most of the rows fetched on a large backlog get thrown away
+         * and resources past the batch limit have to wait for the next run.
          */
         final Set<String> seen = new HashSet<String>();
         create().select(PROCESS_INSTANCE.ID, PROCESS_INSTANCE.RESOURCE_TYPE, PROCESS_INSTANCE.RESOURCE_ID).from(PROCESS_INSTANCE).where(
@@ -153,17 +219,94 @@ public class JooqProcessRecordDao extends AbstractJooqDao implements ProcessReco
 
         if (record.getId() != null && processLog != null && processLog.getUuid() != null) {
             String uuid = processLog.getUuid();
-            Map<String, Object> log = convertToMap(record, processLog);
+            String log = encodeLog(record, processLog);
 
-            int result = create().update(PROCESS_EXECUTION).set(PROCESS_EXECUTION.LOG, log).where(PROCESS_EXECUTION.UUID.eq(uuid)).execute();
+            int result = create().update(PROCESS_EXECUTION).set(LOG_TEXT, log).where(PROCESS_EXECUTION.UUID.eq(uuid)).execute();
 
             if (result == 0) {
-                create().insertInto(PROCESS_EXECUTION, PROCESS_EXECUTION.PROCESS_INSTANCE_ID, PROCESS_EXECUTION.UUID, PROCESS_EXECUTION.LOG).values(
+                create().insertInto(PROCESS_EXECUTION, PROCESS_EXECUTION.PROCESS_INSTANCE_ID, PROCESS_EXECUTION.UUID, LOG_TEXT).values(
                         record.getId(), uuid, log).execute();
             }
         }
     }
 
+    @Override
+    public ProcessRecordSnapshot snapshot(ProcessRecord record) {
+        ProcessLog processLog = record.getProcessLog();
+        if (processLog == null || processLog.getUuid() == null) {
+            return new ProcessRecordSnapshot(record, null, null);
+        }
+
+        return new ProcessRecordSnapshot(record, processLog.getUuid(), encodeLog(record, processLog));
+    }
+
+    @Override
+    public List<ProcessRecordSnapshot> updateInProgress(List<ProcessRecordSnapshot> records) {
+        List<ProcessRecordSnapshot> notPersisted = new ArrayList<ProcessRecordSnapshot>();
+        if (records.size() == 0) {
+            return notPersisted;
+        }
+
+        BatchBindStep instanceBatch = create().batch(create().update(PROCESS_INSTANCE)
+                .set(PROCESS_INSTANCE.END_TIME, (Timestamp) null)
+                .set(PROCESS_INSTANCE.RESULT, (String) null)
+                .set(PROCESS_INSTANCE.EXIT_REASON, (String) null)
+                .set(PROCESS_INSTANCE.PHASE, (String) null)
+                .set(PROCESS_INSTANCE.RUNNING_PROCESS_SERVER_ID, (String) null)
+                .set(PROCESS_INSTANCE.DATA, (Map<String, Object>) null)
+                .where(PROCESS_INSTANCE.ID.eq((Long) null))
+                .and(PROCESS_INSTANCE.END_TIME.isNull()));
+
+        for (ProcessRecordSnapshot record : records) {
+            instanceBatch.bind(toTimestamp(record.getEndTime()),
+                    record.getResult(),
+                    record.getExitReason(),
+                    record.getPhase(),
+                    record.getRunningProcessServerId(),
+                    record.getData(),
+                    record.getId());
+        }
+
+        int[] instanceCounts = instanceBatch.execute();
+
+        List<ProcessRecordSnapshot> withLogs = new ArrayList<ProcessRecordSnapshot>(records.size());
+        BatchBindStep logBatch = create().batch(create().update(PROCESS_EXECUTION)
+                .set(LOG_TEXT, (String) null)
+                .where(PROCESS_EXECUTION.UUID.eq((String) null))
+                .and(PROCESS_EXECUTION.PROCESS_INSTANCE_ID.in(create().select(PROCESS_INSTANCE.ID)
+                        .from(PROCESS_INSTANCE)
+                        .where(PROCESS_INSTANCE.ID.eq((Long) null))
+                        .and(PROCESS_INSTANCE.END_TIME.isNull()))));
+
+        for (int i = 0; i < records.size(); i++) {
+            ProcessRecordSnapshot record = records.get(i);
+            /* A count of zero means the process has ended since, which is persisted synchronously */
+            if (instanceCounts[i] == 0 || record.getLogUuid() == null) {
+                continue;
+            }
+
+            withLogs.add(record);
+            logBatch.bind(record.getLogText(), record.getLogUuid(), record.getId());
+        }
+
+        if (withLogs.size() == 0) {
+            return notPersisted;
+        }
+
+        int[] logCounts = logBatch.execute();
+        for (int i = 0; i < withLogs.size(); i++) {
+            /*
+             * The execution row is normally inserted synchronously when the
+             * process starts, so this should be rare
+             */
+            if (logCounts[i] == 0) {
+                notPersisted.add(withLogs.get(i));
+            }
+        }
+
+        return notPersisted;
+    }
+
     @Override
     public int getNumPreviousExecutions(long processInstanceId) {
         return create().selectCount().from(PROCESS_EXECUTION).where(PROCESS_EXECUTION.PROCESS_INSTANCE_ID.eq(processInstanceId)).fetchOne(0, int.class);
@@ -203,22 +346,27 @@ public class JooqProcessRecordDao extends AbstractJooqDao implements ProcessReco
         return jsonMapper.convertValue(obj, type);
     }
 
-    @SuppressWarnings("unchecked")
-    protected Map<String, Object> convertToMap(ProcessRecord record, ProcessLog obj) {
+    /**
+     * Serializes the log once, straight to the text that is stored in the
+     * column. Readers go through DataConverter which detects the codec.
+     */
+    protected String encodeLog(ProcessRecord record, ProcessLog obj) {
         if (obj == null)
             return null;
 
+        JsonCodec codec = JsonCodecs.getCodec(PROCESS_LOG_CODEC.get());
         try {
-            String stringData = jsonMapper.writeValueAsString(obj);
-            if (stringData.length() > 1000000) {
-                log.error("Process log is too long for id [{}] truncating executions : {}", record.getId(), stringData);
+            String text = codec.encode(obj);
+            if (text.length() > MAX_LOG_LENGTH) {
+                log.error("Process log is too long for id [{}] truncating executions, [{}] encoded length [{}]", record.getId(), codec.getName(),
+                        text.length());
                 obj.getExecutions().clear();
+                text = codec.encode(obj);
             }
+            return text;
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
-
-        return jsonMapper.convertValue(obj, Map.class);
     }
 
     public JsonMapper getJsonMapper() {
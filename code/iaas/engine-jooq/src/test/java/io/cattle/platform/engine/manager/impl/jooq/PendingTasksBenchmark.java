@@ -0,0 +1,78 @@
+package io.cattle.platform.engine.manager.impl.jooq;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DefaultConfiguration;
+
+import com.netflix.config.ConfigurationManager;
+
+/**
+ * Times the grouped and filtered pending task selections against an in
+ * memory H2 database. Not part of the test run, start it by hand with
+ *
+ * <pre>
+ * java -cp ... io.cattle.platform.engine.manager.impl.jooq.PendingTasksBenchmark [openInstances] [resources]
+ * </pre>
+ */
+public class PendingTasksBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String... args) throws Exception {
+        int instances = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int resources = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        ConfigurationManager.getConfigInstance().setProperty("process.replay.batch.size", PendingTasksTest.BATCH);
+
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:benchmark");
+        try {
+            PendingTasksTest.createTable(conn);
+            PendingTasksTest.populate(conn, instances, resources);
+
+            DefaultConfiguration config = new DefaultConfiguration();
+            config.set(conn);
+            config.set(SQLDialect.H2);
+            config.set(new Settings().withRenderSchema(false));
+
+            JooqProcessRecordDao dao = new JooqProcessRecordDao();
+            dao.setConfiguration(config);
+
+            System.out.println(String.format("%d instances over %d resources", instances, resources));
+            run("filtered", dao, false);
+            run("grouped", dao, true);
+
+            List<Long> expected = PendingTasksTest.expected(conn);
+            List<Long> grouped = dao.pendingTasksGrouped(null, null);
+            if (!expected.equals(grouped)) {
+                throw new IllegalStateException("Grouped selection returned " + grouped + " expected " + expected);
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    protected static void run(String name, JooqProcessRecordDao dao, boolean grouped) {
+        List<Long> result = null;
+        for (int i = 0; i < WARMUP; i++) {
+            result = select(dao, grouped);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = select(dao, grouped);
+        }
+        long avg = (System.nanoTime() - start) / ITERATIONS / 1000000;
+
+        System.out.println(String.format("%-10s %6d ms/selection, %d unique resources returned", name, avg, result.size()));
+    }
+
+    protected static List<Long> select(JooqProcessRecordDao dao, boolean grouped) {
+        return grouped ? dao.pendingTasksGrouped(null, null) : dao.pendingTasksFiltered(null, null);
+    }
+
+}
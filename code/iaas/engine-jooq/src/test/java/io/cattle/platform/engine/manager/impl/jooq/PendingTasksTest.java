@@ -0,0 +1,128 @@
+package io.cattle.platform.engine.manager.impl.jooq;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DefaultConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+/**
+ * Checks both pending task selections against a full scan of an in memory
+ * H2 database.
+ */
+public class PendingTasksTest {
+
+    static final int BATCH = 50;
+
+    Connection conn;
+    JooqProcessRecordDao dao;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("process.replay.batch.size", BATCH);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:pending");
+        createTable(conn);
+
+        DefaultConfiguration config = new DefaultConfiguration();
+        config.set(conn);
+        config.set(SQLDialect.H2);
+        config.set(new Settings().withRenderSchema(false));
+
+        dao = new JooqProcessRecordDao();
+        dao.setConfiguration(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testGroupedMatchesFullScan() throws Exception {
+        populate(conn, 5000, 500);
+
+        assertEquals(expected(conn), dao.pendingTasksGrouped(null, null));
+    }
+
+    @Test
+    public void testFilteredMatchesFullScanWithFewResources() throws Exception {
+        populate(conn, 2000, 20);
+
+        List<Long> expected = expected(conn);
+        assertEquals(20, expected.size());
+        assertEquals(expected, dao.pendingTasksFiltered(null, null));
+        assertEquals(expected, dao.pendingTasksGrouped(null, null));
+    }
+
+    @Test
+    public void testSingleResource() throws Exception {
+        populate(conn, 200, 3);
+
+        List<Long> grouped = dao.pendingTasksGrouped("instance", "1");
+        assertEquals(1, grouped.size());
+        assertEquals(dao.pendingTasksFiltered("instance", "1"), grouped);
+    }
+
+    protected static List<Long> expected(Connection conn) throws Exception {
+        List<Long> result = new ArrayList<Long>();
+        Set<String> seen = new HashSet<String>();
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("select \"id\", \"resource_type\", \"resource_id\" from \"process_instance\" "
+                + "where \"end_time\" is null order by \"priority\" desc, \"id\" asc");
+        while (rs.next() && result.size() < BATCH) {
+            if (seen.add(rs.getString(2) + ":" + rs.getString(3))) {
+                result.add(rs.getLong(1));
+            }
+        }
+        stmt.close();
+        return result;
+    }
+
+    protected static void createTable(Connection conn) throws Exception {
+        Statement stmt = conn.createStatement();
+        stmt.execute("drop table if exists \"process_instance\"");
+        stmt.execute("create table \"process_instance\" (\"id\" bigint auto_increment primary key, \"start_time\" timestamp, "
+                + "\"end_time\" timestamp, \"data\" clob, \"priority\" int default 0, \"process_name\" varchar(128), "
+                + "\"resource_type\" varchar(128), \"resource_id\" varchar(128), \"result\" varchar(128), \"exit_reason\" varchar(128), "
+                + "\"phase\" varchar(128), \"start_process_server_id\" varchar(128), \"running_process_server_id\" varchar(128))");
+        stmt.execute("create index \"idx_process_instance_pending\" on \"process_instance\" "
+                + "(\"end_time\", \"resource_type\", \"resource_id\", \"priority\", \"id\")");
+        stmt.close();
+    }
+
+    protected static void populate(Connection conn, int instances, int resources) throws Exception {
+        Random random = new Random(42);
+        PreparedStatement stmt = conn.prepareStatement("insert into \"process_instance\" "
+                + "(\"process_name\", \"resource_type\", \"resource_id\", \"priority\", \"end_time\") values ('instance.start', 'instance', ?, ?, ?)");
+        for (int i = 0; i < instances; i++) {
+            stmt.setString(1, Integer.toString(random.nextInt(resources)));
+            stmt.setInt(2, random.nextInt(20) == 0 ? 100 : 0);
+            stmt.setTimestamp(3, random.nextInt(4) == 0 ? new java.sql.Timestamp(0) : null);
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+        stmt.close();
+    }
+
+}
@@ -10,4 +10,6 @@ public interface PingInstancesMonitorDao {
 
     Long getAgentIdForInstanceHostMap(String instanceHostMap);
 
+    KnownInstance getInstanceForInstanceHostMap(String instanceHostMap);
+
 }
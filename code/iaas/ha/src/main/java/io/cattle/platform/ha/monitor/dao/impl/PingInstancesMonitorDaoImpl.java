@@ -13,12 +13,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jooq.Field;
+
 public class PingInstancesMonitorDaoImpl extends AbstractJooqDao implements PingInstancesMonitorDao {
 
+    private static final Field<?>[] KNOWN_INSTANCE_FIELDS = new Field<?>[] {
+        INSTANCE.UUID,
+        INSTANCE.STATE,
+        INSTANCE.EXTERNAL_ID,
+        INSTANCE.SYSTEM_CONTAINER,
+        INSTANCE.INSTANCE_TRIGGERED_STOP,
+        INSTANCE.REMOVED
+    };
+
     @Override
     public Map<String, KnownInstance> getInstances(long agentId) {
         List<KnownInstance> instances = create()
-                .select(INSTANCE.fields())
+                .select(KNOWN_INSTANCE_FIELDS)
                 .from(AGENT)
                 .join(HOST)
                     .on(AGENT.ID.eq(HOST.AGENT_ID))
@@ -53,4 +64,21 @@ public class PingInstancesMonitorDaoImpl extends AbstractJooqDao implements Ping
                 .fetchOne(HOST.AGENT_ID);
     }
 
+    @Override
+    public KnownInstance getInstanceForInstanceHostMap(String instanceHostMap) {
+        if ( instanceHostMap == null ) {
+            return null;
+        }
+
+        List<KnownInstance> instances = create()
+                .select(KNOWN_INSTANCE_FIELDS)
+                .from(INSTANCE)
+                .join(INSTANCE_HOST_MAP)
+                    .on(INSTANCE_HOST_MAP.INSTANCE_ID.eq(INSTANCE.ID))
+                .where(INSTANCE_HOST_MAP.ID.eq(Long.parseLong(instanceHostMap)))
+                .fetchInto(KnownInstance.class);
+
+        return instances.size() > 0 ? instances.get(0) : null;
+    }
+
 }
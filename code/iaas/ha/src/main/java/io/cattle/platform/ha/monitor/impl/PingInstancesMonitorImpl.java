@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -130,8 +131,20 @@ public class PingInstancesMonitorImpl implements PingInstancesMonitor {
     @Override
     public void computeInstanceActivateReply(Event event) {
         Long agentId = monitorDao.getAgentIdForInstanceHostMap(event.getResourceId());
-        if (agentId != null) {
+        if (agentId == null) {
+            return;
+        }
+
+        Map<String, KnownInstance> knownInstances = instanceCache.getIfPresent(agentId);
+        if (knownInstances == null) {
+            return;
+        }
+
+        KnownInstance ki = monitorDao.getInstanceForInstanceHostMap(event.getResourceId());
+        if (ki == null || ki.getUuid() == null) {
             instanceCache.invalidate(agentId);
+        } else {
+            knownInstances.put(ki.getUuid(), ki);
         }
     }
 
@@ -166,10 +179,20 @@ public class PingInstancesMonitorImpl implements PingInstancesMonitor {
 
     void determineSyncActions(Map<String, KnownInstance> knownInstances, ReportedInstances reportedInstances, Map<String, ReportedInstance> needsSynced,
             Map<String, String> syncActions, Set<String> needsHaRestart, boolean checkOnly) {
+        if (isSameInstances(knownInstances, reportedInstances)) {
+            // Nothing was added or removed on either side, only the states need comparing
+            for (ReportedInstance ri : reportedInstances.byUuid.values()) {
+                KnownInstance ki = knownInstances.get(ri.getUuid());
+                ri.setInstance(ki);
+                determineSyncAction(ki, ri, needsSynced, syncActions, checkOnly);
+            }
+            return;
+        }
+
         Map<String, KnownInstance> inRancher = new HashMap<String, KnownInstance>(knownInstances);
         Map<String, ReportedInstance> onHost = new HashMap<String, ReportedInstance>(reportedInstances.byExternalId);
         for (Map.Entry<String, ReportedInstance> reported : reportedInstances.byUuid.entrySet()) {
-            KnownInstance ki = knownInstances.get(reported.getKey());
+            KnownInstance ki = reported.getKey() == null ? null : knownInstances.get(reported.getKey());
             if (ki != null) {
                 removeAndDetermineSyncAction(needsSynced, syncActions, checkOnly, inRancher, onHost, reported.getValue(), ki,
                         reported.getValue().getExternalId(), reported.getKey());
@@ -226,6 +249,26 @@ public class PingInstancesMonitorImpl implements PingInstancesMonitor {
         }
     }
 
+    /*
+     * True if every reported instance is known by uuid and nothing known is unreported, so matching by external id
+     * and looking for leftovers on either side can be skipped.
+     */
+    boolean isSameInstances(Map<String, KnownInstance> knownInstances, ReportedInstances reportedInstances) {
+        int size = reportedInstances.byUuid.size();
+        if (size != knownInstances.size() || size != reportedInstances.byExternalId.size()) {
+            return false;
+        }
+
+        for (Map.Entry<String, ReportedInstance> reported : reportedInstances.byUuid.entrySet()) {
+            ReportedInstance ri = reported.getValue();
+            if (reported.getKey() == null || !knownInstances.containsKey(reported.getKey()) || reportedInstances.byExternalId.get(ri.getExternalId()) != ri) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     boolean hasInstanceTriggeredStopConfigured(KnownInstance ki) {
         return StringUtils.isNotEmpty(ki.getInstanceTriggeredStop()) && !ON_STOP_STOP.equals(ki.getInstanceTriggeredStop());
     }
@@ -373,9 +416,10 @@ public class PingInstancesMonitorImpl implements PingInstancesMonitor {
 
     protected Map<String, KnownInstance> load(Long agentId) {
         if (agentId == null) {
-            return new HashMap<String, KnownInstance>();
+            return new ConcurrentHashMap<String, KnownInstance>();
         }
-        return monitorDao.getInstances(agentId.longValue());
+        // Updated in place by computeInstanceActivateReply
+        return new ConcurrentHashMap<String, KnownInstance>(monitorDao.getInstances(agentId.longValue()));
     }
 
     private class AgentAndHost {
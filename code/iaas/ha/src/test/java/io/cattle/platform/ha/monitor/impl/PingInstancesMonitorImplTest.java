@@ -221,6 +221,26 @@ public class PingInstancesMonitorImplTest {
         assertDoNothing(externalIdHH, uuidHH);
     }
 
+    @Test
+    public void testDetermineSyncActionsSameInstances() {
+        String externalIdA = setupSync("same-running", false, false, STATE_RUNNING, STATE_RUNNING);
+        String externalIdB = setupSync("same-running-host-stopped", false, false, STATE_RUNNING, STATE_STOPPED);
+        String externalIdC = setupSync("same-stopped-host-running", false, true, STATE_STOPPED, STATE_RUNNING);
+        String uuidA = uuid("same-running", false, false);
+
+        assertTrue(monitor.isSameInstances(knownInstances, reportedInstances));
+
+        monitor.determineSyncActions(knownInstances, reportedInstances, needsSynced, syncActions, needsHaRestart, false);
+
+        assertDoNothing(externalIdA, uuidA);
+        assertSyncAction(externalIdB, EVENT_STOP);
+        assertSyncAction(externalIdC, EVENT_INSTANCE_FORCE_STOP);
+        assertEquals(knownInstances.get(uuidA), reportedInstances.byExternalId.get(externalIdA).getInstance());
+
+        addReportedInstance("new-uuid", "new-extid", STATE_RUNNING, false);
+        assertFalse(monitor.isSameInstances(knownInstances, reportedInstances));
+    }
+
     void assertDoNothing(String externalId, String uuid) {
         assertTrue(!needsSynced.containsKey(externalId));
         assertTrue(!needsHaRestart.contains(uuid));
@@ -0,0 +1,40 @@
+package io.cattle.iaas.healthcheck.dao;
+
+import io.cattle.platform.core.model.HealthcheckInstanceHostMap;
+import io.cattle.platform.core.model.Instance;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface HealthcheckDao {
+
+    /**
+     * @return non removed host maps keyed by uuid
+     */
+    Map<String, HealthcheckInstanceHostMap> findHostMaps(Collection<String> uuids);
+
+    /**
+     * @return the instance each healthcheck instance checks, keyed by
+     *         healthcheck instance id
+     */
+    Map<Long, Instance> findInstances(Collection<Long> healthcheckInstanceIds);
+
+    /**
+     * @return the active host maps of each healthcheck instance, keyed by
+     *         healthcheck instance id
+     */
+    Map<Long, List<HealthcheckInstanceHostMap>> findActiveHostMaps(Collection<Long> healthcheckInstanceIds);
+
+    /**
+     * Sets the health state and external timestamp of every host map in one
+     * batch. A row is only changed if the stored timestamp is not newer than
+     * the given one.
+     *
+     * @param healthStates health state to set keyed by host map id
+     * @param externalTimestamps timestamp reported keyed by host map id
+     * @return the ids of the host maps that were changed
+     */
+    List<Long> updateHostMaps(Map<Long, String> healthStates, Map<Long, Long> externalTimestamps);
+
+}
@@ -0,0 +1,123 @@
+package io.cattle.iaas.healthcheck.dao.impl;
+
+import static io.cattle.platform.core.model.tables.HealthcheckInstanceHostMapTable.HEALTHCHECK_INSTANCE_HOST_MAP;
+import static io.cattle.platform.core.model.tables.HealthcheckInstanceTable.HEALTHCHECK_INSTANCE;
+import static io.cattle.platform.core.model.tables.InstanceTable.INSTANCE;
+import io.cattle.iaas.healthcheck.dao.HealthcheckDao;
+import io.cattle.platform.core.constants.CommonStatesConstants;
+import io.cattle.platform.core.model.HealthcheckInstanceHostMap;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.core.model.tables.records.HealthcheckInstanceHostMapRecord;
+import io.cattle.platform.db.jooq.dao.impl.AbstractJooqDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jooq.BatchBindStep;
+import org.jooq.Record;
+
+public class HealthcheckDaoImpl extends AbstractJooqDao implements HealthcheckDao {
+
+    @Override
+    public Map<String, HealthcheckInstanceHostMap> findHostMaps(Collection<String> uuids) {
+        Map<String, HealthcheckInstanceHostMap> result = new HashMap<>();
+        if (uuids.isEmpty()) {
+            return result;
+        }
+
+        List<HealthcheckInstanceHostMapRecord> records = create()
+                .selectFrom(HEALTHCHECK_INSTANCE_HOST_MAP)
+                .where(HEALTHCHECK_INSTANCE_HOST_MAP.UUID.in(uuids)
+                        .and(HEALTHCHECK_INSTANCE_HOST_MAP.REMOVED.isNull()))
+                .fetch();
+
+        for (HealthcheckInstanceHostMap map : records) {
+            result.put(map.getUuid(), map);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<Long, Instance> findInstances(Collection<Long> healthcheckInstanceIds) {
+        Map<Long, Instance> result = new HashMap<>();
+        if (healthcheckInstanceIds.isEmpty()) {
+            return result;
+        }
+
+        List<Record> records = create()
+                .select(HEALTHCHECK_INSTANCE.ID)
+                .select(INSTANCE.fields())
+                .from(HEALTHCHECK_INSTANCE)
+                .join(INSTANCE)
+                    .on(INSTANCE.ID.eq(HEALTHCHECK_INSTANCE.INSTANCE_ID))
+                .where(HEALTHCHECK_INSTANCE.ID.in(healthcheckInstanceIds))
+                .fetch();
+
+        for (Record record : records) {
+            result.put(record.getValue(HEALTHCHECK_INSTANCE.ID), record.into(INSTANCE));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<Long, List<HealthcheckInstanceHostMap>> findActiveHostMaps(Collection<Long> healthcheckInstanceIds) {
+        Map<Long, List<HealthcheckInstanceHostMap>> result = new HashMap<>();
+        if (healthcheckInstanceIds.isEmpty()) {
+            return result;
+        }
+
+        List<HealthcheckInstanceHostMapRecord> records = create()
+                .selectFrom(HEALTHCHECK_INSTANCE_HOST_MAP)
+                .where(HEALTHCHECK_INSTANCE_HOST_MAP.HEALTHCHECK_INSTANCE_ID.in(healthcheckInstanceIds)
+                        .and(HEALTHCHECK_INSTANCE_HOST_MAP.STATE.eq(CommonStatesConstants.ACTIVE)))
+                .fetch();
+
+        for (HealthcheckInstanceHostMap map : records) {
+            List<HealthcheckInstanceHostMap> maps = result.get(map.getHealthcheckInstanceId());
+            if (maps == null) {
+                maps = new ArrayList<>();
+                result.put(map.getHealthcheckInstanceId(), maps);
+            }
+            maps.add(map);
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Long> updateHostMaps(Map<Long, String> healthStates, Map<Long, Long> externalTimestamps) {
+        List<Long> updated = new ArrayList<>();
+        if (healthStates.isEmpty()) {
+            return updated;
+        }
+
+        BatchBindStep batch = create().batch(create().update(HEALTHCHECK_INSTANCE_HOST_MAP)
+                .set(HEALTHCHECK_INSTANCE_HOST_MAP.HEALTH_STATE, (String) null)
+                .set(HEALTHCHECK_INSTANCE_HOST_MAP.EXTERNAL_TIMESTAMP, (Long) null)
+                .where(HEALTHCHECK_INSTANCE_HOST_MAP.ID.eq((Long) null))
+                .and(HEALTHCHECK_INSTANCE_HOST_MAP.EXTERNAL_TIMESTAMP.isNull()
+                        .or(HEALTHCHECK_INSTANCE_HOST_MAP.EXTERNAL_TIMESTAMP.le((Long) null))));
+
+        List<Long> ids = new ArrayList<>(healthStates.keySet());
+        for (Long id : ids) {
+            Long externalTimestamp = externalTimestamps.get(id);
+            batch.bind(healthStates.get(id), externalTimestamp, id, externalTimestamp);
+        }
+
+        int[] counts = batch.execute();
+        for (int i = 0; i < ids.size(); i++) {
+            /* Zero means a newer report was written since the host map was read */
+            if (counts[i] != 0) {
+                updated.add(ids.get(i));
+            }
+        }
+
+        return updated;
+    }
+
+}
@@ -0,0 +1,17 @@
+package io.cattle.iaas.healthcheck.eventing;
+
+import io.cattle.platform.core.constants.HealthcheckConstants;
+import io.cattle.platform.eventing.annotation.AnnotatedEventListener;
+import io.cattle.platform.eventing.annotation.EventHandler;
+import io.cattle.platform.eventing.model.Event;
+
+public interface HealthcheckReportEventListener extends AnnotatedEventListener {
+
+    /**
+     * Every result a monitor has, sent as one event for the monitor's agent
+     * with the results as a list under "reports" in the data.
+     */
+    @EventHandler(name = HealthcheckConstants.EVENT_HEALTHCHECK_REPORT)
+    void healthcheckReport(Event event);
+
+}
@@ -0,0 +1,82 @@
+package io.cattle.iaas.healthcheck.eventing.impl;
+
+import io.cattle.iaas.healthcheck.eventing.HealthcheckReportEventListener;
+import io.cattle.iaas.healthcheck.service.HealthcheckReport;
+import io.cattle.iaas.healthcheck.service.HealthcheckService;
+import io.cattle.platform.core.constants.AgentConstants;
+import io.cattle.platform.core.dao.AgentDao;
+import io.cattle.platform.core.model.Agent;
+import io.cattle.platform.eventing.EventService;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.eventing.model.EventVO;
+import io.cattle.platform.json.JsonMapper;
+import io.cattle.platform.object.util.DataAccessor;
+import io.cattle.platform.util.type.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class HealthcheckReportEventListenerImpl implements HealthcheckReportEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(HealthcheckReportEventListenerImpl.class);
+
+    @Inject
+    AgentDao agentDao;
+
+    @Inject
+    JsonMapper jsonMapper;
+
+    @Inject
+    HealthcheckService healthcheckService;
+
+    @Inject
+    EventService eventService;
+
+    @Override
+    public void healthcheckReport(Event event) {
+        Long accountId = getResourceAccountId(event);
+        if (accountId == null) {
+            log.error("Can't verify healthcheck report from [{}:{}]", event.getResourceType(), event.getResourceId());
+            return;
+        }
+
+        Object reports = CollectionUtils.getNestedValue(event.getData(), "reports");
+        if (reports != null) {
+            List<HealthcheckReport> list = jsonMapper.convertCollectionValue(reports, ArrayList.class, HealthcheckReport.class);
+            healthcheckService.updateHealthchecks(accountId, list);
+        }
+
+        if (event.getReplyTo() != null) {
+            eventService.publish(EventVO.reply(event));
+        }
+    }
+
+    /**
+     * Same check as for a serviceEvent created through the API, the reports
+     * must come from an agent running on a host of the account. Agents
+     * publish the report through the API, which sets the resource to the
+     * agent the request is authenticated as.
+     */
+    protected Long getResourceAccountId(Event event) {
+        if (!"agent".equals(event.getResourceType())) {
+            return null;
+        }
+
+        long agentId = NumberUtils.toLong(event.getResourceId(), 0);
+        Agent agent = agentId == 0 ? null : agentDao.getHostAgentForDelegate(agentId);
+        if (agent == null) {
+            return null;
+        }
+
+        return DataAccessor.fromDataFieldOf(agent)
+                .withKey(AgentConstants.DATA_AGENT_RESOURCES_ACCOUNT_ID)
+                .as(Long.class);
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.cattle.iaas.healthcheck.service;
+
+/**
+ * One monitor's result for one target, the same fields an agent sets on a
+ * serviceEvent.
+ */
+public class HealthcheckReport {
+
+    String healthcheckUuid;
+    Long externalTimestamp;
+    String reportedHealth;
+
+    public HealthcheckReport() {
+    }
+
+    public HealthcheckReport(String healthcheckUuid, Long externalTimestamp, String reportedHealth) {
+        this.healthcheckUuid = healthcheckUuid;
+        this.externalTimestamp = externalTimestamp;
+        this.reportedHealth = reportedHealth;
+    }
+
+    /**
+     * @return the uuid of the healthcheckInstanceHostMap, without the suffix the
+     *         monitor may append after an underscore
+     */
+    public String getHostMapUuid() {
+        return healthcheckUuid == null ? null : healthcheckUuid.split("_")[0];
+    }
+
+    public boolean isHealthy() {
+        return "UP".equals(reportedHealth);
+    }
+
+    public String getHealthcheckUuid() {
+        return healthcheckUuid;
+    }
+
+    public void setHealthcheckUuid(String healthcheckUuid) {
+        this.healthcheckUuid = healthcheckUuid;
+    }
+
+    public Long getExternalTimestamp() {
+        return externalTimestamp;
+    }
+
+    public void setExternalTimestamp(Long externalTimestamp) {
+        this.externalTimestamp = externalTimestamp;
+    }
+
+    public String getReportedHealth() {
+        return reportedHealth;
+    }
+
+    public void setReportedHealth(String reportedHealth) {
+        this.reportedHealth = reportedHealth;
+    }
+
+}
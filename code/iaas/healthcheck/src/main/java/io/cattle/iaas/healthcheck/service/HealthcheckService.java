@@ -1,5 +1,6 @@
 package io.cattle.iaas.healthcheck.service;
 
+import java.util.List;
 
 public interface HealthcheckService {
 
@@ -11,5 +12,11 @@ public interface HealthcheckService {
     
     void updateHealthcheck(String healthcheckInstanceHostMapUuid, final long externalTimestamp, final boolean healthy);
 
+    /**
+     * Applies every report a monitor sent at once. Reports for host maps
+     * outside of the account are ignored.
+     */
+    void updateHealthchecks(long accountId, List<HealthcheckReport> reports);
+
     void registerForHealtcheck(HealthcheckInstanceType instanceType, long id);
 }
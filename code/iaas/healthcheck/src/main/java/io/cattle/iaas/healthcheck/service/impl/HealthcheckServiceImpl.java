@@ -1,11 +1,18 @@
 package io.cattle.iaas.healthcheck.service.impl;
 
 import static io.cattle.platform.core.constants.HealthcheckConstants.HEALTH_STATE_HEALTHY;
+import static io.cattle.platform.core.constants.HealthcheckConstants.HEALTH_STATE_INITIALIZING;
 import static io.cattle.platform.core.constants.HealthcheckConstants.HEALTH_STATE_UNHEALTHY;
+import static io.cattle.platform.core.constants.HealthcheckConstants.HEALTH_STATE_UPDATING_HEALTHY;
+import static io.cattle.platform.core.constants.HealthcheckConstants.HEALTH_STATE_UPDATING_UNHEALTHY;
 import static io.cattle.platform.core.model.tables.HealthcheckInstanceHostMapTable.HEALTHCHECK_INSTANCE_HOST_MAP;
 import static io.cattle.platform.core.model.tables.HealthcheckInstanceTable.HEALTHCHECK_INSTANCE;
 import static io.cattle.platform.core.model.tables.HostTable.HOST;
+import io.cattle.iaas.healthcheck.dao.HealthcheckDao;
+import io.cattle.iaas.healthcheck.service.HealthcheckReport;
 import io.cattle.iaas.healthcheck.service.HealthcheckService;
+import io.cattle.iaas.healthcheck.service.impl.HealthcheckVotes.Vote;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.core.constants.CommonStatesConstants;
 import io.cattle.platform.core.constants.HealthcheckConstants;
 import io.cattle.platform.core.dao.GenericMapDao;
@@ -23,15 +30,36 @@ import io.cattle.platform.object.process.ObjectProcessManager;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.apache.cloudstack.managed.context.NoExceptionRunnable;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.TransformerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicLongProperty;
 
 public class HealthcheckServiceImpl implements HealthcheckService {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(HealthcheckServiceImpl.class);
+
+    private static final DynamicBooleanProperty AGGREGATE = ArchaiusUtil.getBoolean("healthcheck.aggregate.in.memory");
+    private static final DynamicLongProperty VOTES_CACHE = ArchaiusUtil.getLong("healthcheck.votes.cache.seconds");
+
     @Inject
     GenericMapDao mapDao;
     
@@ -47,8 +75,31 @@ public class HealthcheckServiceImpl implements HealthcheckService {
     @Inject
     LockManager lockManager;
 
+    @Inject
+    HealthcheckDao healthcheckDao;
+
+    ExecutorService executorService;
+
+    Cache<String, HealthcheckInstanceHostMap> hostMaps = CacheBuilder.newBuilder()
+            .expireAfterAccess(VOTES_CACHE.get(), TimeUnit.SECONDS).build();
+
+    /* Reloaded from the DB every healthcheck.votes.cache.seconds to pick up monitors added or
+     * removed and health changes made outside of the reports */
+    LoadingCache<Long, HealthcheckVotes> votesCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(VOTES_CACHE.get(), TimeUnit.SECONDS).build(new CacheLoader<Long, HealthcheckVotes>() {
+                @Override
+                public HealthcheckVotes load(Long key) throws Exception {
+                    return loadVotes(key);
+                }
+            });
+
     @Override
     public void updateHealthcheck(String healthcheckInstanceHostMapUuid, final long externalTimestamp, final boolean healthy) {
+        if (AGGREGATE.get()) {
+            aggregateHealthcheck(healthcheckInstanceHostMapUuid, externalTimestamp, healthy);
+            return;
+        }
+
         HealthcheckInstanceHostMap hcihm = objectManager.findOne(HealthcheckInstanceHostMap.class,
                 ObjectMetaDataManager.UUID_FIELD, healthcheckInstanceHostMapUuid);
 
@@ -68,6 +119,274 @@ public class HealthcheckServiceImpl implements HealthcheckService {
         });
     }
 
+    /**
+     * Same decisions as the DB backed path, but the votes of the monitors are
+     * kept in memory per healthcheck instance. The health state of the
+     * instance is still read from the DB on every report, since a restart
+     * moves it back to initializing without going through the votes. A vote
+     * is written to the DB in the background only when it flips, or right
+     * away when it changes the instance's health.
+     */
+    protected void aggregateHealthcheck(String healthcheckInstanceHostMapUuid, long externalTimestamp, boolean healthy) {
+        HealthcheckInstanceHostMap hcihm = hostMaps.getIfPresent(healthcheckInstanceHostMapUuid);
+        if (hcihm == null) {
+            hcihm = objectManager.findOne(HealthcheckInstanceHostMap.class, ObjectMetaDataManager.UUID_FIELD, healthcheckInstanceHostMapUuid);
+            if (hcihm == null) {
+                return;
+            }
+            hostMaps.put(healthcheckInstanceHostMapUuid, hcihm);
+        }
+
+        HealthcheckVotes votes = votesCache.getUnchecked(hcihm.getHealthcheckInstanceId());
+        if (votes.getVote(hcihm.getId()) == null) {
+            // Monitor added since the votes were loaded
+            votesCache.invalidate(hcihm.getHealthcheckInstanceId());
+            votes = votesCache.getUnchecked(hcihm.getHealthcheckInstanceId());
+        }
+
+        Instance instance = votes.instanceId == null ? null : objectManager.loadResource(Instance.class, votes.instanceId);
+        String currentHealthState = instance == null ? null : instance.getHealthState();
+
+        Vote vote = null;
+        boolean flipped = false;
+        Boolean updateHealthy = null;
+        synchronized (votes) {
+            votes.healthState = currentHealthState;
+            vote = votes.getVote(hcihm.getId());
+            if (vote == null) {
+                votes.add(hcihm);
+                vote = votes.getVote(hcihm.getId());
+            }
+
+            if (!healthy && HEALTH_STATE_INITIALIZING.equalsIgnoreCase(votes.healthState)) {
+                return;
+            }
+
+            String healthState = healthy ? HEALTH_STATE_HEALTHY : HEALTH_STATE_UNHEALTHY;
+            String previous = vote.healthState;
+            if (!votes.record(vote, externalTimestamp, healthState)) {
+                return;
+            }
+            flipped = !healthState.equals(previous);
+
+            updateHealthy = votes.getQuorumChange(healthy);
+            if (updateHealthy != null) {
+                votes.healthState = updateHealthy ? HEALTH_STATE_HEALTHY : HEALTH_STATE_UNHEALTHY;
+            }
+        }
+
+        if (updateHealthy == null) {
+            if (flipped) {
+                writeVote(votes, vote);
+            }
+            return;
+        }
+
+        final HealthcheckVotes changed = votes;
+        final Vote changedVote = vote;
+        final boolean reportedHealthy = healthy;
+        try {
+            lockManager.lock(new HealthcheckInstanceLock(votes.healthcheckInstanceId), new LockCallbackNoReturn() {
+                @Override
+                public void doWithLockNoResult() {
+                    // The vote that decided the change is in the DB before the instance moves
+                    saveVote(changed, changedVote);
+                    Boolean newHealthy = getLockedQuorumChange(changed, reportedHealthy);
+                    if (newHealthy != null) {
+                        updateInstance(changed.instanceId, newHealthy);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // Reload so the next report tries again
+            votesCache.invalidate(votes.healthcheckInstanceId);
+            throw e;
+        }
+    }
+
+    /**
+     * Same decisions as {@link #updateHealthcheck(String, long, boolean)} for a
+     * whole report. The host maps are read and written with a fixed number of
+     * queries and the instance lock is only taken for the instances whose
+     * health changes.
+     */
+    @Override
+    public void updateHealthchecks(long accountId, List<HealthcheckReport> reports) {
+        // Only the latest report of each monitor matters
+        Map<String, HealthcheckReport> latest = new HashMap<>();
+        for (HealthcheckReport report : reports) {
+            String uuid = report.getHostMapUuid();
+            if (uuid == null || report.getExternalTimestamp() == null) {
+                continue;
+            }
+
+            HealthcheckReport existing = latest.get(uuid);
+            if (existing == null || existing.getExternalTimestamp() <= report.getExternalTimestamp()) {
+                latest.put(uuid, report);
+            }
+        }
+
+        Map<String, HealthcheckInstanceHostMap> hcihms = healthcheckDao.findHostMaps(latest.keySet());
+        Set<Long> hcInstanceIds = new HashSet<>();
+        for (HealthcheckInstanceHostMap hcihm : hcihms.values()) {
+            hcInstanceIds.add(hcihm.getHealthcheckInstanceId());
+        }
+
+        Map<Long, Instance> instances = healthcheckDao.findInstances(hcInstanceIds);
+        Map<Long, HealthcheckInstanceHostMap> toUpdate = new HashMap<>();
+        Map<Long, String> healthStates = new HashMap<>();
+        Map<Long, Long> externalTimestamps = new HashMap<>();
+
+        for (Map.Entry<String, HealthcheckReport> entry : latest.entrySet()) {
+            HealthcheckReport report = entry.getValue();
+            HealthcheckInstanceHostMap hcihm = hcihms.get(entry.getKey());
+            if (hcihm == null || hcihm.getAccountId() == null || hcihm.getAccountId().longValue() != accountId) {
+                continue;
+            }
+
+            Instance instance = instances.get(hcihm.getHealthcheckInstanceId());
+            if (!report.isHealthy() && instance != null && HEALTH_STATE_INITIALIZING.equalsIgnoreCase(instance.getHealthState())) {
+                continue;
+            }
+
+            if (hcihm.getExternalTimestamp() != null && report.getExternalTimestamp() < hcihm.getExternalTimestamp()) {
+                continue;
+            }
+
+            toUpdate.put(hcihm.getId(), hcihm);
+            healthStates.put(hcihm.getId(), report.isHealthy() ? HEALTH_STATE_HEALTHY : HEALTH_STATE_UNHEALTHY);
+            externalTimestamps.put(hcihm.getId(), report.getExternalTimestamp());
+        }
+
+        Set<Long> changed = new HashSet<>();
+        Set<Long> reportedHealthy = new HashSet<>();
+        for (Long id : healthcheckDao.updateHostMaps(healthStates, externalTimestamps)) {
+            HealthcheckInstanceHostMap hcihm = toUpdate.get(id);
+            Long hcInstanceId = hcihm.getHealthcheckInstanceId();
+            changed.add(hcInstanceId);
+            if (HEALTH_STATE_HEALTHY.equals(healthStates.get(id))) {
+                reportedHealthy.add(hcInstanceId);
+            }
+
+            // Keep the votes used by updateHealthcheck() in step with what was just written
+            HealthcheckVotes cached = votesCache.getIfPresent(hcInstanceId);
+            if (cached != null) {
+                synchronized (cached) {
+                    Vote vote = cached.getVote(id);
+                    if (vote == null) {
+                        cached.add(hcihm);
+                        vote = cached.getVote(id);
+                    }
+                    cached.record(vote, externalTimestamps.get(id), healthStates.get(id));
+                }
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<HealthcheckInstanceHostMap>> activeMaps = healthcheckDao.findActiveHostMaps(changed);
+        for (Long hcInstanceId : changed) {
+            Instance instance = instances.get(hcInstanceId);
+            if (instance == null) {
+                continue;
+            }
+
+            HealthcheckVotes votes = new HealthcheckVotes(hcInstanceId, instance.getId(), instance.getHealthState());
+            List<HealthcheckInstanceHostMap> maps = activeMaps.get(hcInstanceId);
+            for (HealthcheckInstanceHostMap map : maps == null ? Collections.<HealthcheckInstanceHostMap> emptyList() : maps) {
+                votes.add(map);
+            }
+
+            // Reports taken by updateHealthcheck() may not be written yet
+            HealthcheckVotes cached = votesCache.getIfPresent(hcInstanceId);
+            if (cached != null) {
+                synchronized (cached) {
+                    votes.merge(cached);
+                }
+            }
+
+            final boolean healthy = reportedHealthy.contains(hcInstanceId);
+            if (votes.getQuorumChange(healthy) == null) {
+                continue;
+            }
+
+            final HealthcheckVotes changedVotes = votes;
+            final Long instanceId = instance.getId();
+            try {
+                lockManager.lock(new HealthcheckInstanceLock(hcInstanceId), new LockCallbackNoReturn() {
+                    @Override
+                    public void doWithLockNoResult() {
+                        Boolean updateHealthy = getLockedQuorumChange(changedVotes, healthy);
+                        if (updateHealthy != null) {
+                            updateInstance(instanceId, updateHealthy);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The other instances of the report still get updated, the next report for this one retries
+                log.error("Failed to update health of instance [{}]", instanceId, e);
+            }
+        }
+    }
+
+    /**
+     * Decides again on the health state read while holding the instance lock.
+     * Of two reports that decided the same change concurrently only the first
+     * one schedules it, the second finds the instance already updating.
+     */
+    protected Boolean getLockedQuorumChange(HealthcheckVotes votes, boolean healthy) {
+        Instance instance = votes.instanceId == null ? null : objectManager.loadResource(Instance.class, votes.instanceId);
+        String healthState = instance == null ? null : instance.getHealthState();
+        if (HEALTH_STATE_UPDATING_HEALTHY.equals(healthState) || HEALTH_STATE_UPDATING_UNHEALTHY.equals(healthState)) {
+            return null;
+        }
+
+        synchronized (votes) {
+            votes.healthState = healthState;
+            return votes.getQuorumChange(healthy);
+        }
+    }
+
+    protected void writeVote(final HealthcheckVotes votes, final Vote vote) {
+        executorService.execute(new NoExceptionRunnable() {
+            @Override
+            protected void doRun() throws Exception {
+                saveVote(votes, vote);
+            }
+        });
+    }
+
+    protected void saveVote(HealthcheckVotes votes, Vote vote) {
+        Long externalTimestamp;
+        String healthState;
+        // Write whatever is current so writes finishing out of order can't go backwards
+        synchronized (votes) {
+            externalTimestamp = vote.externalTimestamp;
+            healthState = vote.healthState;
+        }
+
+        // Guarded by the timestamp so a newer report written by updateHealthchecks() wins
+        Long id = vote.hostMap.getId();
+        healthcheckDao.updateHostMaps(Collections.singletonMap(id, healthState), Collections.singletonMap(id, externalTimestamp));
+    }
+
+    protected HealthcheckVotes loadVotes(long healthcheckInstanceId) {
+        HealthcheckInstance hcInstance = objectManager.loadResource(HealthcheckInstance.class, healthcheckInstanceId);
+        Long instanceId = hcInstance == null ? null : hcInstance.getInstanceId();
+        Instance instance = instanceId == null ? null : objectManager.loadResource(Instance.class, instanceId);
+
+        HealthcheckVotes votes = new HealthcheckVotes(healthcheckInstanceId, instanceId, instance == null ? null : instance.getHealthState());
+        for (HealthcheckInstanceHostMap map : objectManager.find(HealthcheckInstanceHostMap.class,
+                HEALTHCHECK_INSTANCE_HOST_MAP.HEALTHCHECK_INSTANCE_ID, healthcheckInstanceId,
+                HEALTHCHECK_INSTANCE_HOST_MAP.STATE, CommonStatesConstants.ACTIVE)) {
+            votes.add(map);
+        }
+
+        return votes;
+    }
+
     protected void processHealthcheckInstance(HealthcheckInstanceHostMap hcihm, long externalTimestamp, boolean healthy) {
         HealthcheckInstance hcInstance = objectManager.loadResource(HealthcheckInstance.class, hcihm.getHealthcheckInstanceId());
         Boolean updateHealthy = determineNewHealthState(hcInstance, hcihm, externalTimestamp, healthy);
@@ -133,7 +452,11 @@ public class HealthcheckServiceImpl implements HealthcheckService {
     }
 
     protected void updateHealthcheckInstance(HealthcheckInstance hcInstance, boolean healthy) {
-        Instance instance = objectManager.loadResource(Instance.class, hcInstance.getInstanceId());
+        updateInstance(hcInstance.getInstanceId(), healthy);
+    }
+
+    protected void updateInstance(Long instanceId, boolean healthy) {
+        Instance instance = instanceId == null ? null : objectManager.loadResource(Instance.class, instanceId);
         if (instance != null) {
             if (healthy) {
                 objectProcessManager.scheduleProcessInstance("instance.updatehealthy", instance, null);
@@ -143,6 +466,14 @@ public class HealthcheckServiceImpl implements HealthcheckService {
         }
     }
 
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
     @Override
     public void registerForHealtcheck(HealthcheckInstanceType instanceType, long id) {
         Long accountId = getAccountId(instanceType, id);
@@ -0,0 +1,102 @@
+package io.cattle.iaas.healthcheck.service.impl;
+
+import static io.cattle.platform.core.constants.HealthcheckConstants.*;
+import io.cattle.platform.core.model.HealthcheckInstanceHostMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What each monitoring host last reported for one healthcheck instance and
+ * the health state the instance was last seen in. Votes are changed
+ * under the object's monitor.
+ */
+public class HealthcheckVotes {
+
+    long healthcheckInstanceId;
+    Long instanceId;
+    String healthState;
+    Map<Long, Vote> votes = new ConcurrentHashMap<>();
+
+    public HealthcheckVotes(long healthcheckInstanceId, Long instanceId, String healthState) {
+        this.healthcheckInstanceId = healthcheckInstanceId;
+        this.instanceId = instanceId;
+        this.healthState = healthState;
+    }
+
+    public void add(HealthcheckInstanceHostMap hostMap) {
+        votes.put(hostMap.getId(), new Vote(hostMap));
+    }
+
+    public Vote getVote(long hostMapId) {
+        return votes.get(hostMapId);
+    }
+
+    /**
+     * Sets the vote unless it already holds a newer report.
+     *
+     * @return false if the report is older than the vote
+     */
+    public boolean record(Vote vote, Long externalTimestamp, String healthState) {
+        if (vote.externalTimestamp != null && (externalTimestamp == null || externalTimestamp < vote.externalTimestamp)) {
+            return false;
+        }
+
+        vote.externalTimestamp = externalTimestamp;
+        vote.healthState = healthState;
+        return true;
+    }
+
+    /**
+     * Takes the votes of other that are newer than the ones held here, for
+     * monitors held here.
+     */
+    public void merge(HealthcheckVotes other) {
+        for (Vote vote : other.votes.values()) {
+            Vote current = votes.get(vote.hostMap.getId());
+            if (current != null && vote.externalTimestamp != null) {
+                record(current, vote.externalTimestamp, vote.healthState);
+            }
+        }
+    }
+
+    /**
+     * Mirrors the rule used before votes were kept in memory: one healthy
+     * report makes the instance healthy, it only becomes unhealthy once every
+     * monitor reports unhealthy.
+     *
+     * @return the state to move the instance to or null if it stays as is
+     */
+    public Boolean getQuorumChange(boolean healthy) {
+        boolean currentlyHealthy = HEALTH_STATE_HEALTHY.equals(healthState);
+
+        if (healthy) {
+            return currentlyHealthy ? null : true;
+        }
+
+        if (!currentlyHealthy) {
+            return null;
+        }
+
+        for (Vote vote : votes.values()) {
+            if (!HEALTH_STATE_UNHEALTHY.equals(vote.healthState)) {
+                return null;
+            }
+        }
+
+        return false;
+    }
+
+    public static class Vote {
+        HealthcheckInstanceHostMap hostMap;
+        Long externalTimestamp;
+        String healthState;
+
+        public Vote(HealthcheckInstanceHostMap hostMap) {
+            this.hostMap = hostMap;
+            this.externalTimestamp = hostMap.getExternalTimestamp();
+            this.healthState = hostMap.getHealthState();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package io.cattle.iaas.healthcheck.dao.impl;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DefaultConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the batched host map update against an in memory H2 database.
+ */
+public class HealthcheckDaoImplTest {
+
+    Connection conn;
+    HealthcheckDaoImpl dao;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:healthcheck");
+        Statement stmt = conn.createStatement();
+        stmt.execute("drop table if exists \"healthcheck_instance_host_map\"");
+        stmt.execute("create table \"healthcheck_instance_host_map\" (\"id\" bigint primary key, "
+                + "\"health_state\" varchar(128), \"external_timestamp\" bigint)");
+        stmt.close();
+
+        DefaultConfiguration config = new DefaultConfiguration();
+        config.set(conn);
+        config.set(SQLDialect.H2);
+        config.set(new Settings().withRenderSchema(false));
+
+        dao = new HealthcheckDaoImpl();
+        dao.setConfiguration(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testUpdatesEveryHostMap() throws Exception {
+        insert(1L, null, null);
+        insert(2L, "healthy", 5L);
+
+        Map<Long, String> states = new HashMap<>();
+        states.put(1L, "healthy");
+        states.put(2L, "unhealthy");
+        Map<Long, Long> timestamps = new HashMap<>();
+        timestamps.put(1L, 6L);
+        timestamps.put(2L, 6L);
+
+        assertEquals(Arrays.asList(1L, 2L), sorted(dao.updateHostMaps(states, timestamps)));
+        assertEquals("healthy:6", read(1L));
+        assertEquals("unhealthy:6", read(2L));
+    }
+
+    @Test
+    public void testStaleReportNotWritten() throws Exception {
+        insert(1L, "healthy", 10L);
+        insert(2L, "healthy", 3L);
+
+        Map<Long, String> states = new HashMap<>();
+        states.put(1L, "unhealthy");
+        states.put(2L, "unhealthy");
+        Map<Long, Long> timestamps = new HashMap<>();
+        timestamps.put(1L, 9L);
+        timestamps.put(2L, 9L);
+
+        assertEquals(Arrays.asList(2L), dao.updateHostMaps(states, timestamps));
+        assertEquals("healthy:10", read(1L));
+        assertEquals("unhealthy:9", read(2L));
+    }
+
+    @Test
+    public void testSameTimestampWritten() throws Exception {
+        insert(1L, "healthy", 10L);
+
+        assertEquals(Arrays.asList(1L), dao.updateHostMaps(Collections.singletonMap(1L, "unhealthy"), Collections.singletonMap(1L, 10L)));
+        assertEquals("unhealthy:10", read(1L));
+    }
+
+    @Test
+    public void testNothingToUpdate() throws Exception {
+        assertTrue(dao.updateHostMaps(Collections.<Long, String> emptyMap(), Collections.<Long, Long> emptyMap()).isEmpty());
+    }
+
+    protected void insert(Long id, String healthState, Long externalTimestamp) throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("insert into \"healthcheck_instance_host_map\" "
+                + "(\"id\", \"health_state\", \"external_timestamp\") values (?, ?, ?)");
+        stmt.setLong(1, id);
+        stmt.setString(2, healthState);
+        stmt.setObject(3, externalTimestamp);
+        stmt.execute();
+        stmt.close();
+    }
+
+    protected String read(Long id) throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("select \"health_state\", \"external_timestamp\" "
+                + "from \"healthcheck_instance_host_map\" where \"id\" = ?");
+        stmt.setLong(1, id);
+        ResultSet rs = stmt.executeQuery();
+        rs.next();
+        String result = rs.getString(1) + ":" + rs.getLong(2);
+        stmt.close();
+        return result;
+    }
+
+    protected static <T extends Comparable<T>> List<T> sorted(List<T> list) {
+        Collections.sort(list);
+        return list;
+    }
+
+}
@@ -0,0 +1,306 @@
+package io.cattle.iaas.healthcheck.service.impl;
+
+import static io.cattle.platform.core.constants.HealthcheckConstants.*;
+import static io.cattle.platform.core.model.tables.HealthcheckInstanceHostMapTable.*;
+import static org.mockito.Mockito.*;
+import io.cattle.iaas.healthcheck.dao.HealthcheckDao;
+import io.cattle.iaas.healthcheck.service.HealthcheckReport;
+import io.cattle.platform.core.constants.CommonStatesConstants;
+import io.cattle.platform.core.model.HealthcheckInstance;
+import io.cattle.platform.core.model.HealthcheckInstanceHostMap;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.lock.LockCallback;
+import io.cattle.platform.lock.LockManager;
+import io.cattle.platform.lock.definition.LockDefinition;
+import io.cattle.platform.object.ObjectManager;
+import io.cattle.platform.object.meta.ObjectMetaDataManager;
+import io.cattle.platform.object.process.ObjectProcessManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.netflix.config.ConfigurationManager;
+
+public class HealthcheckServiceImplTest {
+
+    HealthcheckServiceImpl service;
+    ObjectManager objectManager;
+    ObjectProcessManager processManager;
+    HealthcheckDao dao;
+    ExecutorService executor;
+    Instance instance;
+    HealthcheckInstanceHostMap first;
+    HealthcheckInstanceHostMap second;
+    String healthState;
+    String healthStateUnderLock;
+
+    @BeforeClass
+    public static void setupClass() {
+        ConfigurationManager.getConfigInstance().setProperty("healthcheck.aggregate.in.memory", true);
+        ConfigurationManager.getConfigInstance().setProperty("healthcheck.votes.cache.seconds", 60);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        ConfigurationManager.getConfigInstance().setProperty("healthcheck.aggregate.in.memory", false);
+    }
+
+    @Before
+    public void setup() {
+        healthState = HEALTH_STATE_HEALTHY;
+        healthStateUnderLock = null;
+        instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(20L);
+        when(instance.getHealthState()).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return healthState;
+            }
+        });
+
+        HealthcheckInstance hcInstance = mock(HealthcheckInstance.class);
+        when(hcInstance.getId()).thenReturn(10L);
+        when(hcInstance.getInstanceId()).thenReturn(20L);
+
+        first = hostMap(1L, HEALTH_STATE_HEALTHY);
+        second = hostMap(2L, HEALTH_STATE_UNHEALTHY);
+
+        objectManager = mock(ObjectManager.class);
+        when(objectManager.loadResource(HealthcheckInstance.class, 10L)).thenReturn(hcInstance);
+        when(objectManager.loadResource(Instance.class, 20L)).thenReturn(instance);
+        when(objectManager.findOne(HealthcheckInstanceHostMap.class, ObjectMetaDataManager.UUID_FIELD, "first")).thenReturn(first);
+        when(objectManager.findOne(HealthcheckInstanceHostMap.class, ObjectMetaDataManager.UUID_FIELD, "second")).thenReturn(second);
+        when(objectManager.find(HealthcheckInstanceHostMap.class, HEALTHCHECK_INSTANCE_HOST_MAP.HEALTHCHECK_INSTANCE_ID, 10L,
+                HEALTHCHECK_INSTANCE_HOST_MAP.STATE, CommonStatesConstants.ACTIVE)).thenReturn(Arrays.asList(first, second));
+
+        LockManager lockManager = mock(LockManager.class);
+        when(lockManager.lock(any(LockDefinition.class), any(LockCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                if (healthStateUnderLock != null) {
+                    healthState = healthStateUnderLock;
+                }
+                return ((LockCallback<?>) invocation.getArguments()[1]).doWithLock();
+            }
+        });
+
+        processManager = mock(ObjectProcessManager.class);
+        executor = mock(ExecutorService.class);
+
+        Map<String, HealthcheckInstanceHostMap> hostMaps = hostMaps(first, second);
+        dao = mock(HealthcheckDao.class);
+        when(dao.findHostMaps(anyCollectionOf(String.class))).thenReturn(hostMaps);
+        when(dao.findInstances(anyCollectionOf(Long.class))).thenReturn(Collections.singletonMap(10L, instance));
+        when(dao.updateHostMaps(anyMapOf(Long.class, String.class), anyMapOf(Long.class, Long.class))).thenAnswer(new Answer<List<Long>>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public List<Long> answer(InvocationOnMock invocation) throws Throwable {
+                return new ArrayList<>(((Map<Long, String>) invocation.getArguments()[0]).keySet());
+            }
+        });
+
+        service = new HealthcheckServiceImpl();
+        service.objectManager = objectManager;
+        service.objectProcessManager = processManager;
+        service.lockManager = lockManager;
+        service.healthcheckDao = dao;
+        service.setExecutorService(executor);
+    }
+
+    @Test
+    public void testRestartToInitializingThenHealthy() {
+        service.updateHealthcheck("first", 1L, true);
+        verifyZeroInteractions(processManager);
+
+        // The instance restarted, which moved it back to initializing without a report
+        healthState = HEALTH_STATE_INITIALIZING;
+        service.updateHealthcheck("first", 2L, true);
+
+        verify(processManager).scheduleProcessInstance("instance.updatehealthy", instance, null);
+    }
+
+    @Test
+    public void testUnhealthyWhileInitializingIgnored() {
+        service.updateHealthcheck("first", 1L, true);
+
+        healthState = HEALTH_STATE_INITIALIZING;
+        service.updateHealthcheck("first", 2L, false);
+
+        verifyZeroInteractions(processManager);
+        verifyZeroInteractions(executor);
+        verify(dao, never()).updateHostMaps(anyMapOf(Long.class, String.class), anyMapOf(Long.class, Long.class));
+    }
+
+    @Test
+    public void testQuorumVoteWrittenBeforeInstanceUpdate() {
+        service.updateHealthcheck("first", 2L, false);
+
+        InOrder inOrder = inOrder(dao, processManager);
+        inOrder.verify(dao).updateHostMaps(Collections.singletonMap(1L, HEALTH_STATE_UNHEALTHY), Collections.singletonMap(1L, 2L));
+        inOrder.verify(processManager).scheduleProcessInstance("instance.updateunhealthy", instance, null);
+        verifyZeroInteractions(executor);
+    }
+
+    @Test
+    public void testQuorumChangeAlreadyScheduledUnderLock() {
+        // A concurrent report scheduled the change between the decision and the lock
+        healthStateUnderLock = HEALTH_STATE_UPDATING_UNHEALTHY;
+        service.updateHealthcheck("first", 2L, false);
+
+        verify(dao).updateHostMaps(Collections.singletonMap(1L, HEALTH_STATE_UNHEALTHY), Collections.singletonMap(1L, 2L));
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testFlipWithoutQuorumWrittenInBackground() {
+        service.updateHealthcheck("second", 2L, true);
+        service.updateHealthcheck("first", 3L, false);
+
+        verify(executor, times(2)).execute(any(Runnable.class));
+        verify(dao, never()).updateHostMaps(anyMapOf(Long.class, String.class), anyMapOf(Long.class, Long.class));
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testStaleReportIgnored() {
+        service.updateHealthcheck("first", 5L, false);
+        service.updateHealthcheck("first", 4L, true);
+
+        verify(processManager).scheduleProcessInstance("instance.updateunhealthy", instance, null);
+        verify(processManager, never()).scheduleProcessInstance(eq("instance.updatehealthy"), any(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void testBatchAllUnhealthy() {
+        activeMaps(hostMap(1L, HEALTH_STATE_UNHEALTHY), hostMap(2L, HEALTH_STATE_UNHEALTHY));
+
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false), report("second", 2L, false)));
+
+        verify(processManager).scheduleProcessInstance("instance.updateunhealthy", instance, null);
+    }
+
+    @Test
+    public void testBatchQuorumRecheckedUnderLock() {
+        activeMaps(hostMap(1L, HEALTH_STATE_UNHEALTHY), hostMap(2L, HEALTH_STATE_UNHEALTHY));
+
+        healthStateUnderLock = HEALTH_STATE_UPDATING_UNHEALTHY;
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false), report("second", 2L, false)));
+
+        // Already done by the time the lock is taken
+        healthState = HEALTH_STATE_HEALTHY;
+        healthStateUnderLock = HEALTH_STATE_UNHEALTHY;
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 3L, false), report("second", 3L, false)));
+
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testBatchOneHealthyMonitorKeepsInstanceHealthy() {
+        activeMaps(hostMap(1L, HEALTH_STATE_UNHEALTHY), hostMap(2L, HEALTH_STATE_HEALTHY));
+
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false)));
+
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testBatchHealthyReportRecovers() {
+        healthState = HEALTH_STATE_UNHEALTHY;
+        activeMaps(hostMap(1L, HEALTH_STATE_HEALTHY), hostMap(2L, HEALTH_STATE_UNHEALTHY));
+
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false), report("first", 3L, true)));
+
+        verify(dao).updateHostMaps(Collections.singletonMap(1L, HEALTH_STATE_HEALTHY), Collections.singletonMap(1L, 3L));
+        verify(processManager).scheduleProcessInstance("instance.updatehealthy", instance, null);
+    }
+
+    @Test
+    public void testBatchDropsOtherAccountsAndInitializing() {
+        service.updateHealthchecks(2L, Arrays.asList(report("first", 2L, true)));
+
+        healthState = HEALTH_STATE_INITIALIZING;
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false)));
+
+        verify(dao, times(2)).updateHostMaps(Collections.<Long, String> emptyMap(), Collections.<Long, Long> emptyMap());
+        verify(dao, never()).findActiveHostMaps(anyCollectionOf(Long.class));
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testBatchStaleReportNotApplied() {
+        when(dao.updateHostMaps(anyMapOf(Long.class, String.class), anyMapOf(Long.class, Long.class))).thenReturn(Collections.<Long> emptyList());
+
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 2L, false), report("second", 2L, false)));
+
+        verify(dao, never()).findActiveHostMaps(anyCollectionOf(Long.class));
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testBatchUsesVotesNotWrittenYet() {
+        // Taken in memory, the write to the DB is still queued
+        service.updateHealthcheck("second", 5L, true);
+        verify(executor).execute(any(Runnable.class));
+
+        activeMaps(hostMap(1L, HEALTH_STATE_UNHEALTHY), hostMap(2L, HEALTH_STATE_UNHEALTHY));
+        service.updateHealthchecks(1L, Arrays.asList(report("first", 6L, false)));
+
+        verifyZeroInteractions(processManager);
+    }
+
+    @Test
+    public void testBatchKeepsVotesInStep() {
+        service.updateHealthcheck("second", 1L, true);
+
+        activeMaps(hostMap(1L, HEALTH_STATE_HEALTHY), hostMap(2L, HEALTH_STATE_UNHEALTHY));
+        service.updateHealthchecks(1L, Arrays.asList(report("second", 6L, false)));
+
+        // Older than what the batch wrote
+        service.updateHealthcheck("second", 5L, true);
+
+        verify(executor, times(1)).execute(any(Runnable.class));
+        verifyZeroInteractions(processManager);
+    }
+
+    protected void activeMaps(HealthcheckInstanceHostMap... maps) {
+        Map<Long, List<HealthcheckInstanceHostMap>> result = new HashMap<>();
+        result.put(10L, Arrays.asList(maps));
+        when(dao.findActiveHostMaps(anyCollectionOf(Long.class))).thenReturn(result);
+    }
+
+    protected static HealthcheckReport report(String uuid, long externalTimestamp, boolean healthy) {
+        return new HealthcheckReport(uuid + "_1", externalTimestamp, healthy ? "UP" : "DOWN");
+    }
+
+    protected static Map<String, HealthcheckInstanceHostMap> hostMaps(HealthcheckInstanceHostMap... maps) {
+        Map<String, HealthcheckInstanceHostMap> result = new HashMap<>();
+        for (HealthcheckInstanceHostMap map : maps) {
+            result.put(map.getUuid(), map);
+        }
+        return result;
+    }
+
+    protected HealthcheckInstanceHostMap hostMap(long id, String healthState) {
+        HealthcheckInstanceHostMap map = mock(HealthcheckInstanceHostMap.class);
+        when(map.getId()).thenReturn(id);
+        when(map.getUuid()).thenReturn(id == 1L ? "first" : "second");
+        when(map.getAccountId()).thenReturn(1L);
+        when(map.getHealthcheckInstanceId()).thenReturn(10L);
+        when(map.getHealthState()).thenReturn(healthState);
+        return map;
+    }
+
+}
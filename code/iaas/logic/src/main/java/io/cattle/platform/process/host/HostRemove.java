@@ -10,6 +10,7 @@ import io.cattle.platform.engine.process.ProcessState;
 import io.cattle.platform.engine.process.impl.ProcessCancelException;
 import io.cattle.platform.object.process.StandardProcess;
 import io.cattle.platform.process.base.AbstractDefaultProcessHandler;
+import io.cattle.platform.resource.pool.ResourcePoolManager;
 import io.cattle.platform.util.type.CollectionUtils;
 
 import javax.inject.Inject;
@@ -21,10 +22,15 @@ public class HostRemove extends AbstractDefaultProcessHandler {
     @Inject
     InstanceDao instanceDao;
 
+    @Inject
+    ResourcePoolManager poolManager;
+
     @Override
     public HandlerResult handle(final ProcessState state, ProcessInstance process) {
         final Host host = (Host) state.getResource();
 
+        poolManager.poolRemoved(host);
+
         if (host.getAgentId() == null) {
             return null;
         }
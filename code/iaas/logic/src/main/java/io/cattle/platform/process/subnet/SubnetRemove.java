@@ -0,0 +1,28 @@
+package io.cattle.platform.process.subnet;
+
+import io.cattle.platform.core.model.Subnet;
+import io.cattle.platform.engine.handler.HandlerResult;
+import io.cattle.platform.engine.process.ProcessInstance;
+import io.cattle.platform.engine.process.ProcessState;
+import io.cattle.platform.process.base.AbstractDefaultProcessHandler;
+import io.cattle.platform.resource.pool.ResourcePoolManager;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+@Named
+public class SubnetRemove extends AbstractDefaultProcessHandler {
+
+    @Inject
+    ResourcePoolManager poolManager;
+
+    @Override
+    public HandlerResult handle(ProcessState state, ProcessInstance process) {
+        Subnet subnet = (Subnet) state.getResource();
+
+        poolManager.poolRemoved(subnet);
+
+        return null;
+    }
+
+}
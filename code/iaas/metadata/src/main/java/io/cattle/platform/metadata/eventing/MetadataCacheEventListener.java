@@ -0,0 +1,13 @@
+package io.cattle.platform.metadata.eventing;
+
+import io.cattle.platform.eventing.annotation.AnnotatedEventListener;
+import io.cattle.platform.eventing.annotation.EventHandler;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.iaas.event.IaasEvents;
+
+public interface MetadataCacheEventListener extends AnnotatedEventListener {
+
+    @EventHandler(name = IaasEvents.RESOURCE_CHANGE)
+    void resourceChange(Event event);
+
+}
@@ -0,0 +1,43 @@
+package io.cattle.platform.metadata.eventing.impl;
+
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.metadata.eventing.MetadataCacheEventListener;
+import io.cattle.platform.metadata.service.MetadataService;
+import io.cattle.platform.object.meta.ObjectMetaDataManager;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+public class MetadataCacheEventListenerImpl implements MetadataCacheEventListener {
+
+    private static final Set<String> SOURCE_TYPES = new HashSet<String>(Arrays.asList(
+            "instance", "container", "virtualMachine", "nic", "ipAddress", "ipAddressNicMap", "ipAssociation",
+            "credential", "credentialInstanceMap", "network", "subnet", "vnet", "volume", "zone", "offering",
+            "host", "instanceHostMap", "networkService", "networkServiceProvider", "networkServiceProviderInstanceMap",
+            "service", "loadBalancerService", "dnsService", "externalService", "serviceExposeMap"));
+
+    @Inject
+    MetadataService metadataService;
+
+    @Override
+    public void resourceChange(Event event) {
+        if (event.getResourceType() == null || !SOURCE_TYPES.contains(event.getResourceType())) {
+            return;
+        }
+
+        Long accountId = null;
+        if (event.getData() instanceof Map) {
+            Object value = ((Map<?, ?>) event.getData()).get(ObjectMetaDataManager.ACCOUNT_FIELD);
+            if (value instanceof Number) {
+                accountId = ((Number) value).longValue();
+            }
+        }
+
+        metadataService.invalidate(accountId);
+    }
+
+}
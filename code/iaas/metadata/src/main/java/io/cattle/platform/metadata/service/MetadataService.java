@@ -10,12 +10,32 @@ import java.util.Map;
 
 public interface MetadataService {
 
+    /**
+     * @return the metadata served by the agent instance. The result may be
+     *         shared with other callers and must not be modified.
+     */
     Map<String, Object> getMetadata(Instance agentInstance, IdFormatter idformatter);
 
+    /**
+     * @return {@link #getMetadata(Instance, IdFormatter)} serialized as JSON
+     */
+    String getMetadataJson(Instance agentInstance, IdFormatter idformatter);
+
     Map<String, Object> getMetadataForInstance(Instance instance, IdFormatter idformatter);
 
     List<MetadataRedirectData> getMetadataRedirects(Agent agent);
 
     boolean isAttachMetadata(Instance instance);
 
+    /**
+     * Drops the cached metadata of the account, or of every account if
+     * accountId is null.
+     */
+    void invalidate(Long accountId);
+
+    /**
+     * Drops the cached metadata served by the agent.
+     */
+    void invalidateAgent(long agentId);
+
 }
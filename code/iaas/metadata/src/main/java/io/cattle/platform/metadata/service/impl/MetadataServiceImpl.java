@@ -1,6 +1,7 @@
 package io.cattle.platform.metadata.service.impl;
 
 import static io.cattle.platform.util.type.CollectionUtils.*;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.core.constants.InstanceConstants;
 import io.cattle.platform.core.constants.IpAddressConstants;
 import io.cattle.platform.core.constants.NetworkConstants;
@@ -23,28 +24,51 @@ import io.cattle.platform.metadata.dao.MetadataDao;
 import io.cattle.platform.metadata.data.MetadataEntry;
 import io.cattle.platform.metadata.data.MetadataRedirectData;
 import io.cattle.platform.metadata.service.MetadataService;
+import io.cattle.platform.metrics.util.MetricsUtil;
 import io.cattle.platform.object.ObjectManager;
 import io.cattle.platform.object.util.DataAccessor;
 import io.cattle.platform.object.util.ObjectUtils;
 import io.cattle.platform.util.type.CollectionUtils;
 import io.github.ibuildthecloud.gdapi.id.IdFormatter;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicIntProperty;
+
 public class MetadataServiceImpl implements MetadataService {
 
-    // private static final Logger log =
-    // LoggerFactory.getLogger(MetadataServiceImpl.class);
+    private static final Logger log = LoggerFactory.getLogger(MetadataServiceImpl.class);
+
+    private static final DynamicBooleanProperty CACHE_ENABLED = ArchaiusUtil.getBoolean("metadata.cache.enabled");
+    private static final DynamicIntProperty CACHE_SIZE = ArchaiusUtil.getInt("metadata.cache.max.entries");
+
+    private static final Counter HIT = MetricsUtil.getRegistry().counter("metadata.cache.hit");
+    private static final Counter MISS = MetricsUtil.getRegistry().counter("metadata.cache.miss");
 
     ObjectManager objectManager;
     MetadataDao metadataDao;
     JsonMapper jsonMapper;
 
+    AtomicLong globalGeneration = new AtomicLong();
+    ConcurrentMap<Long, AtomicLong> generations = new ConcurrentHashMap<Long, AtomicLong>();
+    ConcurrentMap<Long, AtomicLong> agentGenerations = new ConcurrentHashMap<Long, AtomicLong>();
+    Map<CacheKey, CachedMetadata> cache = new LinkedHashMap<CacheKey, CachedMetadata>(16, 0.75f, true);
+
     @Override
     public boolean isAttachMetadata(Instance instance) {
         for (NetworkService service : metadataDao.getMetadataServices(instance)) {
@@ -58,7 +82,86 @@ public class MetadataServiceImpl implements MetadataService {
 
     @Override
     public Map<String, Object> getMetadata(Instance agentInstance, IdFormatter idFormatter) {
-        return getMetaData(idFormatter, metadataDao.getMetadata(agentInstance));
+        return getCachedMetadata(agentInstance, idFormatter).metadata;
+    }
+
+    @Override
+    public String getMetadataJson(Instance agentInstance, IdFormatter idFormatter) {
+        return getCachedMetadata(agentInstance, idFormatter).json;
+    }
+
+    protected CachedMetadata getCachedMetadata(Instance agentInstance, IdFormatter idFormatter) {
+        if (!CACHE_ENABLED.get()) {
+            return buildMetadata(agentInstance, idFormatter, 0, 0, 0);
+        }
+
+        CacheKey key = new CacheKey(agentInstance.getId(), idFormatter);
+        long global = globalGeneration.get();
+        long account = getGeneration(generations, agentInstance.getAccountId()).get();
+        long agent = getGeneration(agentGenerations, agentInstance.getAgentId()).get();
+
+        CachedMetadata cached = null;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+
+        if (cached != null && cached.globalGeneration == global && cached.accountGeneration == account
+                && cached.agentGeneration == agent) {
+            HIT.inc();
+            return cached;
+        }
+
+        MISS.inc();
+        /* The generations are read before the DB so a change while building
+         * makes the result stale rather than lost */
+        cached = buildMetadata(agentInstance, idFormatter, global, account, agent);
+
+        synchronized (cache) {
+            cache.put(key, cached);
+            int max = CACHE_SIZE.get();
+            while (cache.size() > max && cache.size() > 0) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+
+        return cached;
+    }
+
+    protected CachedMetadata buildMetadata(Instance agentInstance, IdFormatter idFormatter, long global, long account, long agent) {
+        Map<String, Object> metadata = getMetaData(idFormatter, metadataDao.getMetadata(agentInstance));
+        String json;
+        try {
+            json = jsonMapper.writeValueAsString(metadata);
+        } catch (IOException e) {
+            log.error("Failed to marshal metadata", e);
+            json = "{}";
+        }
+
+        return new CachedMetadata(metadata, json, global, account, agent);
+    }
+
+    protected AtomicLong getGeneration(ConcurrentMap<Long, AtomicLong> generations, Long key) {
+        long id = key == null ? 0 : key;
+        AtomicLong generation = generations.get(id);
+        if (generation == null) {
+            generations.putIfAbsent(id, new AtomicLong());
+            generation = generations.get(id);
+        }
+        return generation;
+    }
+
+    @Override
+    public void invalidate(Long accountId) {
+        if (accountId == null) {
+            globalGeneration.incrementAndGet();
+        } else {
+            getGeneration(generations, accountId).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void invalidateAgent(long agentId) {
+        getGeneration(agentGenerations, agentId).incrementAndGet();
     }
 
     @SuppressWarnings("unchecked")
@@ -418,4 +521,45 @@ public class MetadataServiceImpl implements MetadataService {
     public void setObjectManager(ObjectManager objectManager) {
         this.objectManager = objectManager;
     }
+
+    private static final class CacheKey {
+        long agentInstanceId;
+        IdFormatter idFormatter;
+
+        public CacheKey(long agentInstanceId, IdFormatter idFormatter) {
+            this.agentInstanceId = agentInstanceId;
+            this.idFormatter = idFormatter;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (agentInstanceId ^ (agentInstanceId >>> 32)) * 31 + System.identityHashCode(idFormatter);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return agentInstanceId == other.agentInstanceId && idFormatter == other.idFormatter;
+        }
+    }
+
+    private static final class CachedMetadata {
+        Map<String, Object> metadata;
+        String json;
+        long globalGeneration;
+        long accountGeneration;
+        long agentGeneration;
+
+        public CachedMetadata(Map<String, Object> metadata, String json, long globalGeneration, long accountGeneration, long agentGeneration) {
+            this.metadata = metadata;
+            this.json = json;
+            this.globalGeneration = globalGeneration;
+            this.accountGeneration = accountGeneration;
+            this.agentGeneration = agentGeneration;
+        }
+    }
+
 }
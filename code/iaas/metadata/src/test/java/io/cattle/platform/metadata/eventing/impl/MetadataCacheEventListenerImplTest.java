@@ -0,0 +1,58 @@
+package io.cattle.platform.metadata.eventing.impl;
+
+import static org.mockito.Mockito.*;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.metadata.service.MetadataService;
+import io.cattle.platform.object.meta.ObjectMetaDataManager;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetadataCacheEventListenerImplTest {
+
+    MetadataCacheEventListenerImpl listener;
+    MetadataService metadataService;
+
+    @Before
+    public void setup() {
+        metadataService = mock(MetadataService.class);
+
+        listener = new MetadataCacheEventListenerImpl();
+        listener.metadataService = metadataService;
+    }
+
+    @Test
+    public void testAccountFromEvent() {
+        listener.resourceChange(event("host", Collections.singletonMap(ObjectMetaDataManager.ACCOUNT_FIELD, 5L)));
+        listener.resourceChange(event("service", Collections.singletonMap(ObjectMetaDataManager.ACCOUNT_FIELD, 6)));
+
+        verify(metadataService).invalidate(5L);
+        verify(metadataService).invalidate(6L);
+        verifyNoMoreInteractions(metadataService);
+    }
+
+    @Test
+    public void testNoAccountDropsAll() {
+        listener.resourceChange(event("zone", null));
+
+        verify(metadataService).invalidate(null);
+    }
+
+    @Test
+    public void testOtherTypesIgnored() {
+        listener.resourceChange(event("apiKey", Collections.singletonMap(ObjectMetaDataManager.ACCOUNT_FIELD, 5L)));
+        listener.resourceChange(event(null, null));
+
+        verifyZeroInteractions(metadataService);
+    }
+
+    protected Event event(String type, Object data) {
+        Event event = mock(Event.class);
+        when(event.getResourceType()).thenReturn(type);
+        doReturn(data).when(event).getData();
+        return event;
+    }
+
+}
@@ -0,0 +1,126 @@
+package io.cattle.platform.metadata.service.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.json.JsonMapper;
+import io.cattle.platform.metadata.dao.MetadataDao;
+import io.cattle.platform.metadata.data.MetadataEntry;
+import io.cattle.platform.object.ObjectManager;
+import io.github.ibuildthecloud.gdapi.id.IdFormatter;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class MetadataServiceImplTest {
+
+    MetadataServiceImpl service;
+    MetadataDao metadataDao;
+    JsonMapper jsonMapper;
+    IdFormatter idFormatter;
+    Instance agentInstance;
+
+    @Before
+    public void setup() throws Exception {
+        ConfigurationManager.getConfigInstance().setProperty("metadata.cache.enabled", true);
+        ConfigurationManager.getConfigInstance().setProperty("metadata.cache.max.entries", 100);
+
+        metadataDao = mock(MetadataDao.class);
+        when(metadataDao.getMetadata(any(Instance.class))).thenReturn(Collections.<MetadataEntry> emptyList());
+        jsonMapper = mock(JsonMapper.class);
+        when(jsonMapper.writeValueAsString(any())).thenReturn("{}");
+        idFormatter = mock(IdFormatter.class);
+
+        service = new MetadataServiceImpl();
+        service.setMetadataDao(metadataDao);
+        service.setJsonMapper(jsonMapper);
+        service.setObjectManager(mock(ObjectManager.class));
+
+        agentInstance = instance(10L, 5L, 7L);
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationManager.getConfigInstance().setProperty("metadata.cache.enabled", false);
+    }
+
+    @Test
+    public void testHitCostsNoQuery() {
+        assertEquals("{}", service.getMetadataJson(agentInstance, idFormatter));
+        assertEquals("{}", service.getMetadataJson(agentInstance, idFormatter));
+
+        verify(metadataDao, times(1)).getMetadata(agentInstance);
+    }
+
+    @Test
+    public void testAgentBumpThenFetch() {
+        Instance other = instance(11L, 5L, 8L);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        service.invalidateAgent(7L);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        verify(metadataDao, times(2)).getMetadata(agentInstance);
+        verify(metadataDao, times(1)).getMetadata(other);
+    }
+
+    @Test
+    public void testInvalidatesOnlyTheAccount() {
+        Instance other = instance(20L, 6L, 9L);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        service.invalidate(5L);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        verify(metadataDao, times(2)).getMetadata(agentInstance);
+        verify(metadataDao, times(1)).getMetadata(other);
+    }
+
+    @Test
+    public void testInvalidateWithoutAccountDropsAll() {
+        Instance other = instance(20L, 6L, 9L);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        service.invalidate(null);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(other, idFormatter);
+
+        verify(metadataDao, times(2)).getMetadata(agentInstance);
+        verify(metadataDao, times(2)).getMetadata(other);
+    }
+
+    @Test
+    public void testDisabledAlwaysQueries() {
+        ConfigurationManager.getConfigInstance().setProperty("metadata.cache.enabled", false);
+
+        service.getMetadataJson(agentInstance, idFormatter);
+        service.getMetadataJson(agentInstance, idFormatter);
+
+        verify(metadataDao, times(2)).getMetadata(agentInstance);
+    }
+
+    protected Instance instance(long id, long accountId, long agentId) {
+        Instance instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getAccountId()).thenReturn(accountId);
+        when(instance.getAgentId()).thenReturn(agentId);
+        return instance;
+    }
+
+}
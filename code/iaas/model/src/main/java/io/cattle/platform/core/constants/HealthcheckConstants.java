@@ -8,4 +8,6 @@ public class HealthcheckConstants {
     public static final String HEALTH_STATE_UPDATING_UNHEALTHY = "updating-unhealthy";
     public static final String HEALTH_STATE_INITIALIZING = "initializing";
 
+    public static final String EVENT_HEALTHCHECK_REPORT = "healthcheck.report";
+
 }
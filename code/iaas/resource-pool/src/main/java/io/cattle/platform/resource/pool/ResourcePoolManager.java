@@ -15,4 +15,10 @@ public interface ResourcePoolManager {
 
     void releaseResource(Object pool, Object owner, PooledResourceOptions options);
 
+    /**
+     * Drops what is kept in memory about the items of a pool, called once the
+     * pool itself (a host or subnet) is removed.
+     */
+    void poolRemoved(Object pool);
+
 }
@@ -0,0 +1,94 @@
+package io.cattle.platform.resource.pool.impl;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * In memory view of which items of one pool range are in use. Bits are set
+ * when an item is handed out and cleared when it is released, the database
+ * insert of the resource_pool row stays the authority on conflicts.
+ */
+public class PoolBitmap {
+
+    private static final Random RANDOM = new Random();
+
+    AbstractStringRangeGenerator range;
+    BitSet used;
+    int length;
+    int cursor;
+    long loadedMillis;
+
+    public PoolBitmap(AbstractStringRangeGenerator range) {
+        this.range = range;
+        this.length = (int) range.length;
+        this.used = new BitSet(length);
+        this.cursor = RANDOM.nextInt(length);
+    }
+
+    /**
+     * Marks the next clear bit at or after the cursor as used, wrapping
+     * around the end of the range.
+     *
+     * @return the item or null if every item is in use
+     */
+    public synchronized String reserve() {
+        int index = used.nextClearBit(cursor);
+        if (index >= length) {
+            index = used.nextClearBit(0);
+        }
+
+        if (index >= length) {
+            return null;
+        }
+
+        used.set(index);
+        cursor = index + 1 >= length ? 0 : index + 1;
+        return range.toString(range.min + index);
+    }
+
+    public synchronized void set(String item) {
+        int index = indexOf(item);
+        if (index >= 0) {
+            used.set(index);
+        }
+    }
+
+    public synchronized void clear(String item) {
+        int index = indexOf(item);
+        if (index >= 0) {
+            used.clear(index);
+        }
+    }
+
+    public synchronized void reset(Iterable<String> items) {
+        used.clear();
+        for (String item : items) {
+            set(item);
+        }
+        loadedMillis = System.currentTimeMillis();
+    }
+
+    public boolean isSameRange(AbstractStringRangeGenerator other) {
+        return range.min == other.min && range.max == other.max;
+    }
+
+    public long getLoadedMillis() {
+        return loadedMillis;
+    }
+
+    protected int indexOf(String item) {
+        long value;
+        try {
+            value = range.fromString(item);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+
+        if (value < range.min || value > range.max) {
+            return -1;
+        }
+
+        return (int) (value - range.min);
+    }
+
+}
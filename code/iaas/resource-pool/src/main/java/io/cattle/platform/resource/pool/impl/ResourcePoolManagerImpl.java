@@ -1,6 +1,7 @@
 package io.cattle.platform.resource.pool.impl;
 
 import static io.cattle.platform.core.model.tables.ResourcePoolTable.*;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.core.model.ResourcePool;
 import io.cattle.platform.object.ObjectManager;
 import io.cattle.platform.object.util.ObjectUtils;
@@ -13,21 +14,35 @@ import io.cattle.platform.util.type.CollectionUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
 
 public class ResourcePoolManagerImpl implements ResourcePoolManager {
 
     private static final Logger log = LoggerFactory.getLogger(ResourcePoolManagerImpl.class);
 
+    private static final DynamicBooleanProperty BITMAP_ENABLED = ArchaiusUtil.getBoolean("pool.bitmap.enabled");
+    private static final DynamicIntProperty BITMAP_MAX_SIZE = ArchaiusUtil.getInt("pool.bitmap.max.size");
+    private static final DynamicLongProperty BITMAP_RELOAD = ArchaiusUtil.getLong("pool.bitmap.reload.millis");
+
     ObjectManager objectManager;
     List<PooledResourceItemGeneratorFactory> factories;
+    ConcurrentMap<String, PoolBitmap> bitmaps = new ConcurrentHashMap<String, PoolBitmap>();
 
     @Override
     public List<PooledResource> allocateResource(Object pool, Object owner, PooledResourceOptions options) {
@@ -89,9 +104,24 @@ public class ResourcePoolManagerImpl implements ResourcePoolManager {
         Map<Object, Object> keys = CollectionUtils.asMap((Object) RESOURCE_POOL.POOL_TYPE, poolType, (Object) RESOURCE_POOL.POOL_ID, poolId,
                 RESOURCE_POOL.QUALIFIER, options.getQualifier(), RESOURCE_POOL.OWNER_TYPE, ownerType, RESOURCE_POOL.OWNER_ID, ownerId);
 
+        PoolBitmap bitmap = bitmaps.get(getBitmapKey(poolType, poolId, options.getQualifier()));
         for (ResourcePool resource : objectManager.find(ResourcePool.class, keys)) {
             log.info("Releasing [{}] id [{}] to pool [{}:{}] from owner [{}:{}]", resource.getItem(), resource.getId(), poolType, poolId, ownerType, ownerId);
             objectManager.delete(resource);
+            if (bitmap != null) {
+                bitmap.clear(resource.getItem());
+            }
+        }
+    }
+
+    @Override
+    public void poolRemoved(Object pool) {
+        String prefix = getResourceType(pool) + ":" + getResourceId(pool) + ":";
+        Iterator<String> iter = bitmaps.keySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().startsWith(prefix)) {
+                iter.remove();
+            }
         }
     }
 
@@ -117,6 +147,11 @@ public class ResourcePoolManagerImpl implements ResourcePoolManager {
             return null;
         }
 
+        PoolBitmap bitmap = getBitmap(keys, generator);
+        if (bitmap != null) {
+            return getItem(keys, bitmap, tryItem);
+        }
+
         while (generator.hasNext()) {
             String item = null;
             if (tryItem == null) {
@@ -125,20 +160,120 @@ public class ResourcePoolManagerImpl implements ResourcePoolManager {
                 item = tryItem;
                 tryItem = null;
             }
-            Map<Object, Object> newKeys = new HashMap<Object, Object>(keys);
-            newKeys.put(RESOURCE_POOL.ITEM, item);
-
-            Map<String, Object> props = objectManager.convertToPropertiesFor(ResourcePool.class, newKeys);
-            try {
-                return objectManager.create(ResourcePool.class, props).getItem();
-            } catch (DataAccessException e) {
-                log.debug("Failed to create item [{}]", item);
+
+            String created = createItem(keys, item);
+            if (created != null) {
+                return created;
             }
         }
 
         return null;
     }
 
+    protected String getItem(Map<Object, Object> keys, PoolBitmap bitmap, String tryItem) {
+        if (tryItem != null) {
+            String created = createItem(keys, tryItem);
+            bitmap.set(tryItem);
+            if (created != null) {
+                clearOnRollback(bitmap, created);
+                return created;
+            }
+        }
+
+        /* Every failed insert leaves its bit set, so this ends once the bitmap is
+         * full. A full bitmap is reloaded once in case items were released by
+         * another server. */
+        boolean reloaded = false;
+        while (true) {
+            String item = bitmap.reserve();
+            if (item == null) {
+                if (reloaded) {
+                    return null;
+                }
+                loadBitmap(keys, bitmap);
+                reloaded = true;
+                continue;
+            }
+
+            String created = createItem(keys, item);
+            if (created != null) {
+                clearOnRollback(bitmap, created);
+                return created;
+            }
+        }
+    }
+
+    /* The row goes away with a rolled back transaction, so must the bit or the
+     * item stays unusable until the next reload */
+    protected void clearOnRollback(final PoolBitmap bitmap, final String item) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    bitmap.clear(item);
+                }
+            }
+        });
+    }
+
+    protected String createItem(Map<Object, Object> keys, String item) {
+        Map<Object, Object> newKeys = new HashMap<Object, Object>(keys);
+        newKeys.put(RESOURCE_POOL.ITEM, item);
+
+        Map<String, Object> props = objectManager.convertToPropertiesFor(ResourcePool.class, newKeys);
+        try {
+            return objectManager.create(ResourcePool.class, props).getItem();
+        } catch (DataAccessException e) {
+            log.debug("Failed to create item [{}]", item);
+        }
+
+        return null;
+    }
+
+    protected PoolBitmap getBitmap(Map<Object, Object> keys, PooledResourceItemGenerator generator) {
+        if (!BITMAP_ENABLED.get() || !(generator instanceof AbstractStringRangeGenerator)) {
+            return null;
+        }
+
+        AbstractStringRangeGenerator range = (AbstractStringRangeGenerator) generator;
+        if (range.length <= 0 || range.length > BITMAP_MAX_SIZE.get()) {
+            return null;
+        }
+
+        String key = getBitmapKey(keys.get(RESOURCE_POOL.POOL_TYPE), keys.get(RESOURCE_POOL.POOL_ID), keys.get(RESOURCE_POOL.QUALIFIER));
+        PoolBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null || !bitmap.isSameRange(range)) {
+            bitmap = new PoolBitmap(range);
+            loadBitmap(keys, bitmap);
+            bitmaps.put(key, bitmap);
+        } else if (System.currentTimeMillis() - bitmap.getLoadedMillis() > BITMAP_RELOAD.get()) {
+            loadBitmap(keys, bitmap);
+        }
+
+        return bitmap;
+    }
+
+    protected void loadBitmap(Map<Object, Object> keys, PoolBitmap bitmap) {
+        Map<Object, Object> poolKeys = CollectionUtils.asMap((Object) RESOURCE_POOL.POOL_TYPE, keys.get(RESOURCE_POOL.POOL_TYPE),
+                (Object) RESOURCE_POOL.POOL_ID, keys.get(RESOURCE_POOL.POOL_ID),
+                RESOURCE_POOL.QUALIFIER, keys.get(RESOURCE_POOL.QUALIFIER));
+
+        List<String> items = new ArrayList<String>();
+        for (ResourcePool resourcePool : objectManager.find(ResourcePool.class, poolKeys)) {
+            items.add(resourcePool.getItem());
+        }
+
+        bitmap.reset(items);
+    }
+
+    protected String getBitmapKey(Object poolType, Object poolId, Object qualifier) {
+        return poolType + ":" + poolId + ":" + qualifier;
+    }
+
     protected String getResourceType(Object obj) {
         if (GLOBAL.equals(obj)) {
             return GLOBAL;
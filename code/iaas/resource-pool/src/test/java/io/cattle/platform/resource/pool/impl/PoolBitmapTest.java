@@ -0,0 +1,47 @@
+package io.cattle.platform.resource.pool.impl;
+
+import static org.junit.Assert.*;
+import io.cattle.platform.resource.pool.subnet.SubnetAddressGenerator;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PoolBitmapTest {
+
+    @Test
+    public void testReservesEveryItemOnce() {
+        PoolBitmap bitmap = new PoolBitmap(new SubnetAddressGenerator("192.168.0.1", "192.168.0.4"));
+        Set<String> ips = new HashSet<String>();
+
+        String ip = null;
+        while ((ip = bitmap.reserve()) != null) {
+            assertTrue(ips.add(ip));
+        }
+
+        assertEquals(new HashSet<String>(Arrays.asList("192.168.0.1", "192.168.0.2", "192.168.0.3", "192.168.0.4")), ips);
+    }
+
+    @Test
+    public void testSkipsUsedItems() {
+        PoolBitmap bitmap = new PoolBitmap(new StringRangeGenerator("1", "3"));
+        bitmap.reset(Arrays.asList("1", "3", "99", "garbage"));
+
+        assertEquals("2", bitmap.reserve());
+        assertNull(bitmap.reserve());
+    }
+
+    @Test
+    public void testClearReturnsItem() {
+        PoolBitmap bitmap = new PoolBitmap(new StringRangeGenerator("10", "11"));
+        bitmap.reset(Arrays.asList("10", "11"));
+        assertNull(bitmap.reserve());
+
+        bitmap.clear("11");
+        assertEquals("11", bitmap.reserve());
+        assertNull(bitmap.reserve());
+    }
+
+}
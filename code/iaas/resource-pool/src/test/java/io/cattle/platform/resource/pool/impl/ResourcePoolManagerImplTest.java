@@ -0,0 +1,142 @@
+package io.cattle.platform.resource.pool.impl;
+
+import static io.cattle.platform.core.model.tables.ResourcePoolTable.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.core.model.Host;
+import io.cattle.platform.core.model.Instance;
+import io.cattle.platform.core.model.ResourcePool;
+import io.cattle.platform.object.ObjectManager;
+import io.cattle.platform.resource.pool.PooledResource;
+import io.cattle.platform.resource.pool.PooledResourceItemGeneratorFactory;
+import io.cattle.platform.resource.pool.PooledResourceOptions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.netflix.config.ConfigurationManager;
+
+public class ResourcePoolManagerImplTest {
+
+    ResourcePoolManagerImpl manager;
+    ObjectManager objectManager;
+    Host host;
+    Instance instance;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("pool.bitmap.enabled", true);
+        ConfigurationManager.getConfigInstance().setProperty("pool.bitmap.max.size", 1000);
+        ConfigurationManager.getConfigInstance().setProperty("pool.bitmap.reload.millis", 300000);
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        host = mock(Host.class);
+        when(host.getId()).thenReturn(1L);
+        instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(2L);
+
+        objectManager = mock(ObjectManager.class);
+        when(objectManager.getType(host)).thenReturn("host");
+        when(objectManager.getType(instance)).thenReturn("instance");
+        when(objectManager.find(eq(ResourcePool.class), anyMap())).thenReturn(Collections.emptyList());
+        when(objectManager.convertToPropertiesFor(eq(ResourcePool.class), anyMap())).thenAnswer(new Answer<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> answer(InvocationOnMock invocation) throws Throwable {
+                Map<String, Object> props = new HashMap<String, Object>();
+                props.put("item", ((Map<Object, Object>) invocation.getArguments()[1]).get(RESOURCE_POOL.ITEM));
+                return props;
+            }
+        });
+        when(objectManager.create(eq(ResourcePool.class), anyMap())).thenAnswer(new Answer<ResourcePool>() {
+            @Override
+            public ResourcePool answer(InvocationOnMock invocation) throws Throwable {
+                ResourcePool resourcePool = mock(ResourcePool.class);
+                when(resourcePool.getItem()).thenReturn((String) ((Map<String, Object>) invocation.getArguments()[1]).get("item"));
+                return resourcePool;
+            }
+        });
+
+        PooledResourceItemGeneratorFactory factory = mock(PooledResourceItemGeneratorFactory.class);
+        when(factory.getGenerator(any(), anyString())).thenAnswer(new Answer<StringRangeGenerator>() {
+            @Override
+            public StringRangeGenerator answer(InvocationOnMock invocation) throws Throwable {
+                return new StringRangeGenerator("1", "2");
+            }
+        });
+
+        manager = new ResourcePoolManagerImpl();
+        manager.setObjectManager(objectManager);
+        manager.setFactories(Arrays.asList(factory));
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testRollbackClearsBit() {
+        TransactionSynchronizationManager.initSynchronization();
+        PooledResource first = manager.allocateOneResource(host, instance, new PooledResourceOptions());
+        assertNotNull(first);
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        PoolBitmap bitmap = manager.bitmaps.get("host:1:default");
+        assertNotNull(bitmap.reserve());
+        assertNotNull(bitmap.reserve());
+        assertNull(bitmap.reserve());
+    }
+
+    @Test
+    public void testCommitKeepsBit() {
+        TransactionSynchronizationManager.initSynchronization();
+        manager.allocateOneResource(host, instance, new PooledResourceOptions());
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        PoolBitmap bitmap = manager.bitmaps.get("host:1:default");
+        assertNotNull(bitmap.reserve());
+        assertNull(bitmap.reserve());
+    }
+
+    @Test
+    public void testPoolRemovedEvictsOnlyItsBitmaps() {
+        Host other = mock(Host.class);
+        when(other.getId()).thenReturn(11L);
+        when(objectManager.getType(other)).thenReturn("host");
+
+        manager.allocateOneResource(host, instance, new PooledResourceOptions());
+        manager.allocateOneResource(host, instance, new PooledResourceOptions().withQualifier("other"));
+        manager.allocateOneResource(other, instance, new PooledResourceOptions());
+        assertEquals(3, manager.bitmaps.size());
+
+        manager.poolRemoved(host);
+
+        assertEquals(Collections.singleton("host:11:default"), manager.bitmaps.keySet());
+    }
+
+}
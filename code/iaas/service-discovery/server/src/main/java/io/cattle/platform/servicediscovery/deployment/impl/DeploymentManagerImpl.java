@@ -5,10 +5,10 @@ import io.cattle.platform.allocator.service.AllocatorService;
 import io.cattle.platform.configitem.events.ConfigUpdate;
 import io.cattle.platform.configitem.model.Client;
 import io.cattle.platform.configitem.model.ItemVersion;
-import io.cattle.platform.configitem.request.ConfigUpdateRequest;
 import io.cattle.platform.configitem.version.ConfigItemStatusManager;
 import io.cattle.platform.core.constants.CommonStatesConstants;
 import io.cattle.platform.core.model.Service;
+import io.cattle.platform.deferred.util.DeferredUtils;
 import io.cattle.platform.engine.idempotent.IdempotentRetryException;
 import io.cattle.platform.eventing.EventService;
 import io.cattle.platform.eventing.model.EventVO;
@@ -285,12 +285,22 @@ public class DeploymentManagerImpl implements DeploymentManager {
 
     @Override
     public void reconcileServices(Collection<? extends Service> services) {
+        final List<Client> clients = new ArrayList<>();
         for (Service service: services) {
-            ConfigUpdateRequest request = ConfigUpdateRequest.forResource(Service.class, service.getId());
-            request.addItem(RECONCILE);
-            request.withDeferredTrigger(true);
-            itemManager.updateConfig(request);
+            clients.add(new Client(Service.class, service.getId()));
         }
+
+        if (clients.isEmpty()) {
+            return;
+        }
+
+        // one increment for all the services, once the change that triggered it is committed
+        DeferredUtils.defer(new Runnable() {
+            @Override
+            public void run() {
+                itemManager.updateConfig(clients, Arrays.asList(RECONCILE));
+            }
+        });
     }
 
     @Override
@@ -5,11 +5,13 @@ import io.cattle.platform.allocator.constraint.ComputeContstraint;
 import io.cattle.platform.allocator.constraint.Constraint;
 import io.cattle.platform.allocator.constraint.KindConstraint;
 import io.cattle.platform.allocator.constraint.ValidHostsConstraint;
+import io.cattle.platform.allocator.constraint.VolumeValidStoragePoolConstraint;
 import io.cattle.platform.allocator.service.AbstractAllocator;
 import io.cattle.platform.allocator.service.AllocationAttempt;
 import io.cattle.platform.allocator.service.AllocationCandidate;
 import io.cattle.platform.allocator.service.AllocationRequest;
 import io.cattle.platform.allocator.service.Allocator;
+import io.cattle.platform.archaius.util.ArchaiusUtil;
 import io.cattle.platform.core.model.Volume;
 import io.cattle.platform.lock.definition.LockDefinition;
 import io.cattle.platform.simple.allocator.dao.QueryOptions;
@@ -25,21 +27,38 @@ import java.util.List;
 
 import javax.inject.Inject;
 
+import com.netflix.config.DynamicBooleanProperty;
+
 public class SimpleAllocator extends AbstractAllocator implements Allocator, Named {
 
+    private static final DynamicBooleanProperty OPTIMISTIC = ArchaiusUtil.getBoolean("simple.allocator.optimistic");
+
     String name = getClass().getSimpleName();
     SimpleAllocatorDao simpleAllocatorDao;
 
     @Override
-    protected synchronized boolean acquireLockAndAllocate(AllocationRequest request, AllocationAttempt attempt, Object deallocate) {
-        /* Overriding just to add synchronized */
-        return super.acquireLockAndAllocate(request, attempt, deallocate);
+    protected boolean acquireLockAndAllocate(AllocationRequest request, AllocationAttempt attempt, Object deallocate) {
+        /* compute_free is reserved with a conditional update in recordCandidate and
+         * ports only conflict within an account, which the allocation lock covers,
+         * so allocations for different accounts can run concurrently */
+        if (OPTIMISTIC.get()) {
+            return super.acquireLockAndAllocate(request, attempt, deallocate);
+        }
+
+        synchronized (this) {
+            return super.acquireLockAndAllocate(request, attempt, deallocate);
+        }
     }
 
     @Override
-    protected synchronized boolean acquireLockAndDeallocate(AllocationRequest request) {
-        /* Overriding just to add synchronized */
-        return super.acquireLockAndDeallocate(request);
+    protected boolean acquireLockAndDeallocate(AllocationRequest request) {
+        if (OPTIMISTIC.get()) {
+            return super.acquireLockAndDeallocate(request);
+        }
+
+        synchronized (this) {
+            return super.acquireLockAndDeallocate(request);
+        }
     }
 
     @Override
@@ -80,6 +99,11 @@ public class SimpleAllocator extends AbstractAllocator implements Allocator, Nam
             if (constraint instanceof AccountConstraint) {
                 options.setAccountId(((AccountConstraint) constraint).getAccountId());
             }
+
+            if (constraint instanceof VolumeValidStoragePoolConstraint) {
+                VolumeValidStoragePoolConstraint volumeConstraint = (VolumeValidStoragePoolConstraint) constraint;
+                options.getVolumePools().put(volumeConstraint.getVolume().getId(), volumeConstraint.getStoragePools());
+            }
         }
 
         if (request.getInstance() == null) {
@@ -1,6 +1,8 @@
 package io.cattle.platform.simple.allocator.dao;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class QueryOptions {
@@ -9,6 +11,7 @@ public class QueryOptions {
     String kind;
     Long compute;
     Set<Long> hosts = new HashSet<Long>();
+    Map<Long, Set<Long>> volumePools = new HashMap<Long, Set<Long>>();
 
     public String getKind() {
         return kind;
@@ -30,6 +33,10 @@ public class QueryOptions {
         return hosts;
     }
 
+    public Map<Long, Set<Long>> getVolumePools() {
+        return volumePools;
+    }
+
     public Long getAccountId() {
         return accountId;
     }
@@ -9,14 +9,13 @@ import io.cattle.platform.simple.allocator.AllocationCandidateCallback;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jooq.Cursor;
 import org.jooq.Record2;
@@ -28,6 +27,7 @@ public class AllocationCandidateIterator implements Iterator<AllocationCandidate
     private static final Logger log = LoggerFactory.getLogger(AllocationCandidateIterator.class);
 
     List<Long> volumeIds;
+    Map<Long, Set<Long>> volumePools;
     Cursor<Record2<Long, Long>> cursor;
     Record2<Long, Long> last;
     Stack<AllocationCandidate> candidates = new Stack<AllocationCandidate>();
@@ -35,11 +35,31 @@ public class AllocationCandidateIterator implements Iterator<AllocationCandidate
     boolean hosts;
     AllocationCandidateCallback callback;
 
+    /* State of the host currently being enumerated. choices holds the pools
+     * each volume may use on the host and digits the index of the pool picked
+     * for each volume, advanced like an odometer as candidates are taken. The
+     * host and pool sets are shared by all candidates of the host. */
+    Set<Long> candidateHosts;
+    Map<Pair<Class<?>, Long>, Object> cache;
+    List<List<Set<Long>>> choices;
+    int[] digits;
+    boolean remaining;
+
     public AllocationCandidateIterator(ObjectManager objectManager, Cursor<Record2<Long, Long>> cursor, List<Long> volumeIds, boolean hosts,
             AllocationCandidateCallback callback) {
+        this(objectManager, cursor, volumeIds, Collections.<Long, Set<Long>> emptyMap(), hosts, callback);
+    }
+
+    /**
+     * @param volumePools pools each volume is restricted to, volumes not in
+     *            the map may use any pool of the host
+     */
+    public AllocationCandidateIterator(ObjectManager objectManager, Cursor<Record2<Long, Long>> cursor, List<Long> volumeIds,
+            Map<Long, Set<Long>> volumePools, boolean hosts, AllocationCandidateCallback callback) {
         super();
         this.objectManager = objectManager;
         this.volumeIds = volumeIds;
+        this.volumePools = volumePools;
         this.cursor = cursor;
         this.hosts = hosts;
         this.callback = callback;
@@ -47,16 +67,18 @@ public class AllocationCandidateIterator implements Iterator<AllocationCandidate
 
     @Override
     public boolean hasNext() {
-        if (candidates.size() > 0) {
-            return true;
+        while (candidates.size() == 0) {
+            if (!nextCombination() && !readNext()) {
+                return false;
+            }
         }
 
-        return readNext();
+        return true;
     }
 
     protected boolean readNext() {
         Long hostId = last == null ? null : last.getValue(HOST.ID);
-        Set<Long> pools = new HashSet<Long>();
+        Set<Long> pools = new LinkedHashSet<Long>();
         if (last != null) {
             Long poolId = last.getValue(STORAGE_POOL.ID);
             if (poolId != null) {
@@ -78,34 +100,64 @@ public class AllocationCandidateIterator implements Iterator<AllocationCandidate
             }
         }
 
+        if (hostId == null) {
+            return false;
+        }
+
         enumerate(hostId, pools);
 
-        return candidates.size() > 0;
+        return true;
     }
 
     protected void enumerate(Long hostId, Set<Long> pools) {
         log.debug("Enumerating canditates hostId [{}] pools {}", hostId, pools);
 
-        if (hostId == null) {
-            return;
-        }
+        candidateHosts = this.hosts ? Collections.singleton(hostId) : Collections.<Long> emptySet();
+        cache = new HashMap<Pair<Class<?>, Long>, Object>();
+        choices = new ArrayList<List<Set<Long>>>(volumeIds.size());
+        digits = new int[volumeIds.size()];
+        remaining = true;
+
+        for (Long volumeId : volumeIds) {
+            Set<Long> allowed = volumePools.get(volumeId);
+            List<Set<Long>> volumeChoices = new ArrayList<Set<Long>>(pools.size());
+            for (Long poolId : pools) {
+                if (allowed == null || allowed.contains(poolId)) {
+                    volumeChoices.add(Collections.singleton(poolId));
+                }
+            }
 
-        Long candidateHostId = this.hosts ? hostId : null;
+            if (volumeChoices.size() == 0) {
+                log.debug("No valid pool for volume [{}] on host [{}]", volumeId, hostId);
+                remaining = false;
+            }
 
-        Map<Pair<Class<?>, Long>, Object> cache = new HashMap<Pair<Class<?>, Long>, Object>();
+            choices.add(volumeChoices);
+        }
+    }
 
-        if (volumeIds.size() == 0) {
-            pushCandidate(new AllocationCandidate(objectManager, cache, candidateHostId, Collections.<Long, Long> emptyMap()));
+    protected boolean nextCombination() {
+        if (!remaining) {
+            return false;
         }
 
-        for (List<Pair<Long, Long>> pairs : traverse(volumeIds, pools)) {
-            Map<Long, Long> volumeToPool = new HashMap<Long, Long>();
-            for (Pair<Long, Long> pair : pairs) {
-                volumeToPool.put(pair.getLeft(), pair.getRight());
-            }
+        Map<Long, Set<Long>> volumeToPool = new HashMap<Long, Set<Long>>();
+        for (int i = 0; i < digits.length; i++) {
+            volumeToPool.put(volumeIds.get(i), choices.get(i).get(digits[i]));
+        }
 
-            pushCandidate(new AllocationCandidate(objectManager, cache, candidateHostId, volumeToPool));
+        remaining = false;
+        for (int i = digits.length - 1; i >= 0; i--) {
+            if (++digits[i] < choices.get(i).size()) {
+                remaining = true;
+                break;
+            }
+            digits[i] = 0;
         }
+
+        pushCandidate(new AllocationCandidate(objectManager, cache, candidateHosts, volumeToPool));
+
+        return true;
     }
 
     protected void pushCandidate(AllocationCandidate candidate) {
@@ -118,31 +170,6 @@ public class AllocationCandidateIterator implements Iterator<AllocationCandidate
         }
     }
 
-    public static <L, R> List<List<Pair<L, R>>> traverse(List<L> lefts, Set<R> rights) {
-        Stack<Pair<L, R>> pairSet = new Stack<Pair<L, R>>();
-        List<List<Pair<L, R>>> pairSets = new ArrayList<List<Pair<L, R>>>();
-
-        traverse(lefts, rights, 0, pairSet, pairSets);
-
-        return pairSets;
-    }
-
-    // Writing this code made me feel very stupid. There has got be a simpler
-    // way of doing this.
-    public static <L, R> void traverse(List<L> lefts, Set<R> rights, int i, Stack<Pair<L, R>> pairSet, List<List<Pair<L, R>>> pairSets) {
-        if (i == lefts.size()) {
-            pairSets.add(new ArrayList<Pair<L, R>>(pairSet));
-            return;
-        }
-
-        L left = lefts.get(i);
-        for (R right : rights) {
-            pairSet.push(new ImmutablePair<L, R>(left, right));
-            traverse(lefts, rights, i + 1, pairSet, pairSets);
-            pairSet.pop();
-        }
-    }
-
     @Override
     public AllocationCandidate next() {
         return candidates.pop();
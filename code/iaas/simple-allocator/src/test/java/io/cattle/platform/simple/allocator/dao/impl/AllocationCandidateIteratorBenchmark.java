@@ -0,0 +1,143 @@
+package io.cattle.platform.simple.allocator.dao.impl;
+
+import io.cattle.platform.allocator.service.AllocationCandidate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Compares materializing every volume to pool combination up front, as the
+ * iterator used to with {@link #traverse(List, Set)}, with enumerating them on demand. Reports time and bytes
+ * allocated until the first candidate and for the whole enumeration. Run with
+ *
+ * <pre>
+ * java -cp ... io.cattle.platform.simple.allocator.dao.impl.AllocationCandidateIteratorBenchmark [volumes] [pools] [hosts]
+ * </pre>
+ */
+public class AllocationCandidateIteratorBenchmark {
+
+    public static void main(String... args) {
+        int volumes = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int pools = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int hosts = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        List<Long> volumeIds = new ArrayList<Long>();
+        for (long i = 0; i < volumes; i++) {
+            volumeIds.add(1000 + i);
+        }
+
+        long[][] rows = new long[hosts * pools][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new long[] { i / pools, 100 + i };
+        }
+
+        for (int i = 0; i < 5; i++) {
+            boolean print = i == 4;
+            eager(volumeIds, rows, pools, print);
+            lazy(volumeIds, rows, print);
+        }
+    }
+
+    protected static void eager(List<Long> volumeIds, long[][] rows, int pools, boolean print) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long firstBytes = 0, firstTime = 0;
+        int count = 0;
+
+        for (int host = 0; host < rows.length / pools; host++) {
+            Set<Long> hostPools = new LinkedHashSet<Long>();
+            for (int i = 0; i < pools; i++) {
+                hostPools.add(rows[host * pools + i][1]);
+            }
+
+            List<AllocationCandidate> candidates = new ArrayList<AllocationCandidate>();
+            Map<Pair<Class<?>, Long>, Object> cache = new HashMap<Pair<Class<?>, Long>, Object>();
+            for (List<Pair<Long, Long>> pairs : traverse(volumeIds, hostPools)) {
+                Map<Long, Long> volumeToPool = new HashMap<Long, Long>();
+                for (Pair<Long, Long> pair : pairs) {
+                    volumeToPool.put(pair.getLeft(), pair.getRight());
+                }
+                candidates.add(new AllocationCandidate(null, cache, (long) host, volumeToPool));
+            }
+
+            for (int i = 0; i < candidates.size(); i++) {
+                if (count++ == 0) {
+                    firstBytes = allocatedBytes() - bytes;
+                    firstTime = System.nanoTime() - start;
+                }
+            }
+        }
+
+        report("eager", print, count, firstBytes, firstTime, allocatedBytes() - bytes, System.nanoTime() - start);
+    }
+
+    protected static void lazy(List<Long> volumeIds, long[][] rows, boolean print) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long firstBytes = 0, firstTime = 0;
+        int count = 0;
+
+        AllocationCandidateIterator iter = new AllocationCandidateIterator(null, AllocationCandidateIteratorTest.cursor(rows), volumeIds,
+                Collections.<Long, Set<Long>> emptyMap(), true, null);
+        while (iter.hasNext()) {
+            iter.next();
+            if (count++ == 0) {
+                firstBytes = allocatedBytes() - bytes;
+                firstTime = System.nanoTime() - start;
+            }
+        }
+
+        report("lazy", print, count, firstBytes, firstTime, allocatedBytes() - bytes, System.nanoTime() - start);
+    }
+
+    protected static <L, R> List<List<Pair<L, R>>> traverse(List<L> lefts, Set<R> rights) {
+        Stack<Pair<L, R>> pairSet = new Stack<Pair<L, R>>();
+        List<List<Pair<L, R>>> pairSets = new ArrayList<List<Pair<L, R>>>();
+
+        traverse(lefts, rights, 0, pairSet, pairSets);
+
+        return pairSets;
+    }
+
+    protected static <L, R> void traverse(List<L> lefts, Set<R> rights, int i, Stack<Pair<L, R>> pairSet, List<List<Pair<L, R>>> pairSets) {
+        if (i == lefts.size()) {
+            pairSets.add(new ArrayList<Pair<L, R>>(pairSet));
+            return;
+        }
+
+        L left = lefts.get(i);
+        for (R right : rights) {
+            pairSet.push(new ImmutablePair<L, R>(left, right));
+            traverse(lefts, rights, i + 1, pairSet, pairSets);
+            pairSet.pop();
+        }
+    }
+
+    protected static void report(String name, boolean print, int count, long firstBytes, long firstTime, long totalBytes, long totalTime) {
+        if (!print) {
+            return;
+        }
+
+        System.out.println(String.format("%-6s candidates=%-7d first: %8.1fKB %8.2fms   total: %9.1fKB %8.2fms", name, count,
+                firstBytes / 1024.0, firstTime / 1000000.0, totalBytes / 1024.0, totalTime / 1000000.0));
+    }
+
+    protected static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+}
@@ -1,41 +1,130 @@
 package io.cattle.platform.simple.allocator.dao.impl;
 
+import static io.cattle.platform.core.model.tables.HostTable.*;
+import static io.cattle.platform.core.model.tables.StoragePoolTable.*;
 import static org.junit.Assert.*;
+import io.cattle.platform.allocator.service.AllocationCandidate;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
 import org.junit.Test;
 
 public class AllocationCandidateIteratorTest {
 
-    private boolean print = false;
+    @Test
+    public void testEveryCombination() {
+        assertEquals((long) Math.pow(4, 3), count(Arrays.asList(100L, 101L, 102L), new long[][] {
+                { 1, 10 }, { 1, 11 }, { 1, 12 }, { 1, 13 } }));
+        assertEquals((long) Math.pow(3, 2), count(Arrays.asList(100L, 101L), new long[][] {
+                { 1, 10 }, { 1, 11 }, { 1, 12 } }));
+    }
+
+    @Test
+    public void testLazyEnumeration() {
+        AllocationCandidateIterator iter = new AllocationCandidateIterator(null, cursor(new long[][] {
+                { 1, 10 }, { 1, 11 }, { 2, 20 } }), Arrays.asList(100L, 101L), true, null);
+
+        List<AllocationCandidate> candidates = new ArrayList<AllocationCandidate>();
+        while (iter.hasNext()) {
+            candidates.add(iter.next());
+        }
+
+        assertEquals(5, candidates.size());
+
+        Set<Map<Long, Set<Long>>> seen = new HashSet<Map<Long, Set<Long>>>();
+        for (AllocationCandidate candidate : candidates.subList(0, 4)) {
+            assertEquals(Collections.singleton(1L), candidate.getHosts());
+            assertTrue(seen.add(candidate.getPools()));
+        }
+        assertEquals(Collections.singleton(2L), candidates.get(4).getHosts());
+        assertEquals(Collections.singleton(20L), candidates.get(4).getPools().get(100L));
+    }
 
     @Test
-    public void test() {
-        List<List<Pair<String, String>>> lists = AllocationCandidateIterator.traverse(Arrays.asList("a", "b", "c"), new LinkedHashSet<String>(Arrays.asList(
-                "1", "2", "3", "4")));
-
-        if (print) {
-            for (List<Pair<String, String>> pair : lists) {
-                System.out.println(StringUtils.join(pair, ","));
-            }
+    public void testPrunesInvalidPools() {
+        Map<Long, Set<Long>> volumePools = new HashMap<Long, Set<Long>>();
+        volumePools.put(100L, Collections.singleton(11L));
+
+        AllocationCandidateIterator iter = new AllocationCandidateIterator(null, cursor(new long[][] {
+                { 1, 10 }, { 1, 11 }, { 2, 20 } }), Arrays.asList(100L, 101L), volumePools, true, null);
+
+        int count = 0;
+        while (iter.hasNext()) {
+            AllocationCandidate candidate = iter.next();
+            assertEquals(Collections.singleton(1L), candidate.getHosts());
+            assertEquals(Collections.singleton(11L), candidate.getPools().get(100L));
+            count++;
         }
 
-        assertEquals((long) Math.pow(4, 3), lists.size());
+        assertEquals(2, count);
+    }
+
+    @Test
+    public void testNoVolumes() {
+        AllocationCandidateIterator iter = new AllocationCandidateIterator(null, cursor(new long[][] {
+                { 1, 10 }, { 1, 11 }, { 2, 20 } }), Collections.<Long> emptyList(), true, null);
+
+        assertTrue(iter.hasNext());
+        assertEquals(Collections.singleton(1L), iter.next().getHosts());
+        assertTrue(iter.hasNext());
+        assertEquals(Collections.singleton(2L), iter.next().getHosts());
+        assertFalse(iter.hasNext());
+    }
 
-        lists = AllocationCandidateIterator.traverse(Arrays.asList("a", "b"), new LinkedHashSet<String>(Arrays.asList("1", "2", "3")));
+    protected int count(List<Long> volumeIds, long[][] rows) {
+        Set<Map<Long, Set<Long>>> seen = new HashSet<Map<Long, Set<Long>>>();
+        AllocationCandidateIterator iter = new AllocationCandidateIterator(null, cursor(rows), volumeIds, true, null);
+        while (iter.hasNext()) {
+            assertTrue(seen.add(iter.next().getPools()));
+        }
+        return seen.size();
+    }
 
-        if (print) {
-            for (List<Pair<String, String>> pair : lists) {
-                System.out.println(StringUtils.join(pair, ","));
-            }
+    @SuppressWarnings("unchecked")
+    static Cursor<Record2<Long, Long>> cursor(long[][] rows) {
+        DSLContext context = DSL.using(SQLDialect.MYSQL);
+        final List<Record2<Long, Long>> list = new ArrayList<Record2<Long, Long>>();
+        for (long[] row : rows) {
+            Record2<Long, Long> record = context.newRecord(HOST.ID, STORAGE_POOL.ID);
+            record.value1(row[0]);
+            record.value2(row[1]);
+            list.add(record);
         }
 
-        assertEquals((long) Math.pow(3, 2), lists.size());
+        return (Cursor<Record2<Long, Long>>) Proxy.newProxyInstance(Cursor.class.getClassLoader(), new Class<?>[] { Cursor.class },
+                new InvocationHandler() {
+                    Iterator<Record2<Long, Long>> iter = list.iterator();
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                        case "hasNext":
+                            return iter.hasNext();
+                        case "fetchOne":
+                            return iter.hasNext() ? iter.next() : null;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
     }
 
-}
\ No newline at end of file
+}
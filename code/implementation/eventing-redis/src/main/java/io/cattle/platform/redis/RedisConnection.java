@@ -1,11 +1,15 @@
 package io.cattle.platform.redis;
 
 import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.eventing.model.Event;
 import io.cattle.platform.pool.PoolConfig;
+import io.cattle.platform.redis.RedisPublisher.Message;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
@@ -19,8 +23,12 @@ import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.config.DynamicBooleanProperty;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicLongProperty;
 import com.netflix.config.DynamicStringProperty;
@@ -32,6 +40,8 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
     private static final DynamicLongProperty REDIS_RETRY = ArchaiusUtil.getLong("redis.retry.millis");
     private static final DynamicStringProperty REDIS_PASSWORD = ArchaiusUtil.getString("redis.password");
     private static final DynamicIntProperty REDIS_TIMEOUT = ArchaiusUtil.getInt("redis.timeout");
+    private static final DynamicBooleanProperty PIPELINE = ArchaiusUtil.getBoolean("redis.publish.pipeline.enabled");
+    private static final DynamicIntProperty PUBLISH_QUEUE_SIZE = ArchaiusUtil.getInt("redis.publish.queue.size");
 
     /* Not actually static, but I just liked the look of the capital case */
     private final Object CONNECTION_LOCK = new Object();
@@ -42,6 +52,7 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
     Jedis jedis;
     JedisPubSub pubSub;
     JedisPool pool;
+    RedisPublisher publisher;
     String host;
     int port;
     volatile boolean shutdown = false;
@@ -57,6 +68,8 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
 
         pool = new JedisPool(config, host, port, REDIS_TIMEOUT.get(), getPassword());
         jedis = new Jedis(host, port, REDIS_TIMEOUT.get());
+        publisher = new RedisPublisher(eventService, this, PUBLISH_QUEUE_SIZE.get());
+        publisher.start();
     }
 
     public void subscribe(String name, SettableFuture<?> future) {
@@ -80,6 +93,55 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
         }
     }
 
+    public boolean publish(String channel, String message, Event event) {
+        if (PIPELINE.get()) {
+            return publisher.publish(channel, message, event);
+        }
+
+        return publish(channel, message);
+    }
+
+    /**
+     * Sends the messages as one pipeline and returns how many of them redis
+     * acknowledged. Replies come back in order, so the acknowledged messages
+     * are always a prefix of the list and only the rest need to be retried.
+     */
+    public int publish(List<Message> messages) {
+        List<Response<Long>> responses = new ArrayList<Response<Long>>(messages.size());
+        Jedis current = pool.getResource();
+        try {
+            Pipeline pipeline = current.pipelined();
+            for (Message message : messages) {
+                responses.add(pipeline.publish(message.channel, message.message));
+            }
+            pipeline.sync();
+            return messages.size();
+        } catch (Throwable t) {
+            int sent = acknowledged(responses);
+            log.error("Failed to publish [{}] of [{}] messages to [{}:{}]", messages.size() - sent, messages.size(), host, port, t);
+            pool.returnBrokenResource(current);
+            current = null;
+            return sent;
+        } finally {
+            if (current != null) {
+                pool.returnResource(current);
+            }
+        }
+    }
+
+    protected static int acknowledged(List<Response<Long>> responses) {
+        int count = 0;
+        for (Response<Long> response : responses) {
+            try {
+                response.get();
+            } catch (JedisDataException e) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
     public boolean publish(String channel, String message) {
         Jedis current = pool.getResource();
         try {
@@ -144,6 +206,8 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
 
     public void stop() {
         shutdown = true;
+        /* Blocks until queued messages are flushed, the pool must outlive it */
+        publisher.stop();
         pool.destroy();
         jedis.disconnect();
     }
@@ -207,7 +271,6 @@ public class RedisConnection extends ManagedContextRunnable implements Runnable
 
         synchronized (CONNECTION_LOCK) {
             pubSub = null;
-            pool.destroy();
             jedis.disconnect();
         }
     }
@@ -104,12 +104,16 @@ public class RedisEventingService extends AbstractThreadPoolingEventService impl
         index = (index + 1) % connections.size();
 
         if (conn != null) {
-            return conn.publish(name, eventString);
+            return conn.publish(name, eventString, event);
         }
 
         return false;
     }
 
+    void publishFailed(Event event) {
+        error(event);
+    }
+
     @Override
     protected void doSubscribe(String eventName, final SettableFuture<?> future) {
         List<SettableFuture<?>> futures = new ArrayList<SettableFuture<?>>();
@@ -0,0 +1,168 @@
+package io.cattle.platform.redis;
+
+import io.cattle.platform.archaius.util.ArchaiusUtil;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.metrics.util.MetricsUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
+
+/**
+ * Outbound buffer for a single redis connection. A single thread drains
+ * whatever has accumulated since the last flush and sends it as one pipeline,
+ * so a burst of events costs one round trip instead of one per event.
+ * <p>
+ * Events always leave in the order they were queued. If the buffer stays full
+ * for longer than redis.publish.queue.wait.millis the publish fails rather
+ * than jumping the queue. If a pipeline fails only the events redis did not
+ * acknowledge are retried, one at a time.
+ */
+public class RedisPublisher implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisPublisher.class);
+
+    private static final DynamicIntProperty BATCH_SIZE = ArchaiusUtil.getInt("redis.publish.batch.size");
+    private static final DynamicLongProperty QUEUE_WAIT = ArchaiusUtil.getLong("redis.publish.queue.wait.millis");
+    private static final DynamicLongProperty STOP_WAIT = ArchaiusUtil.getLong("redis.publish.stop.wait.millis");
+
+    private static final Histogram BATCH = MetricsUtil.getRegistry().histogram("redis.publish.batch_size");
+    private static final Counter RETRY = MetricsUtil.getRegistry().counter("redis.publish.retry");
+    private static final Counter QUEUE_FULL = MetricsUtil.getRegistry().counter("redis.publish.queue_full");
+
+    RedisEventingService eventService;
+    RedisConnection connection;
+    BlockingQueue<Message> queue;
+    Thread thread;
+    volatile boolean shutdown = false;
+
+    public RedisPublisher(RedisEventingService eventService, RedisConnection connection, int queueSize) {
+        super();
+        this.eventService = eventService;
+        this.connection = connection;
+        this.queue = new LinkedBlockingQueue<Message>(queueSize);
+        this.thread = new Thread(this, "redis-publish-" + connection.host + ":" + connection.port);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops accepting new events and waits for the events already queued to
+     * be flushed. Anything still queued when the wait runs out is failed.
+     */
+    public void stop() {
+        shutdown = true;
+
+        try {
+            thread.join(STOP_WAIT.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive()) {
+            log.error("Timed out waiting for redis publisher [{}:{}] to flush", connection.host, connection.port);
+        }
+
+        List<Message> remaining = new ArrayList<Message>();
+        queue.drainTo(remaining);
+        for (Message message : remaining) {
+            eventService.publishFailed(message.event);
+        }
+    }
+
+    public boolean publish(String channel, String message, Event event) {
+        if (shutdown) {
+            return false;
+        }
+
+        Message queued = new Message(channel, message, event);
+        try {
+            if (queue.offer(queued, QUEUE_WAIT.get(), TimeUnit.MILLISECONDS)) {
+                /* Raced with stop(), the flusher may already be gone */
+                return !shutdown || !queue.remove(queued);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        QUEUE_FULL.inc();
+        log.error("Redis publish queue for [{}:{}] is full, dropping [{}]", connection.host, connection.port, channel);
+        return false;
+    }
+
+    @Override
+    public void run() {
+        List<Message> batch = new ArrayList<Message>();
+
+        while (!shutdown || queue.size() > 0) {
+            Message first = null;
+            try {
+                first = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (first == null) {
+                continue;
+            }
+
+            batch.add(first);
+            queue.drainTo(batch, Math.max(BATCH_SIZE.get() - 1, 0));
+
+            try {
+                flush(batch);
+            } catch (Throwable t) {
+                log.error("Failed to publish [{}] messages", batch.size(), t);
+            }
+
+            batch.clear();
+        }
+    }
+
+    protected void flush(List<Message> batch) {
+        BATCH.update(batch.size());
+
+        int sent = 0;
+        if (batch.size() > 1) {
+            sent = connection.publish(batch);
+        }
+
+        for (Message message : batch.subList(sent, batch.size())) {
+            if (batch.size() > 1) {
+                RETRY.inc();
+            }
+
+            if (!connection.publish(message.channel, message.message)) {
+                eventService.publishFailed(message.event);
+            }
+        }
+    }
+
+    public static final class Message {
+        String channel;
+        String message;
+        Event event;
+
+        public Message(String channel, String message, Event event) {
+            super();
+            this.channel = channel;
+            this.message = message;
+            this.event = event;
+        }
+    }
+
+}
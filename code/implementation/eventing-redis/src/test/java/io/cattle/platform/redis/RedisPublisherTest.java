@@ -0,0 +1,139 @@
+package io.cattle.platform.redis;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import io.cattle.platform.eventing.model.Event;
+import io.cattle.platform.redis.RedisPublisher.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Response;
+
+import com.netflix.config.ConfigurationManager;
+
+public class RedisPublisherTest {
+
+    RedisEventingService eventService;
+    RedisConnection connection;
+    List<List<String>> pipelines;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ConfigurationManager.getConfigInstance().setProperty("redis.publish.batch.size", 500);
+        ConfigurationManager.getConfigInstance().setProperty("redis.publish.queue.wait.millis", 10);
+        ConfigurationManager.getConfigInstance().setProperty("redis.publish.stop.wait.millis", 10000);
+    }
+
+    @Before
+    public void setUp() {
+        eventService = mock(RedisEventingService.class);
+        connection = mock(RedisConnection.class);
+        pipelines = new ArrayList<List<String>>();
+
+        when(connection.publish(anyString(), anyString())).thenReturn(true);
+    }
+
+    @Test
+    public void testQueuedMessagesSentAsOnePipeline() {
+        pipelineAcknowledges(3);
+        RedisPublisher publisher = new RedisPublisher(eventService, connection, 10);
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(publisher.publish("c" + i, "m" + i, mock(Event.class)));
+        }
+
+        publisher.start();
+        publisher.stop();
+
+        assertEquals(Arrays.asList(Arrays.asList("m1", "m2", "m3")), pipelines);
+        verify(connection, never()).publish(anyString(), anyString());
+        verifyZeroInteractions(eventService);
+    }
+
+    @Test
+    public void testFailedPipelineRetriesOnlyUnacknowledged() {
+        pipelineAcknowledges(1);
+        Event failed = mock(Event.class);
+        when(connection.publish("c3", "m3")).thenReturn(false);
+        RedisPublisher publisher = new RedisPublisher(eventService, connection, 10);
+
+        publisher.publish("c1", "m1", mock(Event.class));
+        publisher.publish("c2", "m2", mock(Event.class));
+        publisher.publish("c3", "m3", failed);
+
+        publisher.start();
+        publisher.stop();
+
+        InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).publish(anyListOf(Message.class));
+        inOrder.verify(connection).publish("c2", "m2");
+        inOrder.verify(connection).publish("c3", "m3");
+        verify(connection, never()).publish("c1", "m1");
+        verify(eventService).publishFailed(failed);
+        verifyNoMoreInteractions(eventService);
+    }
+
+    @Test
+    public void testFullQueueFailsWithoutSendingOutOfOrder() {
+        RedisPublisher publisher = new RedisPublisher(eventService, connection, 1);
+
+        assertTrue(publisher.publish("c1", "m1", mock(Event.class)));
+        assertFalse(publisher.publish("c2", "m2", mock(Event.class)));
+
+        verify(connection, never()).publish(anyString(), anyString());
+        verify(connection, never()).publish(anyListOf(Message.class));
+    }
+
+    @Test
+    public void testStopFailsWhatCannotBeFlushed() {
+        Event event = mock(Event.class);
+        RedisPublisher publisher = new RedisPublisher(eventService, connection, 10);
+
+        assertTrue(publisher.publish("c1", "m1", event));
+        publisher.stop();
+
+        verify(eventService).publishFailed(event);
+        assertFalse(publisher.publish("c2", "m2", mock(Event.class)));
+        verify(connection, never()).publish(anyString(), anyString());
+    }
+
+    @Test
+    public void testAcknowledgedCountsRepliedPrefix() {
+        List<Response<Long>> responses = new ArrayList<Response<Long>>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(new Response<Long>(BuilderFactory.LONG));
+        }
+
+        responses.get(0).set(1L);
+        responses.get(1).set(0L);
+
+        assertEquals(2, RedisConnection.acknowledged(responses));
+        assertEquals(0, RedisConnection.acknowledged(new ArrayList<Response<Long>>()));
+    }
+
+    protected void pipelineAcknowledges(final int count) {
+        when(connection.publish(anyListOf(Message.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                List<String> sent = new ArrayList<String>();
+                for (Object message : (List<?>) invocation.getArguments()[0]) {
+                    sent.add(((Message) message).message);
+                }
+                pipelines.add(sent);
+                return Math.min(count, sent.size());
+            }
+        });
+    }
+
+}